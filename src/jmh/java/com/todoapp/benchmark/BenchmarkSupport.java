@@ -0,0 +1,59 @@
+package com.todoapp.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Silences the INFO logging of the storage layer, which would otherwise dominate the measurements.
+     */
+    static void quietLogging() {
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (java.util.logging.Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+    }
+
+    /**
+     * Creates task descriptions of a realistic length.
+     * @param count The number of descriptions
+     * @return The descriptions
+     */
+    static List<String> descriptions(int count) {
+        List<String> descriptions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            descriptions.add("Benchmark task number " + i + " with a description of typical length");
+        }
+        return descriptions;
+    }
+
+    static File createTempDirectory() throws IOException {
+        return Files.createTempDirectory("todo-benchmark").toFile();
+    }
+
+    static void deleteRecursively(File directory) throws IOException {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
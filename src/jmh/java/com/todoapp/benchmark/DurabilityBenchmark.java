@@ -0,0 +1,107 @@
+package com.todoapp.benchmark;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskBatch;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each {@link StorageConfig.Durability} level, on disk, for single changes and for batches.
+ * <p>
+ * Single changes are sampled, so the results include the latency percentiles a user clicking in the UI
+ * would see; {@code concurrentUpdates} reports the throughput of several writers sharing the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurabilityBenchmark {
+    private static final int TASK_COUNT = 1000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"NONE", "FLUSH", "FSYNC"})
+    private StorageConfig.Durability durability;
+
+    @Param({"SNAPSHOT", "JOURNAL"})
+    private StorageConfig.PersistenceMode mode;
+
+    private File directory;
+    private TaskRepository repository;
+    private int firstId;
+
+    @Setup(Level.Trial)
+    public void openRepository() throws IOException {
+        BenchmarkSupport.quietLogging();
+        directory = BenchmarkSupport.createTempDirectory();
+
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(new File(directory, "tasks.json").getPath());
+        config.setPersistenceMode(mode);
+        config.setDurability(durability);
+        config.setMetricsJmx(false);
+        repository = TaskRepositories.open(config);
+        firstId = repository.addTasks(BenchmarkSupport.descriptions(TASK_COUNT))[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void closeRepository() throws IOException {
+        repository.close();
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    private int randomId() {
+        return firstId + ThreadLocalRandom.current().nextInt(TASK_COUNT);
+    }
+
+    /**
+     * Changes one task; every call is one write at the configured level.
+     */
+    @Benchmark
+    public void updateTaskCompletion() {
+        repository.updateTaskCompletion(randomId(), ThreadLocalRandom.current().nextBoolean());
+    }
+
+    /**
+     * Changes {@value #BATCH_SIZE} tasks with one write, so the cost of the level is paid once per batch.
+     */
+    @Benchmark
+    public int[] applyBatch() {
+        TaskBatch batch = new TaskBatch();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.setCompleted(randomId(), ThreadLocalRandom.current().nextBoolean());
+        }
+        return repository.applyBatch(batch);
+    }
+
+    /**
+     * Changes tasks from four threads at once.
+     */
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void concurrentUpdates() {
+        repository.updateTaskCompletion(randomId(), ThreadLocalRandom.current().nextBoolean());
+    }
+}
@@ -0,0 +1,163 @@
+package com.todoapp.benchmark;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the task repository operations on stores of different sizes and persistence setups.
+ * <p>
+ * {@code storage} selects the engine: {@code memory} measures the store alone, {@code journal} appends
+ * every change to the journal before returning, and {@code journal-write-behind} queues it for the
+ * background writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int taskCount;
+
+    @Param({"memory", "journal", "journal-write-behind"})
+    private String storage;
+
+    private File directory;
+    private TaskRepository repository;
+    private int firstId;
+
+    @Setup(Level.Trial)
+    public void openRepository() throws IOException {
+        BenchmarkSupport.quietLogging();
+        directory = BenchmarkSupport.createTempDirectory();
+
+        StorageConfig config = new StorageConfig();
+        if (storage.equals("memory")) {
+            config.setEngine("memory");
+        } else {
+            config.setStoragePath(new File(directory, "tasks.json").getPath());
+            config.setPersistenceMode(StorageConfig.PersistenceMode.JOURNAL);
+            config.setWriteBehind(storage.equals("journal-write-behind"));
+        }
+        repository = TaskRepositories.open(config);
+
+        List<String> descriptions = BenchmarkSupport.descriptions(taskCount);
+        for (int from = 0; from < taskCount; from += LOAD_BATCH_SIZE) {
+            int[] ids = repository.addTasks(descriptions.subList(from, Math.min(taskCount, from + LOAD_BATCH_SIZE)));
+            if (from == 0) {
+                firstId = ids[0];
+            }
+        }
+        repository.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeRepository() throws IOException {
+        repository.close();
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    /**
+     * Picks one of the tasks loaded at setup.
+     */
+    private int randomLoadedId() {
+        return firstId + ThreadLocalRandom.current().nextInt(taskCount);
+    }
+
+    /**
+     * Adds a task. The store grows by one task per call during the run.
+     */
+    @Benchmark
+    public int addTask() {
+        return repository.addTask("Added by the benchmark");
+    }
+
+    @Benchmark
+    public void updateTaskCompletion() {
+        repository.updateTaskCompletion(randomLoadedId(), ThreadLocalRandom.current().nextBoolean());
+    }
+
+    /**
+     * Adds a task and deletes it again, which keeps the size of the store stable.
+     */
+    @Benchmark
+    public void addAndDeleteTask() {
+        repository.deleteTask(repository.addTask("Deleted by the benchmark"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Task> getAllTasks() {
+        return repository.getAllTasks();
+    }
+
+    /**
+     * Reads one page of the active tasks from the middle of the store, as the paged task table does.
+     */
+    @Benchmark
+    public Object queryActivePage() {
+        return repository.queryTasks(TaskQuery.of(TaskQuery.Status.ACTIVE).page(taskCount / 2, 100));
+    }
+
+    /**
+     * Clears the completed tasks, which are a tenth of the store at the start of every iteration.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public int clearCompletedTasks(CompletedTasks completedTasks) {
+        return repository.clearCompletedTasks();
+    }
+
+    /**
+     * Completes a tenth of the tasks before every iteration of {@link #clearCompletedTasks}, after
+     * topping the store back up to its configured size.
+     */
+    @State(Scope.Benchmark)
+    public static class CompletedTasks {
+        @Setup(Level.Iteration)
+        public void completeTasks(RepositoryBenchmark benchmark) {
+            TaskRepository repository = benchmark.repository;
+            int missing = benchmark.taskCount - repository.getTaskCount();
+            if (missing > 0) {
+                repository.addTasks(BenchmarkSupport.descriptions(missing));
+            }
+            Map<Integer, Boolean> completions = new HashMap<>();
+            int[] active = repository.queryTaskIds(TaskQuery.of(TaskQuery.Status.ACTIVE));
+            for (int i = 0; i < active.length; i += 10) {
+                completions.put(active[i], true);
+            }
+            repository.updateCompletion(completions);
+            repository.flush();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.todoapp.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todoapp.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the Jackson mapping of {@link Task}, one task at a time and as a list of a thousand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final int LIST_SIZE = 1000;
+
+    private ObjectMapper objectMapper;
+    private Task task;
+    private byte[] taskJson;
+    private List<Task> taskList;
+    private byte[] taskListJson;
+
+    @Setup
+    public void createTasks() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        task = new Task(42, "Serialize a task with a description of typical length", true);
+        taskJson = objectMapper.writeValueAsBytes(task);
+        taskList = new ArrayList<>(LIST_SIZE);
+        List<String> descriptions = BenchmarkSupport.descriptions(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            taskList.add(new Task(i + 1, descriptions.get(i), i % 3 == 0));
+        }
+        taskListJson = objectMapper.writeValueAsBytes(taskList);
+    }
+
+    @Benchmark
+    public byte[] serializeTask() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(task);
+    }
+
+    @Benchmark
+    public Task deserializeTask() throws IOException {
+        return objectMapper.readValue(taskJson, Task.class);
+    }
+
+    @Benchmark
+    public byte[] serializeTaskList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(taskList);
+    }
+
+    @Benchmark
+    public List<Task> deserializeTaskList() throws IOException {
+        return objectMapper.readValue(taskListJson, new TypeReference<List<Task>>() { });
+    }
+}
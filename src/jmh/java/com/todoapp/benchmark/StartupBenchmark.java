@@ -0,0 +1,68 @@
+package com.todoapp.benchmark;
+
+import com.todoapp.database.JsonDatabaseManager;
+import com.todoapp.database.StorageConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to open an existing snapshot, from the constructor of the database manager until the tasks are
+ * in memory and indexed. Every measurement is a single cold open, which is what the user waits for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(3)
+public class StartupBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int taskCount;
+
+    @Param({"JSON", "BINARY"})
+    private StorageConfig.SnapshotFormat format;
+
+    private File directory;
+    private StorageConfig config;
+
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        BenchmarkSupport.quietLogging();
+        directory = BenchmarkSupport.createTempDirectory();
+        config = new StorageConfig();
+        config.setSnapshotFormat(format);
+        config.setStoragePath(new File(directory, format.getDefaultFileName()).getPath());
+        // One batch, so the snapshot is written once
+        try (JsonDatabaseManager manager = new JsonDatabaseManager(config)) {
+            manager.addTasks(BenchmarkSupport.descriptions(taskCount));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int loadTasks() {
+        try (JsonDatabaseManager manager = new JsonDatabaseManager(config)) {
+            return manager.getTaskCount();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.todoapp;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times the phases of starting the application from the start of the JVM, so that the time until the
+ * first tasks are on screen can be tracked. Only the first time each phase is reached counts, so
+ * switching lists later doesn't change the figures. The phases are logged once the tasks are loaded.
+ * <p>
+ * Safe for use from many threads.
+ */
+public final class StartupMetrics implements StartupMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(StartupMetrics.class.getName());
+    private static final StartupMetrics INSTANCE = new StartupMetrics();
+
+    /**
+     * The phases of startup, in the order they are normally reached.
+     */
+    public enum Phase {
+        /** The layout is loaded and the controller initialized; the tasks are still loading */
+        UI_LOADED,
+        /** The window is on screen */
+        WINDOW_SHOWN,
+        /** The first tasks are in the table, or the list turned out to be empty */
+        FIRST_ROW,
+        /** Every task is loaded and the list can be changed */
+        TASKS_LOADED
+    }
+
+    private final Map<Phase, Long> phaseMillis = new EnumMap<>(Phase.class);
+    private int loadedTaskCount = -1;
+    private ObjectName objectName;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Gets the startup metrics of this process.
+     * @return The metrics
+     */
+    public static StartupMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records that a phase is reached now, unless it was reached before.
+     * @param phase The phase
+     */
+    public synchronized void mark(Phase phase) {
+        if (phaseMillis.putIfAbsent(phase, ManagementFactory.getRuntimeMXBean().getUptime()) == null) {
+            LOGGER.fine("Startup phase " + phase + " reached after " + phaseMillis.get(phase) + " ms");
+        }
+    }
+
+    /**
+     * Records that the tasks are loaded now, unless they were loaded before, and logs every phase.
+     * @param taskCount The number of loaded tasks
+     */
+    public synchronized void tasksLoaded(int taskCount) {
+        if (phaseMillis.containsKey(Phase.TASKS_LOADED)) {
+            return;
+        }
+        mark(Phase.TASKS_LOADED);
+        loadedTaskCount = taskCount;
+        LOGGER.info("Startup: " + phaseMillis + " ms after the JVM started, " + taskCount + " tasks");
+    }
+
+    /**
+     * Gets the time at which a phase was reached.
+     * @param phase The phase
+     * @return The milliseconds since the start of the JVM, or -1 if the phase hasn't been reached
+     */
+    public synchronized long getMillis(Phase phase) {
+        return phaseMillis.getOrDefault(phase, -1L);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseMillis() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Phase, Long> entry : phaseMillis.entrySet()) {
+            result.put(entry.getKey().name(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public long getTimeToFirstRowMillis() {
+        return getMillis(Phase.FIRST_ROW);
+    }
+
+    @Override
+    public synchronized int getLoadedTaskCount() {
+        return loadedTaskCount;
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server. Calling this method more than once has no effect.
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("com.todoapp:type=StartupMetrics");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to publish startup metrics", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.todoapp;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link StartupMetrics}, published over JMX under {@code com.todoapp:type=StartupMetrics}.
+ */
+public interface StartupMetricsMXBean {
+
+    /**
+     * Gets the time at which each startup phase reached so far was reached.
+     * @return The milliseconds since the start of the JVM, by phase name, in the order of the phases
+     */
+    Map<String, Long> getPhaseMillis();
+
+    /**
+     * Gets the time until the first tasks were shown in the window.
+     * @return The milliseconds since the start of the JVM, or -1 if no task has been shown yet
+     */
+    long getTimeToFirstRowMillis();
+
+    /**
+     * Gets the number of tasks in the list that was loaded at startup.
+     * @return The number of tasks, or -1 if the list isn't loaded yet
+     */
+    int getLoadedTaskCount();
+}
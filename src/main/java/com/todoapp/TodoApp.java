@@ -1,12 +1,16 @@
 package com.todoapp;
 
 import com.todoapp.controller.TodoController;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.server.TaskApiServer;
+import com.todoapp.transfer.TransferCommand;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
@@ -18,8 +22,14 @@ public class TodoApp extends Application {
 
     @Override
     public void start(Stage stage) throws IOException {
+        StartupMetrics startup = StartupMetrics.get();
+        if (Boolean.parseBoolean(System.getProperty(StorageConfig.METRICS_JMX_PROPERTY, "true"))) {
+            startup.register();
+        }
+        // The controller starts loading the tasks in the background, so the window can be shown at once
         FXMLLoader fxmlLoader = new FXMLLoader(TodoApp.class.getResource("/fxml/todo-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 600, 400);
+        startup.mark(StartupMetrics.Phase.UI_LOADED);
         
         // Get the controller to handle cleanup later
         controller = fxmlLoader.getController();
@@ -38,6 +48,7 @@ public class TodoApp extends Application {
         });
         
         stage.show();
+        startup.mark(StartupMetrics.Phase.WINDOW_SHOWN);
         LOGGER.info("To-Do List application with JSON database started successfully");
     }
 
@@ -51,7 +62,18 @@ public class TodoApp extends Application {
         super.stop();
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (Arrays.asList(args).contains("--headless")) {
+            // Serve the tasks over HTTP instead of opening the window
+            LOGGER.info("Starting To-Do List API without user interface...");
+            TaskApiServer.main(args);
+            return;
+        }
+        if (TransferCommand.isRequested(args)) {
+            // Import or export the tasks and exit
+            TransferCommand.main(args);
+            return;
+        }
         LOGGER.info("Starting To-Do List application with JSON database...");
         launch();
     }
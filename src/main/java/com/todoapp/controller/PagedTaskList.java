@@ -0,0 +1,319 @@
+package com.todoapp.controller;
+
+import com.todoapp.database.TaskChange;
+import com.todoapp.database.TaskPage;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.model.Task;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only list of the tasks that match a query, backed by the repository instead of holding every task.
+ * <p>
+ * A {@code TableView} only asks for the rows it shows, so the list fetches tasks one page at a time
+ * when a row of the page is first requested, together with the neighbouring page when the row is near
+ * its edge. The most recently used pages are kept; older pages are dropped and fetched again if they
+ * are scrolled back into view. Opening the list therefore costs one page, whatever the number of tasks.
+ * <p>
+ * Changes made to the repository are passed to {@link #applyChanges(List)}, which turns them into the
+ * smallest list changes it can work out from the fetched pages: an edited task is updated in place, a
+ * new task with a higher ID than every shown task is appended, and a removed task is taken out at its
+ * row, so selection and scrolling survive. A task that is restored from the archive, or added by another
+ * process, can have a lower ID, and then the list is read again.
+ * Only when a change can't be placed, for example a task entering a search result or a task moving in the
+ * order by due date, is the list read again. Must be used from the JavaFX application thread.
+ */
+public class PagedTaskList extends ObservableListBase<Task> {
+    private static final Logger LOGGER = Logger.getLogger(PagedTaskList.class.getName());
+    static final int PAGE_SIZE = 100;
+    static final int PREFETCH_MARGIN = 20;
+    static final int MAX_CACHED_PAGES = 20;
+
+    private final TaskRepository repository;
+    private final Map<Integer, List<Task>> pages;
+    private TaskQuery query;
+    private int size;
+    // Repository version before the last full read; changes up to it are already in the list
+    private long readVersion;
+    // The highest ID shown, or higher if that task was removed; added tasks above it go at the end
+    private int highestId;
+
+    /**
+     * Creates the list and fetches the first page.
+     * @param repository The repository to read from
+     * @param query The tasks to show; the offset and limit are ignored
+     */
+    public PagedTaskList(TaskRepository repository, TaskQuery query) {
+        this.repository = repository;
+        // Access order, so that the eldest entry is the least recently shown page
+        this.pages = new LinkedHashMap<>(MAX_CACHED_PAGES * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Task>> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+        this.query = query.copy();
+        this.readVersion = repository.getVersion();
+        this.size = fetchPage(0).getTotalCount();
+        this.highestId = readHighestId();
+    }
+
+    /**
+     * Shows the tasks of another query.
+     * @param query The tasks to show; the offset and limit are ignored
+     */
+    public void setQuery(TaskQuery query) {
+        this.query = query.copy();
+        refresh();
+    }
+
+    /**
+     * Drops every fetched task and reads the list again, notifying listeners that all rows changed.
+     */
+    public void refresh() {
+        int oldSize = size;
+        pages.clear();
+        readVersion = repository.getVersion();
+        int newSize = fetchPage(0).getTotalCount();
+        size = newSize;
+        highestId = readHighestId();
+
+        beginChange();
+        if (oldSize > 0) {
+            // The old rows are gone and aren't fetched again just to report them
+            nextRemove(0, Collections.nCopies(oldSize, (Task) null));
+        }
+        if (newSize > 0) {
+            nextAdd(0, newSize);
+        }
+        endChange();
+    }
+
+    /**
+     * Applies changes made to the repository since they were last applied or the list was read.
+     * @param changes The changes in the order they were made; a task may appear more than once
+     */
+    public void applyChanges(List<TaskChange> changes) {
+        // Combine the changes of each task into one from its first to its last state
+        Map<Integer, TaskRecord[]> combined = new LinkedHashMap<>();
+        for (TaskChange change : changes) {
+            if (change.getVersion() <= readVersion) {
+                continue;
+            }
+            if (change.getType() == TaskChange.Type.RESET || query.hasSearchText()) {
+                // Whether a description matches the search is only known to the repository's index
+                refresh();
+                return;
+            }
+            combined.computeIfAbsent(change.getTaskId(), id -> new TaskRecord[] {change.getPrevious(), null})[1]
+                    = change.getCurrent();
+        }
+
+        boolean byDueDate = query.getOrder() == TaskQuery.Order.DUE_DATE;
+        // Work out every row change against the current rows before changing any of them
+        List<int[]> updates = new ArrayList<>();
+        List<TaskRecord> updatedRecords = new ArrayList<>();
+        List<int[]> removals = new ArrayList<>();
+        List<TaskRecord> additions = new ArrayList<>();
+        for (TaskRecord[] states : combined.values()) {
+            boolean wasShown = matches(states[0]);
+            boolean isShown = matches(states[1]);
+            if (wasShown && isShown) {
+                if (byDueDate && !Objects.equals(states[0].getDueDate(), states[1].getDueDate())) {
+                    // The task moved to another row
+                    refresh();
+                    return;
+                }
+                int[] position = find(states[1].getId());
+                // A row that isn't fetched will be read with its new values when it is shown
+                if (position != null) {
+                    updates.add(position);
+                    updatedRecords.add(states[1]);
+                }
+            } else if (wasShown) {
+                int[] position = find(states[0].getId());
+                if (position == null) {
+                    refresh();
+                    return;
+                }
+                removals.add(position);
+            } else if (isShown) {
+                if (states[0] != null || (byDueDate && states[1].getDueDate() != null)) {
+                    // An existing task entered the view, or a new one is placed by its due date, somewhere in the middle
+                    refresh();
+                    return;
+                }
+                if (states[1].getId() <= highestId) {
+                    // A task that got a lower ID, such as a restored one, belongs somewhere in the middle
+                    refresh();
+                    return;
+                }
+                // The new task has the highest ID, so it goes last, or first in descending order
+                additions.add(states[1]);
+            }
+        }
+        if (updates.isEmpty() && removals.isEmpty() && additions.isEmpty()) {
+            return;
+        }
+
+        beginChange();
+        for (int i = 0; i < updates.size(); i++) {
+            int[] position = updates.get(i);
+            Task task = pages.get(position[0]).get(position[1]);
+            TaskRecord record = updatedRecords.get(i);
+            task.setDescription(record.getDescription());
+            task.setCompleted(record.isCompleted());
+            task.setDueDate(record.getDueDate());
+            task.setReminder(record.getReminder());
+            nextUpdate(position[0] * PAGE_SIZE + position[1]);
+        }
+        // From the last row up, so that the earlier rows keep their positions
+        removals.sort(Comparator.comparingInt((int[] position) -> position[0] * PAGE_SIZE + position[1]).reversed());
+        for (int[] position : removals) {
+            nextRemove(position[0] * PAGE_SIZE + position[1], pages.get(position[0]).get(position[1]));
+            size--;
+        }
+        additions.sort(Comparator.comparingInt(TaskRecord::getId));
+        boolean descending = query.getOrder() == TaskQuery.Order.ID_DESCENDING;
+        for (TaskRecord added : additions) {
+            nextAdd(descending ? 0 : size, descending ? 1 : size + 1);
+            size++;
+            highestId = added.getId();
+        }
+        if (!removals.isEmpty() || !additions.isEmpty()) {
+            // The rows after the first removal or addition moved; fetch them again when they are shown
+            pages.clear();
+        }
+        endChange();
+    }
+
+    /**
+     * Reads the highest ID among the tasks of the query. A search view is read again on every change,
+     * so it isn't needed there.
+     */
+    private int readHighestId() {
+        if (query.hasSearchText()) {
+            return Integer.MAX_VALUE;
+        }
+        int[] ids = repository.queryTaskIds(query.copy().orderBy(TaskQuery.Order.ID_DESCENDING).page(0, 1));
+        return ids.length == 0 ? 0 : ids[0];
+    }
+
+    /**
+     * Checks whether a task belongs in this list. The search text isn't checked.
+     */
+    private boolean matches(TaskRecord record) {
+        if (record == null || (query.getOverdueAt() != null && !record.isOverdue(query.getOverdueAt()))) {
+            return false;
+        }
+        switch (query.getStatus()) {
+            case ACTIVE:
+                return !record.isCompleted();
+            case COMPLETED:
+                return record.isCompleted();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Finds a task among the fetched rows.
+     * @return The page index and the position within the page, or null if the task isn't fetched
+     */
+    private int[] find(int taskId) {
+        if (query.getOrder() == TaskQuery.Order.DUE_DATE) {
+            for (Map.Entry<Integer, List<Task>> page : pages.entrySet()) {
+                List<Task> tasks = page.getValue();
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (tasks.get(i).getId() == taskId) {
+                        return new int[] {page.getKey(), i};
+                    }
+                }
+            }
+            return null;
+        }
+        // Every page is ordered by ID, in the order of the query
+        int direction = query.getOrder() == TaskQuery.Order.ID_DESCENDING ? -1 : 1;
+        for (Map.Entry<Integer, List<Task>> page : pages.entrySet()) {
+            List<Task> tasks = page.getValue();
+            int low = 0;
+            int high = tasks.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = direction * Integer.compare(tasks.get(middle).getId(), taskId);
+                if (comparison == 0) {
+                    return new int[] {page.getKey(), middle};
+                } else if (comparison < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Task get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside the list of " + size + " tasks");
+        }
+        int pageIndex = index / PAGE_SIZE;
+        List<Task> page = pageAt(pageIndex);
+
+        int position = index % PAGE_SIZE;
+        if (position >= PAGE_SIZE - PREFETCH_MARGIN && (pageIndex + 1) * PAGE_SIZE < size) {
+            prefetch(pageIndex + 1);
+        } else if (position < PREFETCH_MARGIN && pageIndex > 0) {
+            prefetch(pageIndex - 1);
+        }
+
+        // A page can be short if tasks were deleted since the list was last refreshed
+        return position < page.size() ? page.get(position) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of pages that are currently held in memory.
+     * @return The number of cached pages
+     */
+    int getCachedPageCount() {
+        return pages.size();
+    }
+
+    private List<Task> pageAt(int pageIndex) {
+        List<Task> page = pages.get(pageIndex);
+        return page != null ? page : fetchPage(pageIndex).getTasks();
+    }
+
+    private void prefetch(int pageIndex) {
+        if (!pages.containsKey(pageIndex)) {
+            fetchPage(pageIndex);
+        }
+    }
+
+    private TaskPage fetchPage(int pageIndex) {
+        TaskQuery pageQuery = query.copy().page(pageIndex * PAGE_SIZE, PAGE_SIZE);
+        TaskPage page = repository.queryTasks(pageQuery);
+        pages.put(pageIndex, page.getTasks());
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Fetched page " + pageIndex + " with " + page.getTasks().size() + " tasks");
+        }
+        return page;
+    }
+}
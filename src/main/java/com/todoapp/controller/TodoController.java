@@ -1,16 +1,48 @@
 package com.todoapp.controller;
 
-import com.todoapp.database.JsonDatabaseManager;
+import com.todoapp.StartupMetrics;
+import com.todoapp.database.TaskChange;
+import com.todoapp.database.TaskChangeListener;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskLists;
+import com.todoapp.database.TaskLoadListener;
+import com.todoapp.database.TaskBatch;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskReminderListener;
+import com.todoapp.database.TaskRepository;
 import com.todoapp.model.Task;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Pos;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.CheckBoxTableCell;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.layout.GridPane;
 
 import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +51,52 @@ import java.util.logging.Logger;
  */
 public class TodoController implements Initializable {
     private static final Logger LOGGER = Logger.getLogger(TodoController.class.getName());
+    // Number of tasks shown while a list is loading; more wouldn't fit on screen before it is loaded
+    static final int LOADING_PREVIEW_ROWS = 500;
+    // Number of tasks named in one reminder; the rest are counted
+    private static final int MAX_REMINDERS_SHOWN = 10;
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT)
+            .withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * How long before the due date a reminder comes.
+     */
+    private enum ReminderLead {
+        NONE("No reminder", null),
+        AT_DUE_DATE("At the due time", Duration.ZERO),
+        QUARTER_HOUR("15 minutes before", Duration.ofMinutes(15)),
+        HOUR("1 hour before", Duration.ofHours(1)),
+        DAY("1 day before", Duration.ofDays(1));
+
+        private final String label;
+        private final Duration lead;
+
+        ReminderLead(String label, Duration lead) {
+            this.label = label;
+            this.lead = lead;
+        }
+
+        static ReminderLead of(Instant dueDate, Instant reminder) {
+            for (ReminderLead option : values()) {
+                if (option.lead != null && dueDate != null && reminder != null && reminder.equals(dueDate.minus(option.lead))) {
+                    return option;
+                }
+            }
+            return NONE;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    @FXML
+    private ComboBox<String> listChooser;
+
+    @FXML
+    private Button newListButton;
 
     @FXML
     private TextField taskInput;
@@ -26,6 +104,9 @@ public class TodoController implements Initializable {
     @FXML
     private Button addButton;
 
+    @FXML
+    private TextField searchInput;
+
     @FXML
     private TableView<Task> taskTable;
 
@@ -35,55 +116,145 @@ public class TodoController implements Initializable {
     @FXML
     private TableColumn<Task, String> descriptionColumn;
 
+    @FXML
+    private TableColumn<Task, Instant> dueColumn;
+
+    @FXML
+    private Button dueDateButton;
+
     @FXML
     private Button deleteButton;
 
+    @FXML
+    private Button completeSelectedButton;
+
     @FXML
     private Button clearCompletedButton;
 
-    private ObservableList<Task> taskList;
-    private JsonDatabaseManager jsonDatabaseManager;
+    @FXML
+    private Label remainingLabel;
+
+    @FXML
+    private ProgressIndicator loadingIndicator;
+
+    @FXML
+    private ToggleGroup statusFilterGroup;
+
+    @FXML
+    private ToggleButton allFilterButton;
+
+    @FXML
+    private ToggleButton activeFilterButton;
+
+    @FXML
+    private ToggleButton completedFilterButton;
+
+    @FXML
+    private ToggleButton overdueFilterButton;
+
+    @FXML
+    private ToggleButton dueSortButton;
+
+    private PagedTaskList taskList;
+    private TaskQuery.Status statusFilter = TaskQuery.Status.ALL;
+    private TaskLists taskLists;
+    // Keeps the shown list open; the others are closed when the list cache needs the room
+    private TaskLists.Lease listLease;
+    private TaskRepository taskRepository;
+    // Opens the shown list in the background; until it is done, its first tasks are shown from loadingRows
+    private ListLoader listLoader;
+    private final ObservableList<Task> loadingRows = FXCollections.observableArrayList();
+    // Tasks added while the list was loading, saved once it is loaded
+    private final List<String> queuedDescriptions = new ArrayList<>();
+    // Changes from any thread wait here until the application thread applies them together
+    private final Queue<TaskChange> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean changesScheduled = new AtomicBoolean();
+    private boolean scrollToEndOnNextChange;
+    private final TaskChangeListener changeListener = this::onTaskChanges;
+    private final TaskReminderListener reminderListener = new TaskReminderListener() {
+        @Override
+        public void onReminders(List<TaskRecord> tasks) {
+            Platform.runLater(() -> showReminders(tasks));
+        }
+
+        @Override
+        public void onOverdue(List<TaskRecord> tasks) {
+            Platform.runLater(TodoController.this::onTasksOverdue);
+        }
+    };
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         try {
-            // Initialize JSON database manager
-            jsonDatabaseManager = new JsonDatabaseManager();
-            LOGGER.info("JSON database manager initialized successfully");
+            // The lists use the configured storage engine (the JSON database manager by default)
+            taskLists = new TaskLists(StorageConfig.fromSystemProperties());
 
-            // Load tasks from JSON file
-            taskList = jsonDatabaseManager.getAllTasks();
-            taskTable.setItems(taskList);
-            LOGGER.info("Loaded " + taskList.size() + " tasks from JSON file");
+            // Switch between the named lists, each with its own storage
+            listChooser.getItems().setAll(taskLists.getNames());
+            listChooser.getSelectionModel().select(TaskLists.DEFAULT_LIST);
+            listChooser.valueProperty().addListener((observable, oldValue, newValue) -> switchList(newValue));
+            newListButton.setOnAction(event -> createList());
 
             // Set up table columns
             completedColumn.setCellValueFactory(new PropertyValueFactory<>("completed"));
-            completedColumn.setCellFactory(CheckBoxTableCell.forTableColumn(completedColumn));
+            completedColumn.setCellFactory(column -> createCompletedCell());
             completedColumn.setEditable(true);
+            // The rows come sorted from the repository; the table can't reorder a paged list
+            completedColumn.setSortable(false);
 
             descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
+            descriptionColumn.setCellFactory(TextFieldTableCell.forTableColumn());
+            descriptionColumn.setOnEditCommit(event -> editTaskDescription(event.getRowValue(), event.getNewValue()));
+            descriptionColumn.setSortable(false);
+
+            // Overdue tasks show their due date in red; the order by due date comes from the repository's index
+            dueColumn.setCellValueFactory(new PropertyValueFactory<>("dueDate"));
+            dueColumn.setCellFactory(column -> createDueDateCell());
+            dueColumn.setSortable(false);
 
-            // Make the table editable
+            // Make the table editable and allow selecting several tasks at once
             taskTable.setEditable(true);
+            taskTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
             // Set up button actions
             addButton.setOnAction(event -> addTask());
             deleteButton.setOnAction(event -> deleteSelectedTask());
+            completeSelectedButton.setOnAction(event -> completeSelectedTasks());
             clearCompletedButton.setOnAction(event -> clearCompletedTasks());
+            dueDateButton.setOnAction(event -> editDueDate());
 
             // Allow adding tasks by pressing Enter in the text field
             taskInput.setOnAction(event -> addTask());
 
-            // Enable/disable delete button based on selection
-            taskTable.getSelectionModel().selectedItemProperty().addListener(
-                (observable, oldValue, newValue) -> deleteButton.setDisable(newValue == null)
+            // Filter the table through the search index on every keystroke
+            searchInput.textProperty().addListener((observable, oldValue, newValue) -> refreshView());
+
+            // Switch between the All, Active and Completed views; one of them is always selected
+            allFilterButton.setUserData(TaskQuery.Status.ALL);
+            activeFilterButton.setUserData(TaskQuery.Status.ACTIVE);
+            completedFilterButton.setUserData(TaskQuery.Status.COMPLETED);
+            statusFilterGroup.selectedToggleProperty().addListener((observable, oldValue, newValue) -> {
+                if (newValue == null) {
+                    statusFilterGroup.selectToggle(oldValue);
+                    return;
+                }
+                statusFilter = (TaskQuery.Status) newValue.getUserData();
+                refreshView();
+            });
+            overdueFilterButton.selectedProperty().addListener((observable, oldValue, newValue) -> refreshView());
+            dueSortButton.selectedProperty().addListener((observable, oldValue, newValue) -> refreshView());
+            refreshView();
+
+            // Enable/disable the selection buttons based on selection
+            taskTable.getSelectionModel().getSelectedItems().addListener(
+                (ListChangeListener<Task>) change -> updateSelectionButtons()
             );
 
-            // Initially disable delete button
-            deleteButton.setDisable(true);
+            // Initially disable the selection buttons
+            updateSelectionButtons();
 
-            // Listen for changes in task completion status and update JSON file
-            setupCompletionListener();
+            // Load the default list in the background, so that the window appears at once
+            showList(TaskLists.DEFAULT_LIST);
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize TodoController", e);
@@ -92,23 +263,342 @@ public class TodoController implements Initializable {
     }
 
     /**
-     * Sets up a listener to detect changes in task completion status and update the JSON file.
+     * Starts showing a list, and stops using the list that was shown before. The list is opened on a
+     * background thread and its first tasks appear in the table while it loads; new tasks can be typed
+     * in meanwhile and are saved once it is loaded.
+     */
+    private void showList(String name) {
+        if (listLease != null) {
+            taskRepository.removeChangeListener(changeListener);
+            taskRepository.removeReminderListener(reminderListener);
+            listLease.close();
+            listLease = null;
+            taskRepository = null;
+            taskList = null;
+        }
+        pendingChanges.clear();
+        loadingRows.clear();
+        taskTable.setItems(loadingRows);
+        setLoading(true);
+        remainingLabel.setText("Loading...");
+
+        listLoader = new ListLoader(name);
+        Thread thread = new Thread(listLoader, "task-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Shows a list once it is loaded, through a list that only fetches the rows the table displays.
+     * Changes to the tasks are followed from now on, whether made here or by a background writer.
+     */
+    private void loadFinished(ListLoader loader, TaskLists.Lease lease) {
+        if (loader != listLoader || taskLists == null) {
+            // The window was closed while the list was loading
+            lease.close();
+            return;
+        }
+        listLease = lease;
+        taskRepository = lease.getRepository();
+        taskList = new PagedTaskList(taskRepository, currentQuery());
+        taskTable.setItems(taskList);
+        loadingRows.clear();
+        taskRepository.addChangeListener(changeListener);
+        // Reminders that came while the list wasn't shown are delivered now
+        taskRepository.addReminderListener(reminderListener);
+        setLoading(false);
+        updateRemainingLabel();
+
+        StartupMetrics startup = StartupMetrics.get();
+        // Marked here if the list was empty or already open, so no row was shown while it loaded
+        startup.mark(StartupMetrics.Phase.FIRST_ROW);
+        startup.tasksLoaded(taskRepository.getTaskCount());
+        LOGGER.info("Showing " + taskList.size() + " tasks from list " + loader.name);
+
+        if (!queuedDescriptions.isEmpty()) {
+            List<String> descriptions = new ArrayList<>(queuedDescriptions);
+            queuedDescriptions.clear();
+            try {
+                scrollToEndOnNextChange = true;
+                taskRepository.addTasks(descriptions);
+                LOGGER.info("Added " + descriptions.size() + " tasks entered while the list was loading");
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Failed to add tasks to JSON file", e);
+                showErrorAlert("JSON Error", "Failed to add tasks: " + e.getMessage());
+            }
+        }
+    }
+
+    private void loadFailed(ListLoader loader, Exception e) {
+        if (loader != listLoader || taskLists == null) {
+            return;
+        }
+        LOGGER.log(Level.SEVERE, "Failed to open task list " + loader.name, e);
+        loadingRows.clear();
+        queuedDescriptions.clear();
+        setLoading(false);
+        remainingLabel.setText("");
+        showErrorAlert("List Error", "Failed to open list " + loader.name + ": " + e.getMessage());
+    }
+
+    /**
+     * Disables everything that needs the loaded list while it is loading. Tasks can still be typed in.
+     */
+    private void setLoading(boolean loading) {
+        loadingIndicator.setVisible(loading);
+        loadingIndicator.setManaged(loading);
+        listChooser.setDisable(loading);
+        newListButton.setDisable(loading);
+        clearCompletedButton.setDisable(loading);
+        taskTable.setEditable(!loading);
+        updateSelectionButtons();
+    }
+
+    /**
+     * Shows the list chosen in the list chooser.
+     */
+    private void switchList(String name) {
+        if (name == null || (listLease != null && name.equals(listLease.getName()))) {
+            return;
+        }
+        showList(name);
+    }
+
+    /**
+     * Asks for the name of a new list, creates it and shows it.
+     */
+    @FXML
+    private void createList() {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("New List");
+        dialog.setHeaderText(null);
+        dialog.setContentText("List name:");
+        Optional<String> result = dialog.showAndWait();
+        if (result.isEmpty() || result.get().trim().isEmpty()) {
+            return;
+        }
+        String name = result.get().trim();
+        try {
+            if (!taskLists.create(name)) {
+                showInfoAlert("List Exists", "There is already a list named " + name + ".");
+            } else {
+                listChooser.getItems().setAll(taskLists.getNames());
+            }
+            listChooser.getSelectionModel().select(name);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to create task list " + name, e);
+            showErrorAlert("List Error", "Failed to create list: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a cell with a check box that writes the completion status of its row to the repository.
+     * The check box shows the task's status and doesn't change it itself; the change comes back through
+     * the change listener like any other. Only the visible cells exist, whatever the number of tasks.
      */
-    private void setupCompletionListener() {
-        for (Task task : taskList) {
-            task.completedProperty().addListener((observable, oldValue, newValue) -> {
-                if (task.getId() != -1) { // Only update if task has been saved
-                    try {
-                        jsonDatabaseManager.updateTaskCompletion(task.getId(), newValue);
-                        LOGGER.info("Updated completion status for task ID " + task.getId() + " to " + newValue);
-                    } catch (Exception e) {
-                        LOGGER.log(Level.SEVERE, "Failed to update task completion in JSON file", e);
-                        showErrorAlert("JSON Error", "Failed to update task completion: " + e.getMessage());
-                        // Revert the change in the UI
-                        task.setCompleted(oldValue);
-                    }
+    private TableCell<Task, Boolean> createCompletedCell() {
+        CheckBox checkBox = new CheckBox();
+        TableCell<Task, Boolean> cell = new TableCell<>() {
+            @Override
+            protected void updateItem(Boolean completed, boolean empty) {
+                super.updateItem(completed, empty);
+                if (empty || completed == null) {
+                    setGraphic(null);
+                } else {
+                    checkBox.setSelected(completed);
+                    // Tasks shown while the list is loading can't be changed yet
+                    checkBox.setDisable(taskRepository == null);
+                    setGraphic(checkBox);
                 }
-            });
+            }
+        };
+        cell.setAlignment(Pos.CENTER);
+        checkBox.setOnAction(event -> {
+            Task task = cell.getTableRow().getItem();
+            if (task != null) {
+                updateTaskCompletion(task, checkBox.isSelected());
+            }
+        });
+        return cell;
+    }
+
+    /**
+     * Creates a cell that shows the due date of its row, in red once the task is overdue, and the
+     * reminder time as a tooltip.
+     */
+    private TableCell<Task, Instant> createDueDateCell() {
+        return new TableCell<>() {
+            @Override
+            protected void updateItem(Instant dueDate, boolean empty) {
+                super.updateItem(dueDate, empty);
+                Task task = empty || getTableRow() == null ? null : getTableRow().getItem();
+                if (task == null || dueDate == null) {
+                    setText(null);
+                    setStyle("");
+                    setTooltip(null);
+                    return;
+                }
+                setText(DUE_DATE_FORMAT.format(dueDate));
+                setStyle(task.isOverdue(Instant.now()) ? "-fx-text-fill: #c0392b; -fx-font-weight: bold;" : "");
+                setTooltip(task.getReminder() == null ? null
+                        : new Tooltip("Reminder: " + DUE_DATE_FORMAT.format(task.getReminder())));
+            }
+        };
+    }
+
+    /**
+     * Asks for the due date and reminder of the selected tasks and saves them with a single write.
+     * Clearing the date removes both.
+     */
+    @FXML
+    private void editDueDate() {
+        List<Task> selectedTasks = new ArrayList<>(taskTable.getSelectionModel().getSelectedItems());
+        if (selectedTasks.isEmpty() || taskRepository == null) {
+            return;
+        }
+        Task first = selectedTasks.get(0);
+        ZoneId zone = ZoneId.systemDefault();
+        DatePicker datePicker = new DatePicker();
+        TextField timeField = new TextField("17:00");
+        timeField.setPromptText("HH:mm");
+        ComboBox<ReminderLead> reminderChooser = new ComboBox<>(FXCollections.observableArrayList(ReminderLead.values()));
+        reminderChooser.setValue(ReminderLead.of(first.getDueDate(), first.getReminder()));
+        if (first.getDueDate() != null) {
+            LocalDateTime due = LocalDateTime.ofInstant(first.getDueDate(), zone);
+            datePicker.setValue(due.toLocalDate());
+            timeField.setText(due.toLocalTime().format(TIME_FORMAT));
+        }
+
+        GridPane form = new GridPane();
+        form.setHgap(10);
+        form.setVgap(10);
+        form.addRow(0, new Label("Date:"), datePicker);
+        form.addRow(1, new Label("Time:"), timeField);
+        form.addRow(2, new Label("Reminder:"), reminderChooser);
+        ButtonType clear = new ButtonType("Clear", ButtonBar.ButtonData.LEFT);
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Due Date");
+        dialog.setHeaderText(selectedTasks.size() == 1 ? first.getDescription() : selectedTasks.size() + " tasks");
+        dialog.getDialogPane().setContent(form);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL, clear);
+        Optional<ButtonType> result = dialog.showAndWait();
+        if (result.isEmpty() || result.get() == ButtonType.CANCEL) {
+            return;
+        }
+
+        Instant dueDate = null;
+        Instant reminder = null;
+        if (result.get() == ButtonType.OK && datePicker.getValue() != null) {
+            LocalTime time;
+            try {
+                time = timeField.getText().isBlank() ? LocalTime.MIDNIGHT : LocalTime.parse(timeField.getText().trim());
+            } catch (DateTimeParseException e) {
+                showErrorAlert("Invalid Time", "Enter the time as hours and minutes, such as 17:30.");
+                return;
+            }
+            dueDate = datePicker.getValue().atTime(time).atZone(zone).toInstant();
+            Duration lead = reminderChooser.getValue() == null ? null : reminderChooser.getValue().lead;
+            reminder = lead == null ? null : dueDate.minus(lead);
+        }
+        try {
+            TaskBatch batch = new TaskBatch();
+            for (Task task : selectedTasks) {
+                batch.setSchedule(task.getId(), dueDate, reminder);
+            }
+            taskRepository.applyBatch(batch);
+            LOGGER.info("Set the due date of " + selectedTasks.size() + " tasks to " + dueDate);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to update task due dates in JSON file", e);
+            showErrorAlert("JSON Error", "Failed to update due dates: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows the tasks whose reminder has come. The alert doesn't block, so reminders that come while it
+     * is open get an alert of their own.
+     */
+    private void showReminders(List<TaskRecord> tasks) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tasks.size() && i < MAX_REMINDERS_SHOWN; i++) {
+            TaskRecord task = tasks.get(i);
+            text.append("\u2022 ").append(task.getDescription());
+            if (task.getDueDate() != null) {
+                text.append(" (due ").append(DUE_DATE_FORMAT.format(task.getDueDate())).append(')');
+            }
+            text.append('\n');
+        }
+        if (tasks.size() > MAX_REMINDERS_SHOWN) {
+            text.append("and ").append(tasks.size() - MAX_REMINDERS_SHOWN).append(" more");
+        }
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Reminder");
+        alert.setHeaderText(tasks.size() == 1 ? "A task needs your attention" : tasks.size() + " tasks need your attention");
+        alert.setContentText(text.toString().trim());
+        alert.show();
+    }
+
+    /**
+     * Shows tasks that have just become overdue: the overdue view is read again, and otherwise only
+     * the visible cells are redrawn.
+     */
+    private void onTasksOverdue() {
+        if (taskList == null) {
+            return;
+        }
+        if (overdueFilterButton.isSelected()) {
+            refreshView();
+        } else {
+            taskTable.refresh();
+            updateRemainingLabel();
+        }
+    }
+
+    /**
+     * Saves the completion status of a task that was ticked or unticked in the table.
+     */
+    private void updateTaskCompletion(Task task, boolean completed) {
+        try {
+            taskRepository.updateTaskCompletion(task.getId(), completed);
+            LOGGER.info("Updated completion status for task ID " + task.getId() + " to " + completed);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to update task completion in JSON file", e);
+            showErrorAlert("JSON Error", "Failed to update task completion: " + e.getMessage());
+            // Show the stored status again
+            taskTable.refresh();
+        }
+    }
+
+    /**
+     * Receives changes from the repository on the thread that made them. A burst of changes is
+     * applied to the table with a single pass on the application thread.
+     */
+    private void onTaskChanges(List<TaskChange> changes) {
+        pendingChanges.addAll(changes);
+        if (changesScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::applyPendingChanges);
+        }
+    }
+
+    /**
+     * Applies every change received so far to the table and the remaining count.
+     */
+    private void applyPendingChanges() {
+        // Cleared first, so that a change arriving from now on schedules another pass
+        changesScheduled.set(false);
+        List<TaskChange> changes = new ArrayList<>();
+        for (TaskChange change = pendingChanges.poll(); change != null; change = pendingChanges.poll()) {
+            changes.add(change);
+        }
+        if (changes.isEmpty() || taskList == null) {
+            return;
+        }
+        taskList.applyChanges(changes);
+        updateRemainingLabel();
+        if (scrollToEndOnNextChange) {
+            scrollToEndOnNextChange = false;
+            if (!taskList.isEmpty()) {
+                taskTable.scrollTo(taskList.size() - 1);
+            }
         }
     }
 
@@ -118,29 +608,18 @@ public class TodoController implements Initializable {
     @FXML
     private void addTask() {
         String taskDescription = taskInput.getText().trim();
-        if (!taskDescription.isEmpty()) {
+        if (!taskDescription.isEmpty() && taskRepository == null) {
+            // Saved once the list is loaded; shown after the tasks loaded so far
+            queuedDescriptions.add(taskDescription);
+            loadingRows.add(new Task(taskDescription));
+            taskInput.clear();
+            taskInput.requestFocus();
+        } else if (!taskDescription.isEmpty()) {
             try {
                 // Add task to JSON file
-                int taskId = jsonDatabaseManager.addTask(taskDescription);
-                
-                // Create task object with the generated ID
-                Task newTask = new Task(taskId, taskDescription, false);
-                
-                // Add completion listener for the new task
-                newTask.completedProperty().addListener((observable, oldValue, newValue) -> {
-                    try {
-                        jsonDatabaseManager.updateTaskCompletion(newTask.getId(), newValue);
-                        LOGGER.info("Updated completion status for task ID " + newTask.getId() + " to " + newValue);
-                    } catch (Exception e) {
-                        LOGGER.log(Level.SEVERE, "Failed to update task completion in JSON file", e);
-                        showErrorAlert("JSON Error", "Failed to update task completion: " + e.getMessage());
-                        // Revert the change in the UI
-                        newTask.setCompleted(oldValue);
-                    }
-                });
-                
-                // Add to UI list
-                taskList.add(newTask);
+                // New tasks have the highest ID, so the table shows them last once the change arrives
+                scrollToEndOnNextChange = true;
+                int taskId = taskRepository.addTask(taskDescription);
                 taskInput.clear();
                 taskInput.requestFocus();
                 
@@ -153,27 +632,117 @@ public class TodoController implements Initializable {
     }
 
     /**
-     * Deletes the currently selected task from the JSON file and UI.
+     * Saves an edited task description, or reverts the cell if the new description is empty.
+     */
+    private void editTaskDescription(Task task, String newValue) {
+        String description = newValue == null ? "" : newValue.trim();
+        if (description.isEmpty() || description.equals(task.getDescription())) {
+            taskTable.refresh();
+            return;
+        }
+        try {
+            taskRepository.updateTaskDescription(task.getId(), description);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to update task description in JSON file", e);
+            showErrorAlert("JSON Error", "Failed to update task description: " + e.getMessage());
+            taskTable.refresh();
+        }
+    }
+
+    /**
+     * Gets the query for the selected view and the search field.
+     */
+    private TaskQuery currentQuery() {
+        TaskQuery query = TaskQuery.of(statusFilter).matching(searchInput.getText());
+        if (dueSortButton.isSelected()) {
+            query.orderBy(TaskQuery.Order.DUE_DATE);
+        }
+        if (overdueFilterButton.isSelected()) {
+            query.overdueAt(Instant.now());
+        }
+        return query;
+    }
+
+    /**
+     * Reloads the table for the selected view and the search field, and updates the number of
+     * remaining tasks. Only the visible rows are read again; the filtering and the count come from
+     * the repository's indexes.
+     */
+    private void refreshView() {
+        if (taskList == null) {
+            // The query is applied when the list is loaded
+            return;
+        }
+        taskList.setQuery(currentQuery());
+        updateRemainingLabel();
+    }
+
+    private void updateRemainingLabel() {
+        if (taskRepository == null) {
+            return;
+        }
+        // The overdue tasks are the start of the due date index, so counting them doesn't scan the tasks
+        int overdue = taskRepository.queryTaskIds(TaskQuery.of(TaskQuery.Status.ACTIVE).overdueAt(Instant.now())).length;
+        remainingLabel.setText(taskRepository.countTasks(TaskQuery.Status.ACTIVE) + " remaining"
+                + (overdue > 0 ? ", " + overdue + " overdue" : ""));
+    }
+
+    /**
+     * Enables the delete and complete buttons only while tasks are selected.
+     */
+    private void updateSelectionButtons() {
+        boolean disabled = taskRepository == null || taskTable.getSelectionModel().getSelectedItems().isEmpty();
+        deleteButton.setDisable(disabled);
+        completeSelectedButton.setDisable(disabled);
+        dueDateButton.setDisable(disabled);
+    }
+
+    /**
+     * Deletes the currently selected tasks from the JSON file and UI with a single write.
      */
     @FXML
     private void deleteSelectedTask() {
-        Task selectedTask = taskTable.getSelectionModel().getSelectedItem();
-        if (selectedTask != null) {
+        List<Task> selectedTasks = new ArrayList<>(taskTable.getSelectionModel().getSelectedItems());
+        if (!selectedTasks.isEmpty()) {
             try {
-                // Delete from JSON file
-                jsonDatabaseManager.deleteTask(selectedTask.getId());
-                
-                // Remove from UI list
-                taskList.remove(selectedTask);
-                
-                LOGGER.info("Task deleted successfully: " + selectedTask.getDescription() + " with ID: " + selectedTask.getId());
+                int[] taskIds = selectedTasks.stream().mapToInt(Task::getId).toArray();
+                taskRepository.deleteTasks(taskIds);
+                LOGGER.info("Deleted " + taskIds.length + " tasks");
             } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Failed to delete task from JSON file", e);
-                showErrorAlert("JSON Error", "Failed to delete task: " + e.getMessage());
+                LOGGER.log(Level.SEVERE, "Failed to delete tasks from JSON file", e);
+                showErrorAlert("JSON Error", "Failed to delete tasks: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Marks the currently selected tasks as completed with a single write.
+     */
+    @FXML
+    private void completeSelectedTasks() {
+        List<Task> pendingTasks = new ArrayList<>();
+        for (Task task : taskTable.getSelectionModel().getSelectedItems()) {
+            if (!task.isCompleted()) {
+                pendingTasks.add(task);
+            }
+        }
+        if (pendingTasks.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<Integer, Boolean> completions = new LinkedHashMap<>();
+            for (Task task : pendingTasks) {
+                completions.put(task.getId(), true);
+            }
+            taskRepository.updateCompletion(completions);
+            LOGGER.info("Completed " + completions.size() + " tasks");
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to complete tasks in JSON file", e);
+            showErrorAlert("JSON Error", "Failed to complete tasks: " + e.getMessage());
+        }
+    }
+
     /**
      * Clears all completed tasks from the JSON file and UI.
      */
@@ -181,11 +750,7 @@ public class TodoController implements Initializable {
     private void clearCompletedTasks() {
         try {
             // Clear completed tasks from JSON file
-            int deletedCount = jsonDatabaseManager.clearCompletedTasks();
-            
-            // Remove completed tasks from UI list
-            taskList.removeIf(Task::isCompleted);
-            
+            int deletedCount = taskRepository.clearCompletedTasks();
             LOGGER.info("Cleared " + deletedCount + " completed tasks");
             
             if (deletedCount > 0) {
@@ -199,6 +764,62 @@ public class TodoController implements Initializable {
         }
     }
 
+    /**
+     * Opens a list on a background thread and passes the tasks read so far to the table in chunks,
+     * coalesced into one update of the table per pass of the application thread.
+     */
+    private final class ListLoader implements Runnable, TaskLoadListener {
+        final String name;
+        private final TaskLists lists = taskLists;
+        private final Queue<TaskRecord> loadedRows = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger loadedCount = new AtomicInteger();
+        private final AtomicBoolean rowsScheduled = new AtomicBoolean();
+
+        ListLoader(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            TaskLists.Lease lease;
+            try {
+                lease = lists.acquire(name, this);
+            } catch (Exception e) {
+                Platform.runLater(() -> loadFailed(this, e));
+                return;
+            }
+            Platform.runLater(() -> loadFinished(this, lease));
+        }
+
+        @Override
+        public void onTasksLoaded(List<TaskRecord> tasks) {
+            int before = loadedCount.getAndAdd(tasks.size());
+            for (int i = 0; i < tasks.size() && before + i < LOADING_PREVIEW_ROWS; i++) {
+                loadedRows.add(tasks.get(i));
+            }
+            if (rowsScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::showLoadedRows);
+            }
+        }
+
+        private void showLoadedRows() {
+            rowsScheduled.set(false);
+            if (this != listLoader || taskList != null) {
+                return;
+            }
+            List<Task> rows = new ArrayList<>();
+            for (TaskRecord record = loadedRows.poll(); record != null; record = loadedRows.poll()) {
+                rows.add(record.toTask());
+            }
+            // Tasks typed in while loading stay at the end
+            loadingRows.addAll(loadingRows.size() - queuedDescriptions.size(), rows);
+            remainingLabel.setText("Loading... " + loadedCount.get() + " tasks");
+            if (!rows.isEmpty()) {
+                StartupMetrics.get().mark(StartupMetrics.Phase.FIRST_ROW);
+            }
+        }
+    }
+
     /**
      * Shows an error alert dialog.
      */
@@ -226,14 +847,19 @@ public class TodoController implements Initializable {
      * This should be called when the application is closing.
      */
     public void cleanup() {
-        if (jsonDatabaseManager != null) {
+        if (taskLists != null) {
+            if (taskRepository != null) {
+                taskRepository.removeChangeListener(changeListener);
+                taskRepository.removeReminderListener(reminderListener);
+            }
             try {
-                // Save current state to JSON file
-                jsonDatabaseManager.saveAllTasks(taskList);
-                LOGGER.info("Final save to JSON file completed during cleanup");
+                // Every change is already persisted; closing waits for background compaction to finish
+                taskLists.close();
+                LOGGER.info("JSON database closed during cleanup");
             } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Failed to save tasks during cleanup", e);
+                LOGGER.log(Level.SEVERE, "Failed to close JSON database during cleanup", e);
             }
+            taskLists = null;
         }
     }
 }
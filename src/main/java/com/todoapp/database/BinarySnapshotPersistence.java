@@ -0,0 +1,158 @@
+package com.todoapp.database;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists the tasks in a compact binary snapshot that is read through a memory-mapped buffer.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header:  int magic ("TDBS"), int version, int record count
+ * record:  int id, byte flags, [long due date], [long reminder], int description length, UTF-8 description bytes
+ * </pre>
+ * The flags mark the task completed (1) and whether the due date (2) and reminder (4) follow, as
+ * milliseconds since the epoch. A task without a description has the flag 8 and a length of 0, so that
+ * it isn't read back with an empty one. Version 1 files, whose flags byte only holds the completion
+ * status and which have no dates, are still read.
+ */
+class BinarySnapshotPersistence extends SnapshotPersistence {
+    private static final Logger LOGGER = Logger.getLogger(BinarySnapshotPersistence.class.getName());
+    static final int MAGIC = 0x54444253;
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final int COMPLETED = 1;
+    private static final int HAS_DUE_DATE = 2;
+    private static final int HAS_REMINDER = 4;
+    private static final int NO_DESCRIPTION = 8;
+
+    BinarySnapshotPersistence(File file) {
+        this(file, StorageConfig.Durability.FLUSH);
+    }
+
+    BinarySnapshotPersistence(File file, StorageConfig.Durability durability) {
+        super(file, durability);
+    }
+
+    @Override
+    void read(File source, Consumer<TaskRecord> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Binary snapshot is too short: " + source.getPath());
+            }
+            // A single mapping is limited to 2 GB, so larger files are walked in windows
+            MappedRegion region = new MappedRegion(channel, fileSize);
+            int magic = region.buffer(0, HEADER_SIZE).getInt();
+            if (magic != MAGIC) {
+                throw new IOException("Not a binary task snapshot: " + source.getPath());
+            }
+            MappedByteBuffer header = region.buffer(4, HEADER_SIZE - 4);
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported binary snapshot version " + version + " in " + source.getPath());
+            }
+            int count = header.getInt();
+
+            long position = HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                MappedByteBuffer buffer = region.buffer(position, 5);
+                int id = buffer.getInt();
+                int flags = version == 1 ? (buffer.get() != 0 ? COMPLETED : 0) : buffer.get();
+                position += 5;
+                Instant dueDate = null;
+                Instant reminder = null;
+                if ((flags & HAS_DUE_DATE) != 0) {
+                    dueDate = Instant.ofEpochMilli(region.buffer(position, 8).getLong());
+                    position += 8;
+                }
+                if ((flags & HAS_REMINDER) != 0) {
+                    reminder = Instant.ofEpochMilli(region.buffer(position, 8).getLong());
+                    position += 8;
+                }
+                int length = region.buffer(position, 4).getInt();
+                position += 4;
+                if (length < 0) {
+                    throw new IOException("Corrupt binary snapshot at offset " + position + ": " + source.getPath());
+                }
+
+                byte[] bytes = new byte[length];
+                region.buffer(position, length).get(bytes);
+                position += length;
+                String description = (flags & NO_DESCRIPTION) != 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+                sink.accept(new TaskRecord(id, description, (flags & COMPLETED) != 0, dueDate, reminder));
+            }
+        }
+    }
+
+    @Override
+    void write(OutputStream target, Collection<TaskRecord> tasks) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tasks.size());
+            for (TaskRecord task : tasks) {
+                byte[] description = task.getDescription() == null
+                        ? new byte[0] : task.getDescription().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(task.getId());
+                out.writeByte((task.isCompleted() ? COMPLETED : 0) | (task.getDueDate() != null ? HAS_DUE_DATE : 0)
+                        | (task.getReminder() != null ? HAS_REMINDER : 0) | (task.getDescription() == null ? NO_DESCRIPTION : 0));
+                if (task.getDueDate() != null) {
+                    out.writeLong(task.getDueDate().toEpochMilli());
+                }
+                if (task.getReminder() != null) {
+                    out.writeLong(task.getReminder().toEpochMilli());
+                }
+                out.writeInt(description.length);
+                out.write(description);
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Saved " + tasks.size() + " tasks to binary snapshot");
+        }
+    }
+
+    /**
+     * A read-only mapping of part of the file that is moved forward as the reader advances.
+     */
+    private static final class MappedRegion {
+        private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+
+        private final FileChannel channel;
+        private final long fileSize;
+        private MappedByteBuffer mapping;
+        private long start;
+
+        MappedRegion(FileChannel channel, long fileSize) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+        }
+
+        /**
+         * Returns a buffer positioned at the given file offset with at least {@code length} bytes remaining.
+         */
+        MappedByteBuffer buffer(long offset, int length) throws IOException {
+            if (offset + length > fileSize) {
+                throw new IOException("Binary snapshot is truncated at offset " + offset);
+            }
+            if (mapping == null || offset < start || offset + length > start + mapping.capacity()) {
+                start = offset;
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+            }
+            mapping.position((int) (offset - start));
+            return mapping;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.todoapp.database;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Output stream that adds the number of bytes passing through it to a counter.
+ */
+class CountingOutputStream extends FilterOutputStream {
+    private final LongAdder counter;
+
+    CountingOutputStream(OutputStream out, LongAdder counter) {
+        super(out);
+        this.counter = counter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        counter.increment();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        counter.add(len);
+    }
+}
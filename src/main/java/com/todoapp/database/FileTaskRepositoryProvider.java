@@ -0,0 +1,18 @@
+package com.todoapp.database;
+
+/**
+ * Provides the file-backed {@link JsonDatabaseManager} engine.
+ */
+public class FileTaskRepositoryProvider implements TaskRepositoryProvider {
+    public static final String NAME = "file";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TaskRepository create(StorageConfig config) {
+        return new JsonDatabaseManager(config);
+    }
+}
@@ -0,0 +1,112 @@
+package com.todoapp.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values with log-linear buckets, in the manner of HdrHistogram: values below
+ * {@value #SUB_BUCKETS} get a bucket each, and every higher power of two is split into
+ * {@value #HALF_SUB_BUCKETS} equal buckets. Percentiles are therefore accurate to within about 1.6% of
+ * the value over the whole range, with a fixed amount of memory and no allocation when recording.
+ * <p>
+ * Recording is lock-free and may run on many threads. A percentile read while values are being recorded
+ * reflects some but not necessarily all of them.
+ */
+class Histogram {
+    private static final int SUB_BUCKETS = 128;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int SUB_BUCKET_BITS = 6;
+    /** Higher values are counted as this one; in nanoseconds it is over an hour. */
+    static final long MAX_VALUE = (1L << 42) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * @param value The value; negative values are counted as zero
+     */
+    void record(long value) {
+        long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+        counts.incrementAndGet(bucketIndex(clamped));
+        count.increment();
+        sum.add(clamped);
+        if (clamped > max.get()) {
+            max.accumulateAndGet(clamped, Math::max);
+        }
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Gets the value below or at which a percentage of the recorded values fall.
+     * @param percentile The percentage, from 0 to 100
+     * @return The highest value of the bucket that holds the percentile, or 0 if nothing was recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded concurrently may or may not be kept.
+     */
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Keep the seven highest bits: the top one selects the power of two, the other six the sub-bucket
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long subBucket = HALF_SUB_BUCKETS + index % HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
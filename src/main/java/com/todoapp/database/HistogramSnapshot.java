@@ -0,0 +1,75 @@
+package com.todoapp.database;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of the values recorded by a histogram at one point in time, for monitoring tools.
+ * The unit of the values is given by the attribute that returns the summary.
+ */
+public class HistogramSnapshot {
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+    private final double p999;
+    private final double max;
+
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "p999", "max"})
+    public HistogramSnapshot(long count, double mean, double p50, double p90, double p99, double p999, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * Summarizes a histogram, dividing its values by a unit.
+     * @param histogram The histogram
+     * @param unit The number of recorded units per reported unit, for example 1000 to report nanoseconds as microseconds
+     * @return The summary
+     */
+    static HistogramSnapshot of(Histogram histogram, double unit) {
+        return new HistogramSnapshot(histogram.getCount(), histogram.getMean() / unit,
+                histogram.getValueAtPercentile(50) / unit, histogram.getValueAtPercentile(90) / unit,
+                histogram.getValueAtPercentile(99) / unit, histogram.getValueAtPercentile(99.9) / unit,
+                histogram.getMax() / unit);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getP999() {
+        return p999;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                count, mean, p50, p90, p99, p999, max);
+    }
+}
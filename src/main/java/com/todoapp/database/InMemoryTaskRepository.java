@@ -0,0 +1,73 @@
+package com.todoapp.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Task repository that keeps the tasks in memory only; nothing is read from or written to disk.
+ * Useful for tests and for benchmarking the store without I/O.
+ */
+public class InMemoryTaskRepository extends JsonDatabaseManager {
+
+    /**
+     * Creates an empty repository.
+     */
+    public InMemoryTaskRepository() {
+        this(new StorageConfig());
+    }
+
+    /**
+     * Creates an empty repository. Only the settings that don't concern persistence are used.
+     * @param config The storage configuration
+     */
+    public InMemoryTaskRepository(StorageConfig config) {
+        super(withoutBackgroundWriting(config), new NoPersistence());
+    }
+
+    private static StorageConfig withoutBackgroundWriting(StorageConfig config) {
+        // There is nothing to write, so a writer thread would only add overhead
+        StorageConfig copy = config.copy();
+        copy.setWriteBehind(false);
+        // Every task is kept in memory anyway, and an archive would be written to disk
+        copy.setArchiveKeepCompleted(-1);
+        copy.setShared(false);
+        return copy;
+    }
+
+    /**
+     * Persistence that discards every change.
+     */
+    private static final class NoPersistence implements TaskPersistence {
+        @Override
+        public void load(Consumer<TaskRecord> sink) {
+            // Nothing is stored
+        }
+
+        @Override
+        public void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) {
+            // Nothing is stored
+        }
+
+        @Override
+        public void rewrite(Collection<TaskRecord> state) {
+            // Nothing is stored
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        @Override
+        public String getPath() {
+            return "memory";
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+}
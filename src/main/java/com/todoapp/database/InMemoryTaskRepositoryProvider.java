@@ -0,0 +1,18 @@
+package com.todoapp.database;
+
+/**
+ * Provides the {@link InMemoryTaskRepository} engine.
+ */
+public class InMemoryTaskRepositoryProvider implements TaskRepositoryProvider {
+    public static final String NAME = "memory";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TaskRepository create(StorageConfig config) {
+        return new InMemoryTaskRepository(config);
+    }
+}
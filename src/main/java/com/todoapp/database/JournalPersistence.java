@@ -0,0 +1,291 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists changes by appending one small JSON record per mutation to a journal next to the snapshot file,
+ * which can be in any {@link SnapshotPersistence} format.
+ * On startup the snapshot is loaded and the journal is replayed on top of it. Once the journal holds
+ * enough records it is rotated and a background thread folds the store into a fresh snapshot, after
+ * which the rotated journal is deleted.
+ * <p>
+ * The {@link StorageConfig.Durability} of the snapshot also decides how far every write of records goes:
+ * it stays buffered, is flushed to the operating system, or is forced to the device before
+ * {@link #persist} returns. A record torn by a crash is detected on replay and ignored with the records
+ * after it.
+ */
+class JournalPersistence implements TaskPersistence {
+    private static final Logger LOGGER = Logger.getLogger(JournalPersistence.class.getName());
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final String ROTATED_SUFFIX = ".journal.old";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter recordWriter;
+    private final SnapshotPersistence snapshot;
+    private final File journalFile;
+    private final File rotatedJournalFile;
+    private final int compactionThreshold;
+    private final ExecutorService compactor;
+    private final LongAdder journalBytesWritten = new LongAdder();
+
+    private FileOutputStream journalStream;
+    private Writer journalWriter;
+    // Whether the journal file was created since the directory was last synced
+    private boolean journalCreated;
+    private int journalRecords;
+    private Future<?> pendingCompaction;
+
+    JournalPersistence(ObjectMapper objectMapper, SnapshotPersistence snapshot, int compactionThreshold) {
+        this.objectMapper = objectMapper;
+        this.recordWriter = objectMapper.writerFor(TaskMutation.class);
+        this.snapshot = snapshot;
+        this.journalFile = new File(snapshot.file.getPath() + JOURNAL_SUFFIX);
+        this.rotatedJournalFile = new File(snapshot.file.getPath() + ROTATED_SUFFIX);
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void load(Consumer<TaskRecord> sink) throws IOException {
+        // The journal may touch any task, so the snapshot is collected before the records are handed on
+        Map<Integer, TaskRecord> tasks = new LinkedHashMap<>();
+        snapshot.load(task -> tasks.put(task.getId(), task));
+
+        // A rotated journal is left behind if the process stopped before its compaction finished.
+        // Replaying it on top of a snapshot that already contains its changes is harmless.
+        boolean interruptedCompaction = rotatedJournalFile.exists();
+        int replayed = replay(rotatedJournalFile, tasks) + replay(journalFile, tasks);
+        journalRecords = replayed;
+        if (replayed > 0) {
+            LOGGER.info("Replayed " + replayed + " journal records");
+        }
+        if (interruptedCompaction) {
+            // Finish the interrupted compaction now so the next rotation can't overwrite the old journal
+            rewrite(tasks.values());
+        }
+        tasks.values().forEach(sink);
+    }
+
+    /**
+     * Applies the records of a journal file to the given tasks.
+     * @return The number of records applied
+     */
+    private int replay(File file, Map<Integer, TaskRecord> tasks) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                TaskMutation mutation;
+                try {
+                    mutation = objectMapper.readValue(line, TaskMutation.class);
+                } catch (JsonProcessingException e) {
+                    // Only the last record can be torn by a crash; everything before it is intact
+                    LOGGER.log(Level.WARNING, "Ignoring unreadable journal record in " + file.getName(), e);
+                    break;
+                }
+                apply(mutation, tasks);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Applies a single mutation to the given tasks.
+     */
+    static void apply(TaskMutation mutation, Map<Integer, TaskRecord> tasks) {
+        switch (mutation.getType()) {
+            case ADD:
+                tasks.put(mutation.getId(), mutation.toRecord(mutation.getId()));
+                break;
+            case SET_COMPLETED:
+                tasks.computeIfPresent(mutation.getId(),
+                        (id, task) -> task.withCompleted(Boolean.TRUE.equals(mutation.getCompleted())));
+                break;
+            case SET_DESCRIPTION:
+                tasks.computeIfPresent(mutation.getId(),
+                        (id, task) -> task.withDescription(mutation.getDescription()));
+                break;
+            case SET_SCHEDULE:
+                tasks.computeIfPresent(mutation.getId(),
+                        (id, task) -> task.withSchedule(mutation.getDueDate(), mutation.getReminder()));
+                break;
+            case SET_DUE_DATE:
+                tasks.computeIfPresent(mutation.getId(),
+                        (id, task) -> task.withSchedule(mutation.getDueDate(), task.getReminder()));
+                break;
+            case SET_REMINDER:
+                tasks.computeIfPresent(mutation.getId(),
+                        (id, task) -> task.withSchedule(task.getDueDate(), mutation.getReminder()));
+                break;
+            case DELETE:
+                tasks.remove(mutation.getId());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mutation type: " + mutation.getType());
+        }
+    }
+
+    @Override
+    public void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) throws IOException {
+        Writer writer = openJournal();
+        for (TaskMutation mutation : mutations) {
+            writer.write(recordWriter.writeValueAsString(mutation));
+            writer.write('\n');
+        }
+        switch (snapshot.durability) {
+            case FSYNC:
+                writer.flush();
+                journalStream.getChannel().force(false);
+                if (journalCreated) {
+                    snapshot.syncDirectory();
+                    journalCreated = false;
+                }
+                break;
+            case FLUSH:
+                writer.flush();
+                break;
+            default:
+                // Written when the buffer fills, the journal is rotated or the persistence is closed
+                break;
+        }
+        journalRecords += mutations.size();
+
+        if (journalRecords >= compactionThreshold) {
+            startCompaction(state.get());
+        }
+    }
+
+    /**
+     * Rotates the journal and folds a copy of the current state into a new snapshot in the background.
+     */
+    private void startCompaction(TaskSnapshot state) throws IOException {
+        awaitCompaction();
+        if (rotatedJournalFile.exists()) {
+            // The previous compaction failed; rotating now would overwrite its journal, so compact in place
+            rewrite(state.toList());
+            return;
+        }
+        closeJournal();
+        Files.move(journalFile.toPath(), rotatedJournalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        journalRecords = 0;
+
+        // The snapshot is immutable, so the compactor can read it while writers carry on
+        pendingCompaction = compactor.submit(() -> {
+            try {
+                List<TaskRecord> copy = state.toList();
+                snapshot.writeSnapshot(copy);
+                Files.deleteIfExists(rotatedJournalFile.toPath());
+                LOGGER.info("Compacted journal into snapshot with " + copy.size() + " tasks");
+            } catch (IOException e) {
+                // The rotated journal is kept, so no change is lost; it is replayed on the next start
+                // or folded in by the next compaction
+                LOGGER.log(Level.SEVERE, "Journal compaction failed", e);
+            }
+        });
+    }
+
+    @Override
+    public void rewrite(Collection<TaskRecord> state) throws IOException {
+        awaitCompaction();
+        closeJournal();
+        snapshot.writeSnapshot(state);
+        Files.deleteIfExists(journalFile.toPath());
+        Files.deleteIfExists(rotatedJournalFile.toPath());
+        journalRecords = 0;
+    }
+
+    /**
+     * Waits for a running compaction to finish.
+     */
+    private void awaitCompaction() throws IOException {
+        if (pendingCompaction == null) {
+            return;
+        }
+        try {
+            pendingCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for journal compaction", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Journal compaction failed", e.getCause());
+        } finally {
+            pendingCompaction = null;
+        }
+    }
+
+    private Writer openJournal() throws IOException {
+        if (journalWriter == null) {
+            journalCreated = !journalFile.exists();
+            journalStream = new FileOutputStream(journalFile, true);
+            journalWriter = new BufferedWriter(new OutputStreamWriter(
+                    new CountingOutputStream(journalStream, journalBytesWritten), StandardCharsets.UTF_8));
+        }
+        return journalWriter;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+            journalStream = null;
+        }
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return journalBytesWritten.sum() + snapshot.getBytesWritten();
+    }
+
+    @Override
+    public String getPath() {
+        return snapshot.getPath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitCompaction();
+            closeJournal();
+        } finally {
+            compactor.shutdown();
+        }
+    }
+}
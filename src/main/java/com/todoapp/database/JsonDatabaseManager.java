@@ -1,61 +1,275 @@
 package com.todoapp.database;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todoapp.database.StorageMetrics.Operation;
 import com.todoapp.model.Task;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * JsonDatabaseManager handles all JSON file operations for the To-Do List application.
+ * The tasks are loaded once at construction into a {@link TaskSnapshot}, which is the authoritative copy;
+ * the disk files are only written to persist changes, either by rewriting the snapshot file or by
+ * appending to a journal (see {@link StorageConfig.PersistenceMode}).
+ * The snapshot is either the JSON file or a compact binary file (see {@link StorageConfig.SnapshotFormat});
+ * JSON remains available for import and export in both cases.
+ * <p>
+ * In write-behind mode the changes are queued and written by a background thread, so the calling
+ * thread never waits for the disk; {@link #flush()} and {@link #close()} wait for the queue to drain.
+ * <p>
+ * The manager is safe for use from many threads. Every change publishes a new immutable snapshot of the
+ * tasks, which shares all unchanged parts with the previous one. Reads never lock: each takes the current
+ * snapshot once and answers from it, so a read over many tasks, such as an export or a page with its total
+ * count, sees one consistent version however long it runs. Writers lock only the stripe of the task they
+ * change, and hold it until the change is persisted or queued, so the changes to one task reach the
+ * disk in the order they were applied. Operations over many tasks lock every stripe and publish their
+ * changes as one snapshot.
+ * <p>
+ * Counts and filtered pages are answered from the counts kept in the snapshot, and a {@link TaskSearchIndex}
+ * over the descriptions is kept in step with it, so searches, counts and filtered pages don't scan the tasks.
+ * A {@link TaskDueIndex} likewise serves the order by due date and the overdue tasks. Every successful change
+ * is also published to the registered {@link TaskChangeListener}s.
+ * <p>
+ * The reminders and due dates of the open tasks are kept in {@link TimingWheel}s, which a background thread
+ * turns once a second while {@link TaskReminderListener}s are registered, so pending reminders cost nothing
+ * until they are due. A reminder is cleared once it is delivered, so it is delivered once across restarts.
+ * <p>
+ * Every operation is timed into the {@link StorageMetrics} of the manager, which are published over
+ * JMX and optionally written to a file (see {@link StorageConfig#getMetricsFile()}).
+ * <p>
+ * If an archive is configured (see {@link StorageConfig#getArchiveKeepCompleted()}), the oldest completed
+ * tasks beyond the configured number are moved by a background thread to a {@link TaskArchive} next to the
+ * task files, so the working set stays small however long the history grows. Archived tasks can be searched
+ * and restored, but are never loaded.
+ * <p>
+ * If the files are shared with other processes (see {@link StorageConfig#isShared()}), the task IDs are
+ * reserved in blocks from the files, every write first applies what other processes wrote, and the changes
+ * of other processes are also picked up as soon as they are written. The writes of one process are then
+ * made one at a time.
  */
-public class JsonDatabaseManager {
+public class JsonDatabaseManager implements TaskRepository {
     private static final Logger LOGGER = Logger.getLogger(JsonDatabaseManager.class.getName());
-    private static final String JSON_FILE_PATH = "tasks.json";
-    
-    private final ObjectMapper objectMapper;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int LOCK_STRIPES = 64;
+    // IDs reserved at once from shared files; the rest of a block is skipped when the process ends
+    private static final int ID_BLOCK_SIZE = 64;
+    // Number of tasks handed to the load listener at a time
+    static final int LOAD_CHUNK_SIZE = 1000;
+    // Resolution of reminders and of the overdue notifications
+    static final long REMINDER_TICK_MILLIS = 1000;
+
+    private final JsonFactory jsonFactory;
     private final AtomicInteger nextId;
-    private final File jsonFile;
+    private final boolean shared;
+    // The unused IDs of the block reserved from shared files: nextReservedId up to endOfReservedIds
+    private int nextReservedId;
+    private int endOfReservedIds;
+    private final StripedLock locks;
+    private final Object persistenceLock;
+    private final TaskPersistence persistence;
+    private final WriteBehindWriter writeBehindWriter;
+    private final TaskArchive archive;
+    private final int archiveKeepCompleted;
+    private final ExecutorService archiver;
+    private final AtomicBoolean archivingScheduled;
+    // Held while an archived task is looked up and restored, so that it can't be restored twice
+    private final Object restoreLock;
+    private final StorageMetrics metrics;
+    private final MetricsFileReporter metricsReporter;
+    private final AtomicBoolean closed;
+    private final List<TaskChangeListener> changeListeners;
+    // The current version of the tasks; replaced, never modified
+    private final AtomicReference<TaskSnapshot> snapshot;
+    // Replaced as a whole when all tasks are replaced, so that searches never see a half-built index
+    private volatile TaskSearchIndex searchIndex;
+    private volatile TaskDueIndex dueIndex;
+    // The pending reminders and due dates of the open tasks, by task ID
+    private final TimingWheel reminders;
+    private final TimingWheel deadlines;
+    private final List<TaskReminderListener> reminderListeners;
+    // Started when the first reminder listener is registered; guarded by reminderListeners
+    private ScheduledExecutorService reminderTimer;
 
     /**
-     * Constructor that initializes the JSON database manager.
+     * Constructor that initializes the JSON database manager using the configuration from the system properties.
      */
     public JsonDatabaseManager() {
-        this.objectMapper = new ObjectMapper();
-        this.jsonFile = new File(JSON_FILE_PATH);
+        this(StorageConfig.fromSystemProperties());
+    }
+
+    /**
+     * Constructor that initializes the JSON database manager.
+     * @param config The storage configuration
+     */
+    public JsonDatabaseManager(StorageConfig config) {
+        this(config, createPersistence(config));
+    }
+
+    /**
+     * Constructor for engines that supply their own persistence.
+     * @param config The storage configuration
+     * @param persistence Reads and writes the tasks
+     */
+    JsonDatabaseManager(StorageConfig config, TaskPersistence persistence) {
+        this.jsonFactory = OBJECT_MAPPER.getFactory();
         this.nextId = new AtomicInteger(1);
-        
-        initializeJsonFile();
-        LOGGER.info("JSON database manager initialized successfully");
+        this.shared = persistence.isShared();
+        // Writes to shared files must reach them in the order they are applied, so they are made one at a time
+        this.locks = new StripedLock(shared ? 1 : LOCK_STRIPES);
+        this.persistenceLock = new Object();
+        this.snapshot = new AtomicReference<>(TaskSnapshot.EMPTY);
+        this.searchIndex = new TaskSearchIndex();
+        this.dueIndex = new TaskDueIndex();
+        this.reminders = new TimingWheel(REMINDER_TICK_MILLIS, System.currentTimeMillis());
+        this.deadlines = new TimingWheel(REMINDER_TICK_MILLIS, System.currentTimeMillis());
+        this.reminderListeners = new CopyOnWriteArrayList<>();
+        this.closed = new AtomicBoolean(false);
+        this.archivingScheduled = new AtomicBoolean(false);
+        this.restoreLock = new Object();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        this.metrics = new StorageMetrics();
+        this.persistence = new MeasuredPersistence(persistence, metrics);
+
+        initializeJsonFile(config.getLoadListener());
+        if (config.isWriteBehind() && shared) {
+            LOGGER.warning("Write-behind is not used with shared task files");
+        }
+        if (config.isWriteBehind() && !shared) {
+            this.writeBehindWriter = new WriteBehindWriter(this.persistence, this::snapshot,
+                    config.getFlushIntervalMillis(), config.getMaxBatchSize());
+        } else {
+            this.writeBehindWriter = null;
+        }
+        if (config.getArchiveKeepCompleted() >= 0 && shared) {
+            LOGGER.warning("Completed tasks are not archived from shared task files");
+        }
+        this.archiveKeepCompleted = shared ? -1 : config.getArchiveKeepCompleted();
+        if (archiveKeepCompleted >= 0) {
+            this.archive = new TaskArchive(OBJECT_MAPPER, new File(this.persistence.getPath() + TaskArchive.DIRECTORY_SUFFIX),
+                    config.getDurability(), TaskArchive.DEFAULT_SEGMENT_BYTES);
+            this.archiver = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.archive = null;
+            this.archiver = null;
+        }
+        if (config.isMetricsJmx()) {
+            metrics.register(this.persistence.getPath());
+        }
+        if (config.getMetricsFile() != null) {
+            this.metricsReporter = new MetricsFileReporter(metrics, new File(config.getMetricsFile()),
+                    config.getMetricsIntervalSeconds());
+        } else {
+            this.metricsReporter = null;
+        }
+        LOGGER.info("JSON database manager initialized successfully (" + persistence.getPath() + ", "
+                + config.getPersistenceMode() + " mode, " + config.getDurability() + " durability"
+                + (shared ? ", shared" : config.isWriteBehind() ? ", write-behind" : "")
+                + (archive != null ? ", archiving beyond " + archiveKeepCompleted + " completed tasks" : "") + ")");
+        scheduleArchiving();
+        this.persistence.watch(new ExternalChanges());
     }
 
     /**
-     * Initializes the JSON file and determines the next available ID.
+     * Creates the persistence described by the configuration.
      */
-    private void initializeJsonFile() {
+    private static TaskPersistence createPersistence(StorageConfig config) {
+        File snapshotFile = config.getSnapshotFile();
+        SnapshotPersistence snapshot;
+        if (config.getSnapshotFormat() == StorageConfig.SnapshotFormat.BINARY) {
+            snapshot = new BinarySnapshotPersistence(snapshotFile, config.getDurability());
+        } else {
+            snapshot = new JsonSnapshotPersistence(OBJECT_MAPPER.getFactory(), snapshotFile, config.getDurability());
+        }
+
+        TaskPersistence persistence;
+        if (config.isShared()) {
+            // Other processes' changes can only be read back from a journal
+            persistence = new SharedJournalPersistence(OBJECT_MAPPER, snapshot, config.getCompactionThreshold());
+        } else if (config.getPersistenceMode() == StorageConfig.PersistenceMode.JOURNAL) {
+            persistence = new JournalPersistence(OBJECT_MAPPER, snapshot, config.getCompactionThreshold());
+        } else {
+            persistence = snapshot;
+        }
+
+        File legacyJsonFile = new File(snapshotFile.getAbsoluteFile().getParentFile(),
+                StorageConfig.SnapshotFormat.JSON.getDefaultFileName());
+        if (config.getSnapshotFormat() != StorageConfig.SnapshotFormat.JSON && !snapshotFile.exists()
+                && legacyJsonFile.exists()) {
+            migrateFromJson(legacyJsonFile, persistence);
+        }
+        return persistence;
+    }
+
+    /**
+     * Loads the existing tasks into memory and determines the next available ID.
+     * @param listener Receives the tasks in chunks as they are read, or null
+     */
+    private void initializeJsonFile(TaskLoadListener listener) {
+        long start = System.nanoTime();
         try {
-            if (!jsonFile.exists()) {
-                // Create empty JSON array if file doesn't exist
-                objectMapper.writeValue(jsonFile, new ArrayList<Task>());
-                LOGGER.info("Created new JSON file: " + JSON_FILE_PATH);
+            // Stream the existing tasks into the store once
+            TaskSnapshot.Editor loader = TaskSnapshot.EMPTY.edit();
+            if (listener == null) {
+                persistence.load(loader::put);
             } else {
-                // Load existing tasks to determine next ID
-                List<Task> existingTasks = loadTasksFromFile();
-                int maxId = existingTasks.stream()
-                    .mapToInt(Task::getId)
-                    .max()
-                    .orElse(0);
-                nextId.set(maxId + 1);
-                LOGGER.info("Loaded existing JSON file with " + existingTasks.size() + " tasks. Next ID: " + nextId.get());
+                List<TaskRecord> chunk = new ArrayList<>(LOAD_CHUNK_SIZE);
+                persistence.load(record -> {
+                    loader.put(record);
+                    chunk.add(record);
+                    if (chunk.size() == LOAD_CHUNK_SIZE) {
+                        listener.onTasksLoaded(List.copyOf(chunk));
+                        chunk.clear();
+                    }
+                });
+                if (!chunk.isEmpty()) {
+                    listener.onTasksLoaded(List.copyOf(chunk));
+                }
             }
+            TaskSnapshot loaded = loader.toSnapshot(0);
+            // The persistence may know a higher ID than the stored ones; otherwise the highest ID is
+            // looked up in the snapshot
+            nextId.set(Math.max(1, Math.max(persistence.getNextId(), loaded.lastId() + 1)));
+            snapshot.set(loaded);
+            List<TaskRecord> records = loaded.toList();
+            searchIndex.rebuild(records);
+            dueIndex.rebuild(records);
+            scheduleTimers(records);
+            metrics.recordLoad(System.nanoTime() - start, loaded.size());
+            LOGGER.info("Loaded " + loaded.size() + " tasks in " + Math.round(metrics.getLoadTimeMillis())
+                    + " ms. Next ID: " + nextId.get());
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize JSON file", e);
             throw new RuntimeException("JSON file initialization failed", e);
@@ -63,146 +277,1126 @@ public class JsonDatabaseManager {
     }
 
     /**
-     * Loads all tasks from the JSON file.
-     * @return List of tasks from the JSON file
+     * Converts an existing JSON file into the configured snapshot format the first time it is used.
+     * The JSON file is left in place.
+     */
+    private static void migrateFromJson(File source, TaskPersistence persistence) {
+        try {
+            List<TaskRecord> imported = new ArrayList<>();
+            new JsonSnapshotPersistence(OBJECT_MAPPER.getFactory(), source).load(imported::add);
+            persistence.rewrite(imported);
+            LOGGER.info("Migrated " + imported.size() + " tasks from " + source.getPath() + " to " + persistence.getPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to migrate tasks from " + source.getPath(), e);
+            throw new RuntimeException("JSON migration failed", e);
+        }
+    }
+
+    /**
+     * Persists a change that has already been applied to the in-memory store.
+     */
+    private void commit(TaskMutation mutation) throws IOException {
+        commit(List.of(mutation));
+    }
+
+    /**
+     * Persists a group of changes that have already been applied to the in-memory store,
+     * or queues them for the background writer in write-behind mode. The caller must hold
+     * the locks of the changed tasks.
+     */
+    private void commit(List<TaskMutation> mutations) throws IOException {
+        if (writeBehindWriter != null) {
+            writeBehindWriter.enqueue(mutations);
+        } else {
+            synchronized (persistenceLock) {
+                persistence.persist(mutations, this::snapshot);
+            }
+        }
+    }
+
+    /**
+     * Hands out new task IDs, reserving them from the files in blocks if they are shared.
+     * @param count The number of consecutive IDs
+     * @return The first ID
+     */
+    private int allocateIds(int count) {
+        if (!shared) {
+            return nextId.getAndAdd(count);
+        }
+        synchronized (nextId) {
+            if (endOfReservedIds - nextReservedId < count) {
+                int blockSize = Math.max(count, ID_BLOCK_SIZE);
+                try {
+                    nextReservedId = persistence.reserveIds(blockSize);
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to reserve task IDs", e);
+                    throw new RuntimeException("Failed to reserve task IDs", e);
+                }
+                endOfReservedIds = nextReservedId + blockSize;
+            }
+            int first = nextReservedId;
+            nextReservedId += count;
+            nextId.accumulateAndGet(nextReservedId, Math::max);
+            return first;
+        }
+    }
+
+    /**
+     * Applies the changes other processes made to shared files.
      */
-    private List<Task> loadTasksFromFile() throws IOException {
-        if (!jsonFile.exists()) {
-            return new ArrayList<>();
+    private final class ExternalChanges implements TaskPersistence.ExternalChangeHandler {
+        @Override
+        public void apply(List<TaskMutation> changes) {
+            applyExternalChanges(changes);
+        }
+
+        @Override
+        public void filesChanged() {
+            long start = System.nanoTime();
+            locks.lockAll();
+            try {
+                synchronized (persistenceLock) {
+                    persistence.catchUp(JsonDatabaseManager.this::snapshot);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Failed to read the changes of other processes", e);
+            } finally {
+                locks.unlockAll();
+                metrics.record(Operation.RELOAD, start);
+            }
         }
-        
-        TypeReference<List<Task>> typeReference = new TypeReference<List<Task>>() {};
-        return objectMapper.readValue(jsonFile, typeReference);
     }
 
     /**
-     * Saves all tasks to the JSON file.
-     * @param tasks List of tasks to save
+     * Applies changes read from shared files to the store as one snapshot, and publishes them.
+     * The caller must hold every lock.
      */
-    private void saveTasksToFile(List<Task> tasks) throws IOException {
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(jsonFile, tasks);
-        LOGGER.info("Saved " + tasks.size() + " tasks to JSON file");
+    private void applyExternalChanges(List<TaskMutation> changes) {
+        TaskSnapshot before = snapshot.get();
+        TaskSnapshot.Editor editor = before.edit();
+        long changeVersion = before.getVersion();
+        Map<Integer, TaskRecord> previous = new LinkedHashMap<>();
+        Map<Integer, Long> changeVersions = new HashMap<>();
+        for (TaskMutation change : changes) {
+            int taskId = change.getId();
+            TaskRecord current = editor.get(taskId);
+            TaskRecord updated;
+            switch (change.getType()) {
+                case ADD:
+                    updated = change.toRecord(taskId);
+                    break;
+                case SET_COMPLETED:
+                    updated = current == null ? null : current.withCompleted(Boolean.TRUE.equals(change.getCompleted()));
+                    break;
+                case SET_DESCRIPTION:
+                    updated = current == null ? null : current.withDescription(change.getDescription());
+                    break;
+                case SET_SCHEDULE:
+                    updated = current == null ? null : current.withSchedule(change.getDueDate(), change.getReminder());
+                    break;
+                case SET_DUE_DATE:
+                    updated = current == null ? null : current.withSchedule(change.getDueDate(), current.getReminder());
+                    break;
+                case SET_REMINDER:
+                    updated = current == null ? null : current.withSchedule(current.getDueDate(), change.getReminder());
+                    break;
+                case DELETE:
+                    updated = null;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown change: " + change.getType());
+            }
+            if (current == null && updated == null) {
+                continue;
+            }
+            previous.putIfAbsent(taskId, current);
+            apply(editor, taskId, updated);
+            changeVersions.put(taskId, ++changeVersion);
+        }
+        TaskSnapshot after = editor.toSnapshot(changeVersion);
+        snapshot.set(after);
+        nextId.accumulateAndGet(after.lastId() + 1, Math::max);
+
+        List<TaskChange> published = new ArrayList<>(previous.size());
+        previous.forEach((taskId, task) -> {
+            TaskChange change = TaskChange.between(task, after.get(taskId), changeVersions.get(taskId));
+            if (change != null) {
+                published.add(change);
+            }
+        });
+        publish(published);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Applied " + changes.size() + " changes from other processes");
+        }
     }
 
     /**
-     * Retrieves all tasks from the JSON file.
+     * Copies the current snapshot into records.
+     */
+    private Collection<TaskRecord> copyAllTasks() {
+        return snapshot.get().toList();
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Retrieves all tasks from the in-memory store, ordered by ID.
      * @return ObservableList of all tasks
      */
+    @Override
     public ObservableList<Task> getAllTasks() {
-        try {
-            List<Task> tasks = loadTasksFromFile();
-            LOGGER.info("Retrieved " + tasks.size() + " tasks from JSON file");
-            return FXCollections.observableArrayList(tasks);
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to retrieve tasks from JSON file", e);
-            throw new RuntimeException("Failed to retrieve tasks", e);
+        long start = System.nanoTime();
+        TaskSnapshot current = snapshot.get();
+        List<Task> result = new ArrayList<>(current.size());
+        current.forEach(record -> result.add(record.toTask()));
+        ObservableList<Task> list = FXCollections.observableArrayList(result);
+        metrics.record(Operation.GET_ALL, start);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Retrieved " + result.size() + " tasks from memory");
+        }
+        return list;
+    }
+
+    @Override
+    public Optional<Task> getTask(int taskId) {
+        long start = System.nanoTime();
+        TaskRecord record = snapshot.get().get(taskId);
+        metrics.record(Operation.GET, start);
+        return record == null ? Optional.empty() : Optional.of(record.toTask());
+    }
+
+    @Override
+    public int getTaskCount() {
+        return snapshot.get().size();
+    }
+
+    @Override
+    public long getVersion() {
+        return snapshot.get().getVersion();
+    }
+
+    @Override
+    public List<Task> findTasks(Predicate<? super TaskRecord> filter) {
+        List<Task> result = new ArrayList<>();
+        snapshot.get().forEach(record -> {
+            if (filter.test(record)) {
+                result.add(record.toTask());
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public int countTasks(TaskQuery.Status status) {
+        return snapshot.get().count(status);
+    }
+
+    @Override
+    public TaskPage queryTasks(TaskQuery query) {
+        long start = System.nanoTime();
+        // The count, the IDs and the tasks all come from one version
+        TaskSnapshot current = snapshot.get();
+        int[] ids;
+        int totalCount;
+        if (query.hasSearchText() || query.getOverdueAt() != null) {
+            int[] matches = matches(current, query, Integer.MAX_VALUE);
+            totalCount = matches.length;
+            ids = slice(matches, query.getOffset(), query.getLimit());
+        } else if (query.getOrder() == TaskQuery.Order.DUE_DATE) {
+            // Every task of the status is in the order once, so only the requested page is needed
+            totalCount = current.count(query.getStatus());
+            ids = slice(matches(current, query, end(query)), query.getOffset(), query.getLimit());
+        } else {
+            totalCount = current.count(query.getStatus());
+            ids = current.page(query.getStatus(), isDescending(query), query.getOffset(), query.getLimit());
+        }
+
+        List<Task> page = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            page.add(current.get(id).toTask());
         }
+        metrics.record(Operation.QUERY, start);
+        return new TaskPage(page, query.getOffset(), totalCount);
+    }
+
+    @Override
+    public int[] queryTaskIds(TaskQuery query) {
+        long start = System.nanoTime();
+        TaskSnapshot current = snapshot.get();
+        int[] ids;
+        if (query.hasSearchText() || query.getOverdueAt() != null || query.getOrder() == TaskQuery.Order.DUE_DATE) {
+            ids = slice(matches(current, query, end(query)), query.getOffset(), query.getLimit());
+        } else {
+            ids = current.page(query.getStatus(), isDescending(query), query.getOffset(), query.getLimit());
+        }
+        metrics.record(Operation.QUERY, start);
+        return ids;
+    }
+
+    /**
+     * Finds the tasks of a snapshot that match the search text, status and overdue time of a query, in
+     * the order of the query. The indexes follow the latest version, so tasks they find that aren't in
+     * the snapshot are left out.
+     * @param end The number of leading matches needed; in the order by due date, later matches may be left out
+     */
+    private int[] matches(TaskSnapshot current, TaskQuery query, int end) {
+        // Null if the text has no words, so it doesn't restrict the tasks
+        int[] searched = query.hasSearchText() ? searchIndex.search(query.getSearchText()) : null;
+        int[] ids;
+        if (query.getOverdueAt() != null) {
+            // Overdue tasks are never completed
+            int[] overdue = current.retain(dueIndex.dueBefore(query.getOverdueAt()), TaskQuery.Status.ACTIVE);
+            ids = within(overdue, searched);
+            if (query.getOrder() == TaskQuery.Order.DUE_DATE) {
+                return current.retain(ids, query.getStatus());
+            }
+            Arrays.sort(ids);
+        } else if (query.getOrder() == TaskQuery.Order.DUE_DATE) {
+            return byDueDate(current, query.getStatus(), searched, end);
+        } else if (searched == null) {
+            return current.page(query.getStatus(), isDescending(query), 0, Integer.MAX_VALUE);
+        } else {
+            ids = searched;
+        }
+        ids = current.retain(ids, query.getStatus());
+        if (isDescending(query)) {
+            for (int i = 0, j = ids.length - 1; i < j; i++, j--) {
+                int id = ids[i];
+                ids[i] = ids[j];
+                ids[j] = id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Orders the tasks of a status by due date, followed by the tasks without a due date by ID.
+     * The tasks without a due date are only looked up if the dated ones don't reach the end.
+     */
+    private int[] byDueDate(TaskSnapshot current, TaskQuery.Status status, int[] searched, int end) {
+        int[] dated = within(current.retain(dueIndex.all(), status), searched);
+        if (dated.length >= end) {
+            return dated;
+        }
+        int[] rest = searched == null ? current.page(status, false, 0, Integer.MAX_VALUE) : current.retain(searched, status);
+        BitSet seen = new BitSet();
+        for (int id : dated) {
+            seen.set(id);
+        }
+        int[] ids = Arrays.copyOf(dated, dated.length + rest.length);
+        int count = dated.length;
+        for (int id : rest) {
+            if (!seen.get(id)) {
+                ids[count++] = id;
+            }
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
     }
 
     /**
-     * Adds a new task to the JSON file.
+     * Keeps the IDs that are also in a sorted array.
+     * @param ids IDs in any order; the array is reused for the result
+     * @param allowed The allowed IDs in ascending order, or null to keep every ID
+     */
+    private static int[] within(int[] ids, int[] allowed) {
+        if (allowed == null) {
+            return ids;
+        }
+        int kept = 0;
+        for (int id : ids) {
+            if (Arrays.binarySearch(allowed, id) >= 0) {
+                ids[kept++] = id;
+            }
+        }
+        return kept == ids.length ? ids : Arrays.copyOf(ids, kept);
+    }
+
+    private static int end(TaskQuery query) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) query.getOffset() + query.getLimit());
+    }
+
+    private static boolean isDescending(TaskQuery query) {
+        return query.getOrder() == TaskQuery.Order.ID_DESCENDING;
+    }
+
+    private static int[] slice(int[] ids, int offset, int limit) {
+        int from = Math.min(offset, ids.length);
+        int to = (int) Math.min(ids.length, (long) from + limit);
+        return from == 0 && to == ids.length ? ids : Arrays.copyOfRange(ids, from, to);
+    }
+
+    @Override
+    public int[] searchTaskIds(String query) {
+        long start = System.nanoTime();
+        int[] ids = searchIndex.search(query);
+        if (ids == null) {
+            ids = snapshot.get().ids();
+        }
+        metrics.record(Operation.SEARCH, start);
+        return ids;
+    }
+
+    /**
+     * Adds a new task and persists it.
      * @param description The description of the task
      * @return The generated ID of the new task
      */
+    @Override
     public int addTask(String description) {
+        long start = System.nanoTime();
+        int taskId = allocateIds(1);
+        Lock lock = locks.forId(taskId);
+        lock.lock();
         try {
-            List<Task> tasks = loadTasksFromFile();
-            
-            int taskId = nextId.getAndIncrement();
-            Task newTask = new Task(taskId, description, false);
-            tasks.add(newTask);
-            
-            saveTasksToFile(tasks);
-            LOGGER.info("Task added successfully with ID: " + taskId);
-            return taskId;
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to add task: " + description, e);
-            throw new RuntimeException("Failed to add task", e);
+            TaskRecord added = new TaskRecord(taskId, description, false);
+            long changeVersion = putOrRemove(taskId, added);
+            try {
+                commit(TaskMutation.add(taskId, description, false));
+            } catch (IOException e) {
+                putOrRemove(taskId, null);
+                LOGGER.log(Level.SEVERE, "Failed to add task: " + description, e);
+                throw new RuntimeException("Failed to add task", e);
+            }
+            publish(null, added, changeVersion);
+        } finally {
+            lock.unlock();
+            metrics.record(Operation.ADD, start);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Task added successfully with ID: " + taskId);
         }
+        return taskId;
     }
 
     /**
-     * Updates the completion status of a task in the JSON file.
+     * Updates the completion status of a task and persists it.
      * @param taskId The ID of the task to update
      * @param completed The new completion status
      */
+    @Override
     public void updateTaskCompletion(int taskId, boolean completed) {
+        long start = System.nanoTime();
+        Lock lock = locks.forId(taskId);
+        lock.lock();
         try {
-            List<Task> tasks = loadTasksFromFile();
-            
-            boolean taskFound = false;
-            for (Task task : tasks) {
-                if (task.getId() == taskId) {
-                    task.setCompleted(completed);
-                    taskFound = true;
-                    break;
-                }
+            TaskRecord task = snapshot.get().get(taskId);
+            if (task == null) {
+                LOGGER.warning("No task found with ID: " + taskId);
+                return;
             }
-            
-            if (taskFound) {
-                saveTasksToFile(tasks);
-                LOGGER.info("Task " + taskId + " completion status updated to: " + completed);
-            } else {
+
+            TaskRecord updated = task.withCompleted(completed);
+            long changeVersion = putOrRemove(taskId, updated);
+            try {
+                commit(TaskMutation.setCompleted(taskId, completed));
+            } catch (IOException e) {
+                putOrRemove(taskId, task);
+                LOGGER.log(Level.SEVERE, "Failed to update task completion: " + taskId, e);
+                throw new RuntimeException("Failed to update task completion", e);
+            }
+            publish(task, updated, changeVersion);
+        } finally {
+            lock.unlock();
+            metrics.record(Operation.UPDATE_COMPLETION, start);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Task " + taskId + " completion status updated to: " + completed);
+        }
+        if (completed) {
+            scheduleArchiving();
+        }
+    }
+
+    /**
+     * Changes the description of a task and persists it.
+     * @param taskId The ID of the task to update
+     * @param description The new description
+     */
+    @Override
+    public void updateTaskDescription(int taskId, String description) {
+        long start = System.nanoTime();
+        Lock lock = locks.forId(taskId);
+        lock.lock();
+        try {
+            TaskRecord task = snapshot.get().get(taskId);
+            if (task == null) {
                 LOGGER.warning("No task found with ID: " + taskId);
+                return;
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to update task completion: " + taskId, e);
-            throw new RuntimeException("Failed to update task completion", e);
+
+            TaskRecord updated = task.withDescription(description);
+            long changeVersion = putOrRemove(taskId, updated);
+            try {
+                commit(TaskMutation.setDescription(taskId, description));
+            } catch (IOException e) {
+                putOrRemove(taskId, task);
+                LOGGER.log(Level.SEVERE, "Failed to update task description: " + taskId, e);
+                throw new RuntimeException("Failed to update task description", e);
+            }
+            publish(task, updated, changeVersion);
+        } finally {
+            lock.unlock();
+            metrics.record(Operation.UPDATE_DESCRIPTION, start);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Task " + taskId + " description updated to: " + description);
+        }
+    }
+
+    /**
+     * Sets or clears the due date and the reminder of a task and persists the change.
+     * @param taskId The ID of the task to update
+     * @param dueDate The new due date, or null for none
+     * @param reminder When to remind of the task, or null for no reminder
+     */
+    @Override
+    public void updateTaskSchedule(int taskId, Instant dueDate, Instant reminder) {
+        long start = System.nanoTime();
+        Lock lock = locks.forId(taskId);
+        lock.lock();
+        try {
+            TaskRecord task = snapshot.get().get(taskId);
+            if (task == null) {
+                LOGGER.warning("No task found with ID: " + taskId);
+                return;
+            }
+
+            TaskRecord updated = task.withSchedule(dueDate, reminder);
+            long changeVersion = putOrRemove(taskId, updated);
+            try {
+                commit(TaskMutation.setSchedule(taskId, updated.getDueDate(), updated.getReminder()));
+            } catch (IOException e) {
+                putOrRemove(taskId, task);
+                LOGGER.log(Level.SEVERE, "Failed to update task schedule: " + taskId, e);
+                throw new RuntimeException("Failed to update task schedule", e);
+            }
+            publish(task, updated, changeVersion);
+        } finally {
+            lock.unlock();
+            metrics.record(Operation.UPDATE_SCHEDULE, start);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Task " + taskId + " due date set to " + dueDate + ", reminder to " + reminder);
         }
     }
 
     /**
-     * Deletes a task from the JSON file.
+     * Deletes a task and persists the change.
      * @param taskId The ID of the task to delete
+     * @return Whether the task existed and was deleted
      */
-    public void deleteTask(int taskId) {
+    @Override
+    public boolean deleteTask(int taskId) {
+        long start = System.nanoTime();
+        Lock lock = locks.forId(taskId);
+        lock.lock();
         try {
-            List<Task> tasks = loadTasksFromFile();
-            
-            boolean taskRemoved = tasks.removeIf(task -> task.getId() == taskId);
-            
-            if (taskRemoved) {
-                saveTasksToFile(tasks);
-                LOGGER.info("Task " + taskId + " deleted successfully");
-            } else {
+            TaskRecord removed = snapshot.get().get(taskId);
+            if (removed == null) {
                 LOGGER.warning("No task found with ID: " + taskId);
+                return false;
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to delete task: " + taskId, e);
-            throw new RuntimeException("Failed to delete task", e);
+            long changeVersion = putOrRemove(taskId, null);
+
+            try {
+                commit(TaskMutation.delete(taskId));
+            } catch (IOException e) {
+                putOrRemove(taskId, removed);
+                LOGGER.log(Level.SEVERE, "Failed to delete task: " + taskId, e);
+                throw new RuntimeException("Failed to delete task", e);
+            }
+            publish(removed, null, changeVersion);
+        } finally {
+            lock.unlock();
+            metrics.record(Operation.DELETE, start);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Task " + taskId + " deleted successfully");
+        }
+        return true;
+    }
+
+    @Override
+    public int[] addTasks(Collection<String> descriptions) {
+        TaskBatch batch = new TaskBatch();
+        for (String description : descriptions) {
+            batch.add(description);
+        }
+        return applyBatch(batch);
+    }
+
+    @Override
+    public void updateCompletion(Map<Integer, Boolean> completions) {
+        TaskBatch batch = new TaskBatch();
+        for (Map.Entry<Integer, Boolean> entry : completions.entrySet()) {
+            batch.setCompleted(entry.getKey(), entry.getValue());
+        }
+        applyBatch(batch);
+    }
+
+    @Override
+    public void deleteTasks(int[] taskIds) {
+        TaskBatch batch = new TaskBatch();
+        for (int taskId : taskIds) {
+            batch.delete(taskId);
+        }
+        applyBatch(batch);
+    }
+
+    /**
+     * Applies a group of changes and persists them with a single write. If the write fails,
+     * every change of the batch is undone.
+     * @param batch The changes to apply
+     * @return The generated IDs of the added tasks, in the order of the add operations
+     */
+    @Override
+    public int[] applyBatch(TaskBatch batch) {
+        int[] ids = new int[batch.getAddCount()];
+        if (batch.isEmpty()) {
+            return ids;
+        }
+        long start = System.nanoTime();
+
+        // Previous record of every changed ID (null if it didn't exist), in the order of first change
+        Map<Integer, TaskRecord> undo = new LinkedHashMap<>();
+        // Repository version after the last change of every changed ID, for the change events
+        Map<Integer, Long> changeVersions = new HashMap<>();
+        List<TaskMutation> mutations = new ArrayList<>(batch.size());
+        int added = 0;
+        locks.lockAll();
+        try {
+            TaskSnapshot before = snapshot.get();
+            TaskSnapshot.Editor editor = before.edit();
+            long changeVersion = before.getVersion();
+            // The IDs of all added tasks are reserved at once
+            int firstId = allocateIds(batch.getAddCount());
+            for (TaskMutation operation : batch.getOperations()) {
+                int taskId = operation.getType() == TaskMutation.Type.ADD ? firstId + added : operation.getId();
+                TaskRecord previous = editor.get(taskId);
+                TaskRecord updated;
+                switch (operation.getType()) {
+                    case ADD:
+                        updated = operation.toRecord(taskId);
+                        ids[added++] = taskId;
+                        mutations.add(TaskMutation.add(updated));
+                        break;
+                    case SET_COMPLETED:
+                        if (previous == null) {
+                            LOGGER.warning("No task found with ID: " + taskId);
+                            continue;
+                        }
+                        updated = previous.withCompleted(operation.getCompleted());
+                        mutations.add(operation);
+                        break;
+                    case SET_DESCRIPTION:
+                        if (previous == null) {
+                            LOGGER.warning("No task found with ID: " + taskId);
+                            continue;
+                        }
+                        updated = previous.withDescription(operation.getDescription());
+                        mutations.add(operation);
+                        break;
+                    case SET_SCHEDULE:
+                        if (previous == null) {
+                            LOGGER.warning("No task found with ID: " + taskId);
+                            continue;
+                        }
+                        updated = previous.withSchedule(operation.getDueDate(), operation.getReminder());
+                        mutations.add(operation);
+                        break;
+                    case SET_DUE_DATE:
+                    case SET_REMINDER:
+                        if (previous == null) {
+                            LOGGER.warning("No task found with ID: " + taskId);
+                            continue;
+                        }
+                        // The other field is read under the lock, and the journal gets the whole schedule
+                        updated = operation.getType() == TaskMutation.Type.SET_DUE_DATE
+                                ? previous.withSchedule(operation.getDueDate(), previous.getReminder())
+                                : previous.withSchedule(previous.getDueDate(), operation.getReminder());
+                        mutations.add(TaskMutation.setSchedule(taskId, updated.getDueDate(), updated.getReminder()));
+                        break;
+                    case DELETE:
+                        if (previous == null) {
+                            LOGGER.warning("No task found with ID: " + taskId);
+                            continue;
+                        }
+                        updated = null;
+                        mutations.add(operation);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown operation: " + operation.getType());
+                }
+                undo.putIfAbsent(taskId, previous);
+                apply(editor, taskId, updated);
+                changeVersions.put(taskId, ++changeVersion);
+            }
+            // Readers see the whole batch or none of it
+            TaskSnapshot after = editor.toSnapshot(changeVersion);
+            snapshot.set(after);
+
+            try {
+                if (!mutations.isEmpty()) {
+                    commit(mutations);
+                }
+            } catch (IOException e) {
+                rollBack(before, after, undo.keySet());
+                LOGGER.log(Level.SEVERE, "Failed to apply batch of " + batch.size() + " changes", e);
+                throw new RuntimeException("Failed to apply batch", e);
+            }
+            if (!changeListeners.isEmpty()) {
+                List<TaskChange> changes = new ArrayList<>(undo.size());
+                undo.forEach((taskId, previous) -> {
+                    // Null if the batch added the task and deleted it again
+                    TaskChange change = TaskChange.between(previous, after.get(taskId), changeVersions.get(taskId));
+                    if (change != null) {
+                        changes.add(change);
+                    }
+                });
+                publish(changes);
+            }
+        } finally {
+            locks.unlockAll();
+            metrics.record(Operation.BATCH, start);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Applied batch of " + mutations.size() + " changes");
+        }
+        scheduleArchiving();
+        return ids;
+    }
+
+    /**
+     * Publishes a snapshot in which a record is stored, or the ID removed if the record is null, and
+     * updates the search index. The caller must hold the lock of the ID.
+     * @return The repository version after the change
+     */
+    private long putOrRemove(int taskId, TaskRecord record) {
+        TaskSnapshot current;
+        TaskSnapshot updated;
+        do {
+            // Writers of other stripes may publish in between, but this task can't change while its lock is held
+            current = snapshot.get();
+            updated = record == null ? current.without(taskId) : current.with(record);
+        } while (!snapshot.compareAndSet(current, updated));
+        updateIndexes(taskId, current.get(taskId), record);
+        // Also counted when a failed change is undone, so that a version never stands for two states
+        return updated.getVersion();
+    }
+
+    /**
+     * Applies the change of one task to an editor and the indexes.
+     */
+    private void apply(TaskSnapshot.Editor editor, int taskId, TaskRecord record) {
+        TaskRecord previous = record == null ? editor.remove(taskId) : editor.put(record);
+        updateIndexes(taskId, previous, record);
+    }
+
+    /**
+     * Publishes the tasks from before a group of changes whose write failed, at a new version.
+     * The caller must hold every lock.
+     */
+    private void rollBack(TaskSnapshot before, TaskSnapshot after, Collection<Integer> taskIds) {
+        for (int taskId : taskIds) {
+            updateIndexes(taskId, after.get(taskId), before.get(taskId));
+        }
+        snapshot.set(before.atVersion(after.getVersion() + 1));
+    }
+
+    /**
+     * Brings the search and due date indexes and the timers of a task up to date with a change.
+     * @param previous The task before the change, or null if it didn't exist
+     * @param record The task after the change, or null if it was removed
+     */
+    private void updateIndexes(int taskId, TaskRecord previous, TaskRecord record) {
+        searchIndex.update(taskId, description(previous), description(record));
+        dueIndex.update(taskId, previous == null ? null : previous.getDueDate(), record == null ? null : record.getDueDate());
+        Instant reminder = pendingReminder(record);
+        if (!Objects.equals(pendingReminder(previous), reminder)) {
+            if (reminder == null) {
+                reminders.cancel(taskId);
+            } else {
+                reminders.schedule(taskId, reminder.toEpochMilli());
+            }
+        }
+        Instant dueDate = pendingDueDate(record);
+        if (!Objects.equals(pendingDueDate(previous), dueDate)) {
+            // A task that is overdue already doesn't become overdue again
+            if (dueDate == null || dueDate.toEpochMilli() <= System.currentTimeMillis()) {
+                deadlines.cancel(taskId);
+            } else {
+                deadlines.schedule(taskId, dueDate.toEpochMilli());
+            }
+        }
+    }
+
+    /**
+     * Starts the timers of the given tasks, which have none yet.
+     */
+    private void scheduleTimers(Collection<TaskRecord> records) {
+        long now = System.currentTimeMillis();
+        for (TaskRecord record : records) {
+            Instant reminder = pendingReminder(record);
+            if (reminder != null) {
+                reminders.schedule(record.getId(), reminder.toEpochMilli());
+            }
+            Instant dueDate = pendingDueDate(record);
+            if (dueDate != null && dueDate.toEpochMilli() > now) {
+                deadlines.schedule(record.getId(), dueDate.toEpochMilli());
+            }
+        }
+    }
+
+    /**
+     * Replaces every timer with the timers of the given tasks. The caller must hold every lock.
+     */
+    private void resetTimers(Collection<TaskRecord> records) {
+        reminders.clear();
+        deadlines.clear();
+        scheduleTimers(records);
+    }
+
+    private static String description(TaskRecord record) {
+        return record == null ? null : record.getDescription();
+    }
+
+    // Completed tasks are neither reminded of nor overdue
+    private static Instant pendingReminder(TaskRecord record) {
+        return record == null || record.isCompleted() ? null : record.getReminder();
+    }
+
+    private static Instant pendingDueDate(TaskRecord record) {
+        return record == null || record.isCompleted() ? null : record.getDueDate();
+    }
+
+    @Override
+    public void addChangeListener(TaskChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(TaskChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Registers a reminder listener. The first one starts the thread that turns the timing wheels; reminders
+     * that came while there was no listener are delivered at its first turn.
+     * @param listener The listener
+     */
+    @Override
+    public void addReminderListener(TaskReminderListener listener) {
+        synchronized (reminderListeners) {
+            reminderListeners.add(listener);
+            if (reminderTimer == null && !closed.get()) {
+                reminderTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "task-reminders");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                reminderTimer.scheduleWithFixedDelay(this::fireTimers, 0, REMINDER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void removeReminderListener(TaskReminderListener listener) {
+        reminderListeners.remove(listener);
+    }
+
+    /**
+     * Turns the timing wheels to the current time, delivers the reminders and overdue tasks, and clears
+     * the delivered reminders. Runs on the reminder thread; the wheels stand still while there is no
+     * listener, so that no reminder is lost.
+     */
+    private void fireTimers() {
+        if (reminderListeners.isEmpty() || closed.get()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<TaskRecord> overdue = tasksFor(deadlines.advance(now), record -> pendingDueDate(record) != null);
+            List<TaskRecord> reminded = remind(reminders.advance(now), now);
+            for (TaskReminderListener listener : reminderListeners) {
+                try {
+                    if (!reminded.isEmpty()) {
+                        listener.onReminders(reminded);
+                    }
+                    if (!overdue.isEmpty()) {
+                        listener.onOverdue(overdue);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Task reminder listener failed", e);
+                }
+            }
+        } catch (RuntimeException e) {
+            // The reminders stay set and are delivered at a later turn
+            LOGGER.log(Level.SEVERE, "Failed to deliver task reminders", e);
         }
     }
 
     /**
-     * Deletes all completed tasks from the JSON file.
-     * @return The number of tasks deleted
+     * Clears the reminders of expired timers whose task is still waiting for them, as one batch.
+     * @return The tasks with the reminder that was due
      */
+    private List<TaskRecord> remind(int[] taskIds, long now) {
+        if (taskIds.length == 0) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        locks.lockAll();
+        try {
+            // The tasks may have changed since their timers expired
+            List<TaskRecord> due = tasksFor(taskIds, record -> {
+                Instant reminder = pendingReminder(record);
+                return reminder != null && reminder.toEpochMilli() <= now;
+            });
+            TaskBatch clearing = new TaskBatch();
+            for (TaskRecord task : due) {
+                clearing.setSchedule(task.getId(), task.getDueDate(), null);
+            }
+            applyBatch(clearing);
+            return due;
+        } finally {
+            locks.unlockAll();
+            metrics.record(Operation.REMIND, start);
+        }
+    }
+
+    private List<TaskRecord> tasksFor(int[] taskIds, Predicate<TaskRecord> filter) {
+        TaskSnapshot current = snapshot.get();
+        List<TaskRecord> tasks = new ArrayList<>(taskIds.length);
+        for (int taskId : taskIds) {
+            TaskRecord task = current.get(taskId);
+            if (task != null && filter.test(task)) {
+                tasks.add(task);
+            }
+        }
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Publishes the change of one task. The caller must still hold the lock of the task.
+     */
+    private void publish(TaskRecord previous, TaskRecord current, long changeVersion) {
+        if (!changeListeners.isEmpty()) {
+            publish(List.of(TaskChange.between(previous, current, changeVersion)));
+        }
+    }
+
+    /**
+     * Publishes changes to every listener. A failing listener is logged and doesn't affect the
+     * others or the change, which is already applied.
+     */
+    private void publish(List<TaskChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<TaskChange> delivered = Collections.unmodifiableList(changes);
+        for (TaskChangeListener listener : changeListeners) {
+            try {
+                listener.onChanges(delivered);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Task change listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes all completed tasks and persists the change. With an archive they are moved to the archive instead.
+     * @return The number of tasks deleted or archived
+     */
+    @Override
     public int clearCompletedTasks() {
+        long start = System.nanoTime();
         try {
-            List<Task> tasks = loadTasksFromFile();
-            
-            int originalSize = tasks.size();
-            tasks.removeIf(Task::isCompleted);
-            int deletedCount = originalSize - tasks.size();
-            
-            saveTasksToFile(tasks);
-            LOGGER.info("Cleared " + deletedCount + " completed tasks");
-            return deletedCount;
+            int removed = removeCompleted(Integer.MAX_VALUE);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine((archive != null ? "Archived " : "Cleared ") + removed + " completed tasks");
+            }
+            return removed;
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to clear completed tasks", e);
             throw new RuntimeException("Failed to clear completed tasks", e);
+        } finally {
+            metrics.record(Operation.CLEAR_COMPLETED, start);
+        }
+    }
+
+    /**
+     * Removes the oldest completed tasks, those with the lowest IDs, and persists the change. With an
+     * archive they are appended to it first; if the removal can't be persisted, they are marked as
+     * restored again so they aren't found in both places.
+     * @param limit The most tasks to remove
+     * @return The number of tasks removed
+     */
+    private int removeCompleted(int limit) throws IOException {
+        locks.lockAll();
+        try {
+            TaskSnapshot before = snapshot.get();
+            // Only the completed tasks are visited, not the whole store
+            int[] taskIds = before.page(TaskQuery.Status.COMPLETED, false, 0, limit);
+            if (taskIds.length == 0) {
+                return 0;
+            }
+            TaskSnapshot.Editor editor = before.edit();
+            long changeVersion = before.getVersion();
+            List<TaskRecord> removed = new ArrayList<>(taskIds.length);
+            List<TaskChange> changes = new ArrayList<>(taskIds.length);
+            List<TaskMutation> deletions = new ArrayList<>(taskIds.length);
+            List<Integer> removedIds = new ArrayList<>(taskIds.length);
+            for (int taskId : taskIds) {
+                TaskRecord task = before.get(taskId);
+                apply(editor, taskId, null);
+                changes.add(TaskChange.between(task, null, ++changeVersion));
+                removed.add(task);
+                deletions.add(TaskMutation.delete(taskId));
+                removedIds.add(taskId);
+            }
+            TaskSnapshot after = editor.toSnapshot(changeVersion);
+            snapshot.set(after);
+
+            boolean archived = false;
+            try {
+                if (archive != null) {
+                    archive.archive(removed);
+                    archived = true;
+                }
+                commit(deletions);
+            } catch (IOException e) {
+                rollBack(before, after, removedIds);
+                if (archived) {
+                    try {
+                        archive.markRestored(removedIds);
+                    } catch (IOException markFailure) {
+                        e.addSuppressed(markFailure);
+                    }
+                }
+                throw e;
+            }
+            publish(changes);
+            return removed.size();
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Starts moving the oldest completed tasks beyond the configured number to the archive in the
+     * background. Nothing happens until the excess reaches a tenth of the kept tasks, so that the
+     * archive is appended to in groups rather than at every completion.
+     */
+    private void scheduleArchiving() {
+        if (archive == null || closed.get()) {
+            return;
+        }
+        int excess = snapshot.get().count(TaskQuery.Status.COMPLETED) - archiveKeepCompleted;
+        if (excess < Math.max(1, archiveKeepCompleted / 10) || !archivingScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        archiver.execute(() -> {
+            // Completions from now on schedule another run if this one doesn't cover them
+            archivingScheduled.set(false);
+            long start = System.nanoTime();
+            try {
+                int archived = removeCompleted(snapshot.get().count(TaskQuery.Status.COMPLETED) - archiveKeepCompleted);
+                if (archived > 0) {
+                    LOGGER.info("Archived " + archived + " completed tasks to " + archive.getPath());
+                }
+            } catch (IOException | RuntimeException e) {
+                // The tasks stay in the working set and are archived by the next run
+                LOGGER.log(Level.SEVERE, "Failed to archive completed tasks", e);
+            } finally {
+                metrics.record(Operation.ARCHIVE, start);
+            }
+        });
+    }
+
+    @Override
+    public List<TaskRecord> searchArchive(String query) {
+        if (archive == null) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        try {
+            return archive.search(query);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to search the archive", e);
+            throw new RuntimeException("Failed to search the archive", e);
+        } finally {
+            metrics.record(Operation.SEARCH_ARCHIVE, start);
         }
     }
 
     /**
-     * Saves the current state of tasks to the JSON file.
+     * Moves an archived task back into the working set and persists it. A restored completed task counts
+     * towards the completed tasks to keep like any other, so it is archived again by a later run unless
+     * it is reopened.
+     * @param archivedId The ID the task had when it was archived
+     * @return The ID of the restored task, or empty if there is no such archived task
+     */
+    @Override
+    public OptionalInt restoreArchivedTask(int archivedId) {
+        if (archive == null) {
+            return OptionalInt.empty();
+        }
+        long start = System.nanoTime();
+        try {
+            synchronized (restoreLock) {
+                // The archive is scanned before any lock is taken, so writers carry on meanwhile
+                TaskRecord archived = archive.find(archivedId);
+                if (archived == null) {
+                    LOGGER.warning("No archived task found with ID: " + archivedId);
+                    return OptionalInt.empty();
+                }
+                int taskId;
+                locks.lockAll();
+                try {
+                    // The ID may have been taken since by another engine or a replacement of all tasks
+                    taskId = snapshot.get().get(archivedId) == null ? archivedId : allocateIds(1);
+                    TaskRecord restored = new TaskRecord(taskId, archived.getDescription(), archived.isCompleted(),
+                            archived.getDueDate(), archived.getReminder());
+                    long changeVersion = putOrRemove(taskId, restored);
+                    try {
+                        commit(TaskMutation.add(restored));
+                    } catch (IOException e) {
+                        putOrRemove(taskId, null);
+                        throw e;
+                    }
+                    publish(null, restored, changeVersion);
+                } finally {
+                    locks.unlockAll();
+                }
+                // Marked only once the task is back, so a failure can duplicate the task but never lose it
+                archive.markRestored(List.of(archivedId));
+                LOGGER.info("Restored archived task " + archivedId + (taskId != archivedId ? " as " + taskId : ""));
+                return OptionalInt.of(taskId);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to restore archived task: " + archivedId, e);
+            throw new RuntimeException("Failed to restore archived task", e);
+        } finally {
+            metrics.record(Operation.RESTORE, start);
+        }
+    }
+
+    /**
+     * Replaces the stored tasks with the given list and saves it to the JSON file.
      * This method can be called to persist the current in-memory task list.
      * @param taskList The current list of tasks to save
      */
+    @Override
     public void saveAllTasks(ObservableList<Task> taskList) {
+        List<TaskRecord> records = new ArrayList<>(taskList.size());
+        for (Task task : taskList) {
+            records.add(TaskRecord.of(task));
+        }
+
         try {
-            List<Task> tasks = new ArrayList<>(taskList);
-            saveTasksToFile(tasks);
+            replaceAll(records);
             LOGGER.info("Saved all tasks to JSON file");
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to save all tasks", e);
@@ -211,11 +1405,181 @@ public class JsonDatabaseManager {
     }
 
     /**
-     * Gets the path to the JSON file.
-     * @return The path to the JSON file
+     * Replaces the stored tasks with the tasks of a JSON file in the {@code tasks.json} format.
+     * @param source The JSON file to import
+     * @return The number of imported tasks
+     */
+    public int importFromJson(File source) {
+        try {
+            List<TaskRecord> imported = new ArrayList<>();
+            new JsonSnapshotPersistence(jsonFactory, source).load(imported::add);
+            replaceAll(imported);
+            LOGGER.info("Imported " + imported.size() + " tasks from " + source.getPath());
+            return imported.size();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to import tasks from " + source.getPath(), e);
+            throw new RuntimeException("Failed to import tasks", e);
+        }
+    }
+
+    /**
+     * Writes all tasks to a JSON file in the {@code tasks.json} format, whatever the configured snapshot format.
+     * @param target The JSON file to write
+     */
+    public void exportToJson(File target) {
+        Collection<TaskRecord> records = copyAllTasks();
+        try {
+            new JsonSnapshotPersistence(jsonFactory, target).writeSnapshot(records);
+            LOGGER.info("Exported " + records.size() + " tasks to " + target.getPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to export tasks to " + target.getPath(), e);
+            throw new RuntimeException("Failed to export tasks", e);
+        }
+    }
+
+    /**
+     * Replaces the store with the given tasks and rewrites the files. The new snapshot and indexes
+     * are built aside and published at once, so readers see either the old or the new tasks.
+     */
+    private void replaceAll(Collection<TaskRecord> records) throws IOException {
+        long start = System.nanoTime();
+        TaskSnapshot.Editor builder = TaskSnapshot.EMPTY.edit();
+        for (TaskRecord record : records) {
+            builder.put(record);
+        }
+        TaskSnapshot replacement = builder.toSnapshot(0);
+        List<TaskRecord> replacementRecords = replacement.toList();
+        TaskSearchIndex replacementIndex = new TaskSearchIndex();
+        replacementIndex.rebuild(replacementRecords);
+        TaskDueIndex replacementDueIndex = new TaskDueIndex();
+        replacementDueIndex.rebuild(replacementRecords);
+
+        locks.lockAll();
+        try {
+            TaskSnapshot previous = snapshot.get();
+            TaskSearchIndex previousIndex = searchIndex;
+            TaskDueIndex previousDueIndex = dueIndex;
+            long changeVersion = previous.getVersion() + 1;
+            snapshot.set(replacement.atVersion(changeVersion));
+            searchIndex = replacementIndex;
+            dueIndex = replacementDueIndex;
+            resetTimers(replacementRecords);
+            if (!replacement.isEmpty()) {
+                nextId.accumulateAndGet(replacement.lastId() + 1, Math::max);
+            }
+
+            if (writeBehindWriter != null) {
+                writeBehindWriter.enqueueRewrite();
+            } else {
+                try {
+                    synchronized (persistenceLock) {
+                        persistence.rewrite(replacementRecords);
+                    }
+                } catch (IOException e) {
+                    snapshot.set(previous.atVersion(changeVersion + 1));
+                    searchIndex = previousIndex;
+                    dueIndex = previousDueIndex;
+                    resetTimers(previous.toList());
+                    throw e;
+                }
+            }
+            publish(List.of(TaskChange.reset(changeVersion)));
+        } finally {
+            locks.unlockAll();
+            metrics.record(Operation.REPLACE_ALL, start);
+        }
+        scheduleArchiving();
+    }
+
+    /**
+     * Gets the path to the snapshot file, which is the JSON file unless the binary format is configured.
+     * @return The path to the snapshot file
      */
     public String getJsonFilePath() {
-        return jsonFile.getAbsolutePath();
+        return persistence.getPath();
+    }
+
+    /**
+     * Gets the operation and write metrics of this manager.
+     * @return The metrics
+     */
+    public StorageMetrics getMetrics() {
+        return metrics;
     }
-}
 
+    /**
+     * Writes every queued change to disk and waits until it is written.
+     * Returns immediately unless write-behind is enabled.
+     */
+    @Override
+    public void flush() {
+        if (writeBehindWriter == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            writeBehindWriter.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to flush queued changes", e);
+            throw new RuntimeException("Failed to flush queued changes", e);
+        } finally {
+            metrics.record(Operation.FLUSH, start);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor, String work) throws IOException {
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warning("Stopped waiting for " + work + ", which is still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + work, e);
+        }
+    }
+
+    /**
+     * Writes every queued change, waits for background work to finish and releases the files.
+     * Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            try {
+                ScheduledExecutorService timer;
+                synchronized (reminderListeners) {
+                    timer = reminderTimer;
+                }
+                if (timer != null) {
+                    // Reminders being cleared are written like any other change
+                    timer.shutdown();
+                    awaitTermination(timer, "task reminders");
+                }
+                if (archiver != null) {
+                    // A scheduled archive pass finishes before the last changes are written
+                    archiver.shutdown();
+                    awaitTermination(archiver, "archiving");
+                }
+                if (writeBehindWriter != null) {
+                    writeBehindWriter.close();
+                }
+            } finally {
+                try {
+                    persistence.close();
+                } finally {
+                    metrics.unregister();
+                    if (metricsReporter != null) {
+                        metricsReporter.close();
+                    }
+                }
+            }
+            LOGGER.info("JSON database manager closed");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to close JSON database manager", e);
+            throw new RuntimeException("Failed to close database", e);
+        }
+    }
+}
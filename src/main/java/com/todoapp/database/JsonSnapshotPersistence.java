@@ -0,0 +1,140 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists the tasks as a single pretty-printed JSON array that is rewritten on every change.
+ * The file is read and written with Jackson's streaming API, one task at a time, so neither
+ * direction builds an intermediate list of the whole document. A task's due date and reminder are
+ * written as ISO-8601 instants, and only if it has them.
+ */
+class JsonSnapshotPersistence extends SnapshotPersistence {
+    private static final Logger LOGGER = Logger.getLogger(JsonSnapshotPersistence.class.getName());
+
+    private final JsonFactory jsonFactory;
+
+    JsonSnapshotPersistence(JsonFactory jsonFactory, File jsonFile) {
+        this(jsonFactory, jsonFile, StorageConfig.Durability.FLUSH);
+    }
+
+    JsonSnapshotPersistence(JsonFactory jsonFactory, File jsonFile, StorageConfig.Durability durability) {
+        super(jsonFile, durability);
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    void read(File source, Consumer<TaskRecord> sink) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(source)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                // An empty file holds no tasks
+                return;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of tasks in " + source.getPath());
+            }
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                sink.accept(readTask(parser));
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Unexpected " + token + " in " + source.getPath()
+                        + " at " + parser.currentLocation());
+            }
+        }
+    }
+
+    /**
+     * Reads the fields of one task object; the parser must be positioned on its START_OBJECT token.
+     */
+    private static TaskRecord readTask(JsonParser parser) throws IOException {
+        int id = -1;
+        String description = "";
+        boolean completed = false;
+        Instant dueDate = null;
+        Instant reminder = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getIntValue();
+                    break;
+                case "description":
+                    // An explicit null stays null, as the data-binding reader left it
+                    description = parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString("");
+                    break;
+                case "completed":
+                    completed = parser.getValueAsBoolean();
+                    break;
+                case "dueDate":
+                    dueDate = readInstant(parser);
+                    break;
+                case "reminder":
+                    reminder = readInstant(parser);
+                    break;
+                default:
+                    // Unknown fields are ignored, like the data-binding reader did
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return new TaskRecord(id, description, completed, dueDate, reminder);
+    }
+
+    private static Instant readInstant(JsonParser parser) throws IOException {
+        String text = parser.getValueAsString();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid instant '" + text + "' at " + parser.currentLocation(), e);
+        }
+    }
+
+    /**
+     * Writes all tasks as a JSON array.
+     * @param out The stream to write to
+     * @param tasks Tasks to save
+     */
+    @Override
+    void write(OutputStream out, Collection<TaskRecord> tasks) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+            generator.writeStartArray();
+            for (TaskRecord task : tasks) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", task.getId());
+                generator.writeStringField("description", task.getDescription());
+                generator.writeBooleanField("completed", task.isCompleted());
+                if (task.getDueDate() != null) {
+                    generator.writeStringField("dueDate", task.getDueDate().toString());
+                }
+                if (task.getReminder() != null) {
+                    generator.writeStringField("reminder", task.getReminder().toString());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Saved " + tasks.size() + " tasks to JSON file");
+        }
+    }
+}
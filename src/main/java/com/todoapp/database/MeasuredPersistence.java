@@ -0,0 +1,85 @@
+package com.todoapp.database;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a persistence to record the latency and size of its writes in the storage metrics. Wrapping the
+ * persistence rather than the manager's calls also measures the writes of the background writer.
+ * <p>
+ * The bytes of a write are read from the persistence's byte counter, so they include a journal
+ * compaction that completes on its own thread during the write.
+ */
+class MeasuredPersistence implements TaskPersistence {
+    private final TaskPersistence delegate;
+    private final StorageMetrics metrics;
+
+    MeasuredPersistence(TaskPersistence delegate, StorageMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void load(Consumer<TaskRecord> sink) throws IOException {
+        delegate.load(sink);
+    }
+
+    @Override
+    public void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) throws IOException {
+        long bytesBefore = delegate.getBytesWritten();
+        long start = System.nanoTime();
+        delegate.persist(mutations, state);
+        metrics.recordWrite(System.nanoTime() - start, delegate.getBytesWritten() - bytesBefore);
+    }
+
+    @Override
+    public void rewrite(Collection<TaskRecord> state) throws IOException {
+        long bytesBefore = delegate.getBytesWritten();
+        long start = System.nanoTime();
+        delegate.rewrite(state);
+        metrics.recordWrite(System.nanoTime() - start, delegate.getBytesWritten() - bytesBefore);
+    }
+
+    @Override
+    public int getNextId() {
+        return delegate.getNextId();
+    }
+
+    @Override
+    public boolean isShared() {
+        return delegate.isShared();
+    }
+
+    @Override
+    public int reserveIds(int count) throws IOException {
+        return delegate.reserveIds(count);
+    }
+
+    @Override
+    public void watch(ExternalChangeHandler handler) {
+        delegate.watch(handler);
+    }
+
+    @Override
+    public void catchUp(Supplier<TaskSnapshot> state) throws IOException {
+        delegate.catchUp(state);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return delegate.getBytesWritten();
+    }
+
+    @Override
+    public String getPath() {
+        return delegate.getPath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,81 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the storage metrics to a JSON file at a fixed interval, for installations that aren't watched
+ * over JMX. The file is replaced as a whole, so a reader never sees a partial report.
+ */
+class MetricsFileReporter implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(MetricsFileReporter.class.getName());
+
+    private final StorageMetrics metrics;
+    private final File file;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates the reporter and schedules its first report after one interval.
+     * @param metrics The metrics to report
+     * @param file The file to write
+     * @param intervalSeconds The time between two reports
+     */
+    MetricsFileReporter(StorageMetrics metrics, File file, long intervalSeconds) {
+        this.metrics = metrics;
+        this.file = file;
+        this.objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::reportQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the current metrics to the file.
+     */
+    void report() throws IOException {
+        Map<String, Object> report = metrics.toMap();
+        report.put("timestamp", System.currentTimeMillis());
+        File temporary = new File(file.getPath() + ".tmp");
+        objectMapper.writeValue(temporary, report);
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void reportQuietly() {
+        try {
+            report();
+        } catch (IOException | RuntimeException e) {
+            // A failed report must not cancel the next ones
+            LOGGER.log(Level.WARNING, "Failed to write storage metrics to " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Stops the schedule and writes a last report.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+    }
+}
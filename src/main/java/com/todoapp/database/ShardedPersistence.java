@@ -0,0 +1,285 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Persistence that partitions the tasks by ID range into shard files in one directory, so a change
+ * rewrites only the small file that holds its task.
+ * <p>
+ * Shard {@code n} holds the IDs from {@code n * shardSize} up to the next shard, in the configured
+ * {@link StorageConfig.SnapshotFormat}, and is written like a single snapshot file: atomically, with a
+ * checksum and at the configured {@link StorageConfig.Durability}. A small {@code manifest.json} records
+ * the format, the shard size, the shards that hold tasks and the task IDs handed out so far. The manifest
+ * is written before the shards whenever one of these changes, so a shard it lists may still be missing,
+ * which loads as empty, but a shard that holds tasks is never left out. IDs are reserved in the manifest
+ * in blocks of {@value #ID_BLOCK_SIZE}, so that adding a task rewrites only its shard until the block
+ * runs out; the unused rest of a block is skipped after a restart. The shards are loaded in parallel on
+ * the common fork-join pool.
+ * <p>
+ * A group of changes that spans several shards is written shard by shard, so a crash in the middle can
+ * keep the changes to some shards and lose the others.
+ */
+class ShardedPersistence implements TaskPersistence {
+    private static final Logger LOGGER = Logger.getLogger(ShardedPersistence.class.getName());
+    static final String DEFAULT_DIRECTORY_NAME = "tasks.shards";
+    static final String MANIFEST_FILE_NAME = "manifest.json";
+    private static final int MANIFEST_VERSION = 1;
+    static final int ID_BLOCK_SIZE = 64;
+
+    private final ObjectMapper objectMapper;
+    private final File directory;
+    private final File manifestFile;
+    private final StorageConfig.Durability durability;
+    // Read by the metrics while the writer adds and removes shards
+    private final NavigableMap<Integer, SnapshotPersistence> shards = new ConcurrentSkipListMap<>();
+    private final LongAdder manifestBytesWritten = new LongAdder();
+    // Bytes written to shards that have since been removed
+    private final LongAdder removedBytesWritten = new LongAdder();
+
+    private StorageConfig.SnapshotFormat format;
+    private int shardSize;
+    // The first ID that is not reserved in the manifest
+    private int nextId = 1;
+
+    ShardedPersistence(ObjectMapper objectMapper, File directory, StorageConfig.SnapshotFormat format,
+                       int shardSize, StorageConfig.Durability durability) {
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.manifestFile = new File(directory, MANIFEST_FILE_NAME);
+        this.format = format;
+        this.shardSize = shardSize;
+        this.durability = durability;
+    }
+
+    @Override
+    public void load(Consumer<TaskRecord> sink) throws IOException {
+        if (!manifestFile.exists()) {
+            Files.createDirectories(directory.toPath());
+            writeManifest();
+            LOGGER.info("Created new sharded store: " + directory.getPath());
+            return;
+        }
+        readManifest();
+
+        List<List<TaskRecord>> loaded;
+        try {
+            loaded = new ArrayList<>(shards.values()).parallelStream()
+                    .map(ShardedPersistence::loadShard)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // The shards are in ID order, and so are the tasks in each shard
+        for (List<TaskRecord> records : loaded) {
+            records.forEach(sink);
+        }
+        LOGGER.info("Loaded " + shards.size() + " shards from " + directory.getPath());
+    }
+
+    private static List<TaskRecord> loadShard(SnapshotPersistence shard) {
+        List<TaskRecord> records = new ArrayList<>();
+        try {
+            shard.load(records::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    @Override
+    public void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) throws IOException {
+        Set<Integer> touched = new TreeSet<>();
+        int highestId = 0;
+        for (TaskMutation mutation : mutations) {
+            touched.add(shardIndex(mutation.getId()));
+            highestId = Math.max(highestId, mutation.getId());
+        }
+
+        TaskSnapshot current = state.get();
+        Map<Integer, List<TaskRecord>> contents = new TreeMap<>();
+        for (int index : touched) {
+            List<TaskRecord> records = new ArrayList<>();
+            current.forEach(shardStart(index), shardEnd(index), records::add);
+            contents.put(index, records);
+        }
+        writeShards(contents, reserveThrough(highestId));
+    }
+
+    @Override
+    public void rewrite(Collection<TaskRecord> state) throws IOException {
+        Map<Integer, List<TaskRecord>> contents = new TreeMap<>();
+        for (int index : shards.keySet()) {
+            contents.put(index, new ArrayList<>());
+        }
+        int highestId = 0;
+        for (TaskRecord record : state) {
+            contents.computeIfAbsent(shardIndex(record.getId()), index -> new ArrayList<>()).add(record);
+            highestId = Math.max(highestId, record.getId());
+        }
+        writeShards(contents, reserveThrough(highestId));
+    }
+
+    /**
+     * Gets the first ID that is not reserved once the given ID is, reserving the next block if it isn't yet.
+     */
+    private int reserveThrough(int highestId) {
+        return highestId < nextId ? nextId : highestId + ID_BLOCK_SIZE;
+    }
+
+    /**
+     * Replaces the contents of some shards, removing the shards that become empty.
+     * @param contents The new tasks of every shard to write, in ID order
+     * @param newNextId The first ID that is not reserved after the changes
+     */
+    private void writeShards(Map<Integer, List<TaskRecord>> contents, int newNextId) throws IOException {
+        List<SnapshotPersistence> removed = new ArrayList<>();
+        boolean manifestChanged = newNextId != nextId;
+        for (Map.Entry<Integer, List<TaskRecord>> entry : contents.entrySet()) {
+            int index = entry.getKey();
+            if (entry.getValue().isEmpty()) {
+                SnapshotPersistence shard = shards.remove(index);
+                if (shard != null) {
+                    removed.add(shard);
+                    manifestChanged = true;
+                }
+            } else if (!shards.containsKey(index)) {
+                shards.put(index, createShard(index));
+                manifestChanged = true;
+            }
+        }
+        nextId = newNextId;
+        if (manifestChanged) {
+            writeManifest();
+        }
+
+        for (Map.Entry<Integer, List<TaskRecord>> entry : contents.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                shards.get(entry.getKey()).writeSnapshot(entry.getValue());
+            }
+        }
+        for (SnapshotPersistence shard : removed) {
+            shard.delete();
+            removedBytesWritten.add(shard.getBytesWritten());
+        }
+    }
+
+    private int shardIndex(int id) {
+        return id / shardSize;
+    }
+
+    private int shardStart(int index) {
+        return index * shardSize;
+    }
+
+    private int shardEnd(int index) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) (index + 1) * shardSize);
+    }
+
+    private SnapshotPersistence createShard(int index) {
+        String extension = format.getDefaultFileName().substring(format.getDefaultFileName().lastIndexOf('.'));
+        File file = new File(directory, String.format("shard-%06d%s", index, extension));
+        if (format == StorageConfig.SnapshotFormat.BINARY) {
+            return new BinarySnapshotPersistence(file, durability);
+        }
+        return new JsonSnapshotPersistence(objectMapper.getFactory(), file, durability);
+    }
+
+    private void readManifest() throws IOException {
+        JsonNode manifest = objectMapper.readTree(manifestFile);
+        int version = manifest.path("version").asInt();
+        if (version != MANIFEST_VERSION) {
+            throw new IOException("Unsupported shard manifest version " + version + " in " + manifestFile.getPath());
+        }
+        StorageConfig.SnapshotFormat storedFormat = StorageConfig.SnapshotFormat.valueOf(manifest.path("format").asText());
+        int storedShardSize = manifest.path("shardSize").asInt();
+        if (storedShardSize < 1) {
+            throw new IOException("Invalid shard size " + storedShardSize + " in " + manifestFile.getPath());
+        }
+        if (storedFormat != format || storedShardSize != shardSize) {
+            LOGGER.info("Using the " + storedFormat + " format and shard size " + storedShardSize
+                    + " of the existing store " + directory.getPath());
+        }
+        format = storedFormat;
+        shardSize = storedShardSize;
+        nextId = manifest.path("nextId").asInt(1);
+
+        shards.clear();
+        for (JsonNode index : manifest.path("shards")) {
+            shards.put(index.asInt(), createShard(index.asInt()));
+        }
+    }
+
+    /**
+     * Replaces the manifest atomically, synced to the device with {@link StorageConfig.Durability#FSYNC}.
+     */
+    private void writeManifest() throws IOException {
+        ObjectNode manifest = objectMapper.createObjectNode();
+        manifest.put("version", MANIFEST_VERSION);
+        manifest.put("format", format.name());
+        manifest.put("shardSize", shardSize);
+        manifest.put("nextId", nextId);
+        ArrayNode indexes = manifest.putArray("shards");
+        shards.keySet().forEach(indexes::add);
+        byte[] bytes = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest);
+
+        File temp = new File(manifestFile.getPath() + SnapshotPersistence.TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes);
+            if (durability == StorageConfig.Durability.FSYNC) {
+                out.getChannel().force(true);
+            }
+        }
+        SnapshotPersistence.replace(temp, manifestFile);
+        if (durability == StorageConfig.Durability.FSYNC) {
+            SnapshotPersistence.syncDirectory(directory.getAbsoluteFile());
+        }
+        manifestBytesWritten.add(bytes.length);
+    }
+
+    @Override
+    public int getNextId() {
+        return nextId;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        long total = manifestBytesWritten.sum() + removedBytesWritten.sum();
+        for (SnapshotPersistence shard : shards.values()) {
+            total += shard.getBytesWritten();
+        }
+        return total;
+    }
+
+    @Override
+    public String getPath() {
+        return directory.getAbsolutePath();
+    }
+
+    @Override
+    public void close() {
+        // Every change is written through, so there is nothing left to flush
+    }
+}
@@ -0,0 +1,27 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Provides the {@link JsonDatabaseManager} engine over {@link ShardedPersistence}, which keeps the tasks
+ * in shard files in the directory named by {@link StorageConfig#getShardDirectory()}. The persistence
+ * mode is not used: every shard is a snapshot.
+ */
+public class ShardedTaskRepositoryProvider implements TaskRepositoryProvider {
+    public static final String NAME = "sharded";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TaskRepository create(StorageConfig config) {
+        if (config.isShared()) {
+            throw new IllegalArgumentException("The " + NAME + " engine can't share its files with other processes");
+        }
+        ShardedPersistence persistence = new ShardedPersistence(new ObjectMapper(), config.getShardDirectory(),
+                config.getSnapshotFormat(), config.getShardSize(), config.getDurability());
+        return new JsonDatabaseManager(config, persistence);
+    }
+}
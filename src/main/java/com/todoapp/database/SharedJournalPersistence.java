@@ -0,0 +1,458 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Journal persistence for task files that several processes open at the same time, such as the
+ * application and a script working on the same {@code tasks.json}.
+ * <p>
+ * Every access to the files happens under an exclusive {@link FileLock} on {@code tasks.json.lock}, which
+ * the managers of one process take in turn. Changes are appended to the journal as in
+ * {@link JournalPersistence}, but first the records that other processes appended since the last read are
+ * read and handed to the repository, so that no process overwrites what another wrote. The lock file also
+ * holds the next free task ID, from which every process reserves blocks of IDs, and a generation number
+ * that changes whenever the journal is folded into the snapshot or all tasks are replaced; a process that
+ * sees a new generation reads the files in full and applies the difference to its tasks.
+ * <p>
+ * A thread watches the directory with a {@link WatchService} and asks the repository to catch up when
+ * another process has written, so its changes show up without waiting for a local write. The files are
+ * also checked every {@value #POLL_MILLIS} ms, for file systems that don't report changes.
+ * <p>
+ * Journal records are handed to the operating system by every write, and forced to the device with
+ * {@link StorageConfig.Durability#FSYNC}. Only complete lines are read, so a record torn by a crash is
+ * never applied; it is cut off before the next append.
+ */
+class SharedJournalPersistence implements TaskPersistence {
+    private static final Logger LOGGER = Logger.getLogger(SharedJournalPersistence.class.getName());
+    static final String LOCK_SUFFIX = ".lock";
+    private static final long POLL_MILLIS = 1000;
+    // The lock file holds the generation followed by the next free task ID
+    private static final int STATE_BYTES = Long.BYTES + Integer.BYTES;
+    // A file lock belongs to the whole process, so the managers of one process take turns through these
+    private static final ConcurrentMap<String, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter recordWriter;
+    private final SnapshotPersistence snapshot;
+    private final File journalFile;
+    private final File lockFile;
+    private final int compactionThreshold;
+    private final ReentrantLock processLock;
+    private final LongAdder journalBytesWritten = new LongAdder();
+
+    private FileChannel journal;
+    private FileChannel lockChannel;
+    // Read without the lock by the watching thread, to tell whether another process has written
+    private volatile long journalOffset;
+    private volatile long generation;
+    private volatile boolean closed;
+    private int journalRecords;
+    private ExternalChangeHandler handler;
+    private WatchService watchService;
+    private Thread watcher;
+
+    SharedJournalPersistence(ObjectMapper objectMapper, SnapshotPersistence snapshot, int compactionThreshold) {
+        this.objectMapper = objectMapper;
+        this.recordWriter = objectMapper.writerFor(TaskMutation.class);
+        this.snapshot = snapshot;
+        this.journalFile = new File(snapshot.file.getPath() + JournalPersistence.JOURNAL_SUFFIX);
+        this.lockFile = new File(snapshot.file.getPath() + LOCK_SUFFIX);
+        this.compactionThreshold = compactionThreshold;
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(
+                lockFile.getAbsoluteFile().toPath().normalize().toString(), path -> new ReentrantLock());
+    }
+
+    @Override
+    public void load(Consumer<TaskRecord> sink) throws IOException {
+        boolean created = openFiles();
+        Map<Integer, TaskRecord> tasks = locked(() -> {
+            Map<Integer, TaskRecord> read = readAll();
+            generation = readState().getLong(0);
+            // Files written before they were shared don't record the next ID yet
+            int highestId = read.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            if (readState().getInt(Long.BYTES) <= highestId) {
+                writeState(generation, highestId + 1);
+            }
+            return read;
+        });
+        if (created && snapshot.durability == StorageConfig.Durability.FSYNC) {
+            snapshot.syncDirectory();
+        }
+        if (journalRecords > 0) {
+            LOGGER.info("Replayed " + journalRecords + " shared journal records");
+        }
+        tasks.values().forEach(sink);
+    }
+
+    /**
+     * Opens the journal and the lock file, creating them if needed.
+     * @return true if the journal was created
+     */
+    private boolean openFiles() throws IOException {
+        if (journal != null) {
+            return false;
+        }
+        boolean created = !journalFile.exists();
+        lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return created;
+    }
+
+    @Override
+    public void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) throws IOException {
+        locked(() -> {
+            List<TaskMutation> external = readExternalChanges(state);
+            if (journal.size() > journalOffset) {
+                LOGGER.warning("Cutting off an incomplete record at the end of " + journalFile.getName());
+                journal.truncate(journalOffset);
+            }
+            append(mutations);
+            if (!external.isEmpty() && handler != null) {
+                // The changes of this process are already applied, but they were written after the external
+                // ones, so those that touch the same tasks are applied again on top
+                Set<Integer> touched = new HashSet<>();
+                external.forEach(mutation -> touched.add(mutation.getId()));
+                List<TaskMutation> changes = new ArrayList<>(external);
+                for (TaskMutation mutation : mutations) {
+                    if (touched.contains(mutation.getId())) {
+                        changes.add(mutation);
+                    }
+                }
+                handler.apply(changes);
+            }
+            if (journalRecords >= compactionThreshold) {
+                compact(state);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Folds the journal into the snapshot. The store now holds everything in the files, so it can replace
+     * them. The changes are already in the journal, where other processes may have read them, so a failure
+     * only leaves the journal to be folded in by the next write. The caller holds the file lock.
+     */
+    private void compact(Supplier<TaskSnapshot> state) {
+        try {
+            snapshot.writeSnapshot(state.get().toList());
+            startGeneration(readState().getInt(Long.BYTES));
+        } catch (IOException | RuntimeException e) {
+            // A snapshot written without a new generation only has the journal replayed on top of it
+            LOGGER.log(Level.SEVERE, "Shared journal compaction failed", e);
+        }
+    }
+
+    @Override
+    public void catchUp(Supplier<TaskSnapshot> state) throws IOException {
+        List<TaskMutation> external = locked(() -> readExternalChanges(state));
+        if (!external.isEmpty() && handler != null) {
+            handler.apply(external);
+        }
+    }
+
+    @Override
+    public void rewrite(Collection<TaskRecord> state) throws IOException {
+        openFiles();
+        locked(() -> {
+            snapshot.writeSnapshot(state);
+            int highestId = 0;
+            for (TaskRecord record : state) {
+                highestId = Math.max(highestId, record.getId());
+            }
+            startGeneration(Math.max(readState().getInt(Long.BYTES), highestId + 1));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public int reserveIds(int count) throws IOException {
+        return locked(() -> {
+            ByteBuffer state = readState();
+            int first = Math.max(1, state.getInt(Long.BYTES));
+            writeState(state.getLong(0), first + count);
+            return first;
+        });
+    }
+
+    /**
+     * Marks the snapshot as holding every change and empties the journal. The generation is changed first,
+     * so a crash in between leaves a journal that is replayed on top of the snapshot, which is harmless.
+     */
+    private void startGeneration(int nextId) throws IOException {
+        generation = readState().getLong(0) + 1;
+        writeState(generation, nextId);
+        journal.truncate(0);
+        journalOffset = 0;
+        journalRecords = 0;
+    }
+
+    /**
+     * Reads what other processes have written since the last read. The caller holds the file lock.
+     * @return The changes in the order they were written, or the difference to the current store if the
+     *         journal was folded into the snapshot or everything was replaced meanwhile
+     */
+    private List<TaskMutation> readExternalChanges(Supplier<TaskSnapshot> state) throws IOException {
+        long currentGeneration = readState().getLong(0);
+        if (currentGeneration == generation && journal.size() >= journalOffset) {
+            return readJournal();
+        }
+        // The position in the journal means nothing in a new generation
+        Map<Integer, TaskRecord> tasks = readAll();
+        generation = currentGeneration;
+        return differences(tasks, state.get());
+    }
+
+    /**
+     * Reads the snapshot and the whole journal. The caller holds the file lock.
+     */
+    private Map<Integer, TaskRecord> readAll() throws IOException {
+        Map<Integer, TaskRecord> tasks = new LinkedHashMap<>();
+        snapshot.load(task -> tasks.put(task.getId(), task));
+        journalOffset = 0;
+        journalRecords = 0;
+        for (TaskMutation mutation : readJournal()) {
+            JournalPersistence.apply(mutation, tasks);
+        }
+        return tasks;
+    }
+
+    /**
+     * Reads the complete journal records after the last read one.
+     */
+    private List<TaskMutation> readJournal() throws IOException {
+        long size = journal.size();
+        if (size <= journalOffset) {
+            return List.of();
+        }
+        // The journal is folded into the snapshot once it holds enough records, so it stays small
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - journalOffset));
+        while (buffer.hasRemaining() && journal.read(buffer, journalOffset + buffer.position()) >= 0) {
+            // Read until the end seen above
+        }
+        byte[] bytes = buffer.array();
+        List<TaskMutation> records = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < buffer.position(); i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            lineStart = i + 1;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                records.add(objectMapper.readValue(line, TaskMutation.class));
+            } catch (JsonProcessingException e) {
+                LOGGER.log(Level.WARNING, "Ignoring unreadable journal record in " + journalFile.getName(), e);
+            }
+        }
+        // A record without its line end is still being written, or was torn by a crash
+        journalOffset += lineStart;
+        journalRecords += records.size();
+        return records;
+    }
+
+    /**
+     * Describes how the files differ from the store as changes that turn the store into the files.
+     */
+    private static List<TaskMutation> differences(Map<Integer, TaskRecord> files, TaskSnapshot store) {
+        List<TaskMutation> changes = new ArrayList<>();
+        store.forEach(record -> {
+            TaskRecord stored = files.get(record.getId());
+            if (stored == null) {
+                changes.add(TaskMutation.delete(record.getId()));
+            } else if (stored.isCompleted() != record.isCompleted()
+                    || !String.valueOf(stored.getDescription()).equals(String.valueOf(record.getDescription()))
+                    || !Objects.equals(stored.getDueDate(), record.getDueDate())
+                    || !Objects.equals(stored.getReminder(), record.getReminder())) {
+                changes.add(TaskMutation.add(stored));
+            }
+        });
+        for (TaskRecord stored : files.values()) {
+            if (store.get(stored.getId()) == null) {
+                changes.add(TaskMutation.add(stored));
+            }
+        }
+        return changes;
+    }
+
+    private void append(List<TaskMutation> mutations) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (TaskMutation mutation : mutations) {
+            records.write(recordWriter.writeValueAsBytes(mutation));
+            records.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+        long position = journalOffset;
+        while (buffer.hasRemaining()) {
+            position += journal.write(buffer, position);
+        }
+        if (snapshot.durability == StorageConfig.Durability.FSYNC) {
+            journal.force(false);
+        }
+        journalOffset = position;
+        journalRecords += mutations.size();
+        journalBytesWritten.add(records.size());
+    }
+
+    private ByteBuffer readState() throws IOException {
+        ByteBuffer state = ByteBuffer.allocate(STATE_BYTES);
+        while (state.hasRemaining() && lockChannel.read(state, state.position()) > 0) {
+            // Read until the end of the state
+        }
+        // A new lock file reads as generation 0 with no ID handed out yet
+        return state;
+    }
+
+    private void writeState(long newGeneration, int nextId) throws IOException {
+        ByteBuffer state = ByteBuffer.allocate(STATE_BYTES).putLong(newGeneration).putInt(nextId);
+        state.flip();
+        while (state.hasRemaining()) {
+            lockChannel.write(state, state.position());
+        }
+        if (snapshot.durability == StorageConfig.Durability.FSYNC) {
+            lockChannel.force(false);
+        }
+    }
+
+    /**
+     * Runs an action while holding the lock of the files, against this process and every other one.
+     */
+    private <T> T locked(FileAction<T> action) throws IOException {
+        processLock.lock();
+        try {
+            FileLock fileLock = lockChannel.lock();
+            try {
+                return action.run();
+            } finally {
+                fileLock.release();
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileAction<T> {
+        T run() throws IOException;
+    }
+
+    @Override
+    public void watch(ExternalChangeHandler handler) {
+        this.handler = handler;
+        Path directory = journalFile.getAbsoluteFile().getParentFile().toPath();
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.WARNING, "Cannot watch " + directory + "; checking it every " + POLL_MILLIS + " ms instead", e);
+            watchService = null;
+        }
+        watcher = new Thread(this::watchFiles, "task-store-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchFiles() {
+        while (!closed) {
+            try {
+                if (watchService != null) {
+                    // Any event only wakes the thread up early; the files tell whether there is anything new
+                    WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                } else {
+                    Thread.sleep(POLL_MILLIS);
+                }
+                if (!closed && hasExternalChanges()) {
+                    handler.filesChanged();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    LOGGER.log(Level.WARNING, "Failed to check " + journalFile.getName() + " for changes", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells without the lock whether another process may have written since the last read.
+     */
+    private boolean hasExternalChanges() throws IOException {
+        return journal.size() != journalOffset || readState().getLong(0) != generation;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return journalBytesWritten.sum() + snapshot.getBytesWritten();
+    }
+
+    @Override
+    public String getPath() {
+        return snapshot.getPath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+            if (watcher != null && watcher != Thread.currentThread()) {
+                // Not interrupted: an interrupt during a read would close the channels under the other threads
+                watcher.join(2 * POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (journal != null) {
+                journal.close();
+                lockChannel.close();
+            }
+        }
+    }
+}
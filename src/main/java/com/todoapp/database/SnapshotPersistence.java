@@ -0,0 +1,252 @@
+package com.todoapp.database;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Base class for persistence that stores the whole task set in a single snapshot file,
+ * which is rewritten on every change.
+ * <p>
+ * The file is never written in place. A new snapshot goes to a temporary file that is then renamed over
+ * the old one, so a crash leaves either the old or the new snapshot, never a mix. The length and CRC-32C
+ * of every snapshot are kept next to it and verified on load; the checksum is written before the rename,
+ * so a snapshot whose rename was interrupted is recognised and put in place on the next start. With
+ * {@link StorageConfig.Durability#FSYNC} both files are forced to the device before the rename and the
+ * directory after it.
+ */
+abstract class SnapshotPersistence implements TaskPersistence {
+    private static final Logger LOGGER = Logger.getLogger(SnapshotPersistence.class.getName());
+    static final String TEMP_SUFFIX = ".tmp";
+    static final String CHECKSUM_SUFFIX = ".crc32c";
+
+    protected final File file;
+    protected final StorageConfig.Durability durability;
+    protected final LongAdder bytesWritten = new LongAdder();
+    private final File tempFile;
+    private final File checksumFile;
+
+    SnapshotPersistence(File file, StorageConfig.Durability durability) {
+        this.file = file;
+        this.durability = durability;
+        this.tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        this.checksumFile = new File(file.getPath() + CHECKSUM_SUFFIX);
+    }
+
+    /**
+     * Reads the tasks of a snapshot file whose checksum has been verified.
+     * @param source The snapshot file
+     * @param sink Receives every task
+     */
+    abstract void read(File source, Consumer<TaskRecord> sink) throws IOException;
+
+    /**
+     * Writes all tasks in the format of the snapshot. The stream is closed by the caller.
+     * @param out The stream to write to
+     * @param tasks Tasks to save
+     */
+    abstract void write(OutputStream out, Collection<TaskRecord> tasks) throws IOException;
+
+    @Override
+    public void load(Consumer<TaskRecord> sink) throws IOException {
+        verify();
+        if (!file.exists()) {
+            writeSnapshot(Collections.emptyList());
+            LOGGER.info("Created new snapshot: " + file.getPath());
+            return;
+        }
+        read(file, sink);
+    }
+
+    /**
+     * Writes all tasks to the snapshot file, replacing its contents atomically.
+     * @param tasks Tasks to save
+     */
+    void writeSnapshot(Collection<TaskRecord> tasks) throws IOException {
+        CRC32C crc = new CRC32C();
+        long length;
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new CountingOutputStream(out, bytesWritten), crc) {
+                @Override
+                public void close() throws IOException {
+                    // Closed below, once the file is synced
+                    flush();
+                }
+            };
+            write(checked, tasks);
+            checked.flush();
+            length = out.getChannel().position();
+            if (durability == StorageConfig.Durability.FSYNC) {
+                out.getChannel().force(true);
+            }
+        }
+        writeChecksum(length, crc.getValue());
+        replace(tempFile, file);
+        if (durability == StorageConfig.Durability.FSYNC) {
+            syncDirectory();
+        }
+    }
+
+    @Override
+    public void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) throws IOException {
+        writeSnapshot(state.get().toList());
+    }
+
+    @Override
+    public void rewrite(Collection<TaskRecord> state) throws IOException {
+        writeSnapshot(state);
+    }
+
+    /**
+     * Checks the snapshot file against its checksum, finishing a snapshot write that was interrupted
+     * between writing the checksum and renaming the file.
+     */
+    private void verify() throws IOException {
+        String[] expected = readChecksum();
+        if (expected == null) {
+            // Written before checksums were kept, or never written; a temporary file is an unfinished write
+            Files.deleteIfExists(tempFile.toPath());
+            return;
+        }
+        if (file.exists() && matches(file, expected)) {
+            Files.deleteIfExists(tempFile.toPath());
+            return;
+        }
+        if (tempFile.exists() && matches(tempFile, expected)) {
+            replace(tempFile, file);
+            LOGGER.warning("Completed an interrupted write of " + file.getPath());
+            return;
+        }
+        if (!file.exists()) {
+            // The snapshot was removed on purpose; start with an empty one as before
+            Files.deleteIfExists(tempFile.toPath());
+            Files.delete(checksumFile.toPath());
+            return;
+        }
+        throw new IOException("Snapshot " + file.getPath() + " doesn't match its checksum in " + checksumFile.getName()
+                + "; it is damaged or was changed outside the application. Restore it from a backup, or delete "
+                + checksumFile.getName() + " to load it as it is");
+    }
+
+    /**
+     * Reads the length and checksum of the snapshot.
+     * @return The length and the checksum in hexadecimal, or null if there is no checksum file
+     */
+    private String[] readChecksum() throws IOException {
+        if (!checksumFile.exists()) {
+            return null;
+        }
+        String[] fields = Files.readString(checksumFile.toPath(), StandardCharsets.US_ASCII).trim().split("\\s+");
+        if (fields.length != 2) {
+            throw new IOException("Unreadable checksum file: " + checksumFile.getPath());
+        }
+        return fields;
+    }
+
+    private void writeChecksum(long length, long crc) throws IOException {
+        File checksumTemp = new File(checksumFile.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(checksumTemp)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+            writer.write(length + " " + Long.toHexString(crc) + "\n");
+            writer.flush();
+            if (durability == StorageConfig.Durability.FSYNC) {
+                out.getChannel().force(true);
+            }
+        }
+        replace(checksumTemp, checksumFile);
+    }
+
+    private static boolean matches(File candidate, String[] expected) throws IOException {
+        if (candidate.length() != Long.parseLong(expected[0])) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        try (FileChannel channel = FileChannel.open(candidate.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return Long.toHexString(crc.getValue()).equals(expected[1]);
+    }
+
+    /**
+     * Renames a file over another, atomically where the file system supports it.
+     * @param source The file to rename
+     * @param target The file to replace
+     */
+    static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the creations and renames of files in the directory of the snapshot to the device. Not every
+     * platform can open a directory for this, and the renames are atomic either way, so a failure is only logged.
+     */
+    void syncDirectory() {
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Forces the creations and renames of files in a directory to the device, logging a failure.
+     * @param directory The directory
+     */
+    static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not sync the directory " + directory.getPath(), e);
+        }
+    }
+
+    /**
+     * Deletes the snapshot file together with its checksum and any unfinished write.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(checksumFile.toPath());
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(tempFile.toPath());
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public String getPath() {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void close() {
+        // Every change is written through, so there is nothing left to flush
+    }
+}
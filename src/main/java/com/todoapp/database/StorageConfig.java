@@ -0,0 +1,426 @@
+package com.todoapp.database;
+
+import java.io.File;
+
+/**
+ * Configuration for the task storage layer.
+ * Values default to the original behaviour and can be overridden with system properties.
+ */
+public class StorageConfig {
+    /**
+     * How changes are written to disk.
+     */
+    public enum PersistenceMode {
+        /** Every change rewrites the whole JSON file. */
+        SNAPSHOT,
+        /** Every change appends a record to a journal that is periodically compacted into the JSON file. */
+        JOURNAL
+    }
+
+    /**
+     * How far a write must have reached before the change it persists counts as saved.
+     * Snapshot files are replaced atomically at every level.
+     */
+    public enum Durability {
+        /** Journal records may stay in the application's buffers; a crash of the process can lose the latest changes. */
+        NONE,
+        /** Every write, whether one change or a batch, is handed to the operating system; it survives a crash of the process but not of the machine. */
+        FLUSH,
+        /** Every write is forced to the storage device before it returns; it survives a power failure, at the cost of a sync per write. */
+        FSYNC
+    }
+
+    /**
+     * The file format of the snapshot.
+     */
+    public enum SnapshotFormat {
+        /** Pretty-printed JSON array in {@code tasks.json}; human-readable and editable. */
+        JSON("tasks.json"),
+        /** Compact, length-prefixed binary records in {@code tasks.bin}, loaded through a memory-mapped buffer. */
+        BINARY("tasks.bin");
+
+        private final String defaultFileName;
+
+        SnapshotFormat(String defaultFileName) {
+            this.defaultFileName = defaultFileName;
+        }
+
+        public String getDefaultFileName() {
+            return defaultFileName;
+        }
+    }
+
+    public static final String ENGINE_PROPERTY = "todoapp.storage.engine";
+    public static final String STORAGE_PATH_PROPERTY = "todoapp.storage.path";
+    public static final String SNAPSHOT_FORMAT_PROPERTY = "todoapp.storage.format";
+    public static final String PERSISTENCE_MODE_PROPERTY = "todoapp.storage.mode";
+    public static final String DURABILITY_PROPERTY = "todoapp.storage.durability";
+    public static final String SHARED_PROPERTY = "todoapp.storage.shared";
+    public static final String SHARD_SIZE_PROPERTY = "todoapp.shards.size";
+    public static final String COMPACTION_THRESHOLD_PROPERTY = "todoapp.journal.compactionThreshold";
+    public static final String ARCHIVE_KEEP_COMPLETED_PROPERTY = "todoapp.archive.keepCompleted";
+    public static final String WRITE_BEHIND_PROPERTY = "todoapp.storage.writeBehind";
+    public static final String FLUSH_INTERVAL_PROPERTY = "todoapp.storage.flushIntervalMillis";
+    public static final String MAX_BATCH_SIZE_PROPERTY = "todoapp.storage.maxBatchSize";
+    public static final String LISTS_DIRECTORY_PROPERTY = "todoapp.lists.dir";
+    public static final String MAX_OPEN_LISTS_PROPERTY = "todoapp.lists.maxOpen";
+    public static final String LISTS_MEMORY_BUDGET_PROPERTY = "todoapp.lists.memoryBudgetMB";
+    public static final String METRICS_JMX_PROPERTY = "todoapp.metrics.jmx";
+    public static final String METRICS_FILE_PROPERTY = "todoapp.metrics.file";
+    public static final String METRICS_INTERVAL_PROPERTY = "todoapp.metrics.intervalSeconds";
+
+    private String engine = FileTaskRepositoryProvider.NAME;
+    private String storagePath;
+    private SnapshotFormat snapshotFormat = SnapshotFormat.JSON;
+    private PersistenceMode persistenceMode = PersistenceMode.SNAPSHOT;
+    private Durability durability = Durability.FLUSH;
+    private boolean shared = false;
+    private int shardSize = 4096;
+    private int compactionThreshold = 1000;
+    private int archiveKeepCompleted = -1;
+    private boolean writeBehind = false;
+    private long flushIntervalMillis = 250;
+    private int maxBatchSize = 500;
+    private String listsDirectory = "lists";
+    private int maxOpenLists = 16;
+    private int listsMemoryBudgetMB = 256;
+    private boolean metricsJmx = true;
+    private String metricsFile;
+    private long metricsIntervalSeconds = 60;
+    private TaskLoadListener loadListener;
+
+    /**
+     * Creates a configuration from the system properties, falling back to the defaults.
+     * @return The configuration
+     */
+    public static StorageConfig fromSystemProperties() {
+        StorageConfig config = new StorageConfig();
+        config.setEngine(System.getProperty(ENGINE_PROPERTY, config.getEngine()));
+        config.setStoragePath(System.getProperty(STORAGE_PATH_PROPERTY));
+        String format = System.getProperty(SNAPSHOT_FORMAT_PROPERTY);
+        if (format != null) {
+            config.setSnapshotFormat(SnapshotFormat.valueOf(format.trim().toUpperCase()));
+        }
+        String mode = System.getProperty(PERSISTENCE_MODE_PROPERTY);
+        if (mode != null) {
+            config.setPersistenceMode(PersistenceMode.valueOf(mode.trim().toUpperCase()));
+        }
+        String durability = System.getProperty(DURABILITY_PROPERTY);
+        if (durability != null) {
+            config.setDurability(Durability.valueOf(durability.trim().toUpperCase()));
+        }
+        config.setShared(Boolean.getBoolean(SHARED_PROPERTY));
+        config.setShardSize(Integer.getInteger(SHARD_SIZE_PROPERTY, config.getShardSize()));
+        config.setCompactionThreshold(Integer.getInteger(COMPACTION_THRESHOLD_PROPERTY, config.getCompactionThreshold()));
+        config.setArchiveKeepCompleted(Integer.getInteger(ARCHIVE_KEEP_COMPLETED_PROPERTY, config.getArchiveKeepCompleted()));
+        config.setWriteBehind(Boolean.getBoolean(WRITE_BEHIND_PROPERTY));
+        config.setFlushIntervalMillis(Long.getLong(FLUSH_INTERVAL_PROPERTY, config.getFlushIntervalMillis()));
+        config.setMaxBatchSize(Integer.getInteger(MAX_BATCH_SIZE_PROPERTY, config.getMaxBatchSize()));
+        config.setListsDirectory(System.getProperty(LISTS_DIRECTORY_PROPERTY, config.getListsDirectory().getPath()));
+        config.setMaxOpenLists(Integer.getInteger(MAX_OPEN_LISTS_PROPERTY, config.getMaxOpenLists()));
+        config.setListsMemoryBudgetMB(Integer.getInteger(LISTS_MEMORY_BUDGET_PROPERTY, config.getListsMemoryBudgetMB()));
+        config.setMetricsJmx(Boolean.parseBoolean(System.getProperty(METRICS_JMX_PROPERTY, "true")));
+        config.setMetricsFile(System.getProperty(METRICS_FILE_PROPERTY));
+        config.setMetricsIntervalSeconds(Long.getLong(METRICS_INTERVAL_PROPERTY, config.getMetricsIntervalSeconds()));
+        return config;
+    }
+
+    /**
+     * Creates an independent copy of this configuration.
+     * @return The copy
+     */
+    public StorageConfig copy() {
+        StorageConfig copy = new StorageConfig();
+        copy.engine = engine;
+        copy.storagePath = storagePath;
+        copy.snapshotFormat = snapshotFormat;
+        copy.persistenceMode = persistenceMode;
+        copy.durability = durability;
+        copy.shared = shared;
+        copy.shardSize = shardSize;
+        copy.compactionThreshold = compactionThreshold;
+        copy.archiveKeepCompleted = archiveKeepCompleted;
+        copy.writeBehind = writeBehind;
+        copy.flushIntervalMillis = flushIntervalMillis;
+        copy.maxBatchSize = maxBatchSize;
+        copy.listsDirectory = listsDirectory;
+        copy.maxOpenLists = maxOpenLists;
+        copy.listsMemoryBudgetMB = listsMemoryBudgetMB;
+        copy.metricsJmx = metricsJmx;
+        copy.metricsFile = metricsFile;
+        copy.metricsIntervalSeconds = metricsIntervalSeconds;
+        copy.loadListener = loadListener;
+        return copy;
+    }
+
+    /**
+     * Gets the name of the {@link TaskRepositoryProvider} engine to open.
+     * @return The engine name
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Gets the configured path of the snapshot file, or of the shard directory for the sharded engine.
+     * @return The path, or null to use the default name
+     */
+    public String getStoragePath() {
+        return storagePath;
+    }
+
+    public void setStoragePath(String storagePath) {
+        this.storagePath = storagePath;
+    }
+
+    /**
+     * Gets the snapshot file, falling back to the default file name of the snapshot format
+     * in the working directory.
+     * @return The snapshot file
+     */
+    public File getSnapshotFile() {
+        return new File(storagePath != null ? storagePath : snapshotFormat.getDefaultFileName());
+    }
+
+    /**
+     * Gets the directory of the sharded engine, falling back to {@code tasks.shards} in the working directory.
+     * @return The shard directory
+     */
+    public File getShardDirectory() {
+        return new File(storagePath != null ? storagePath : ShardedPersistence.DEFAULT_DIRECTORY_NAME);
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    public PersistenceMode getPersistenceMode() {
+        return persistenceMode;
+    }
+
+    public void setPersistenceMode(PersistenceMode persistenceMode) {
+        this.persistenceMode = persistenceMode;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Whether other processes may open the same task files at the same time. Shared files are always
+     * written as a journal, under a lock on {@code tasks.json.lock}; every process reserves its task IDs in
+     * blocks and picks up the changes of the others as they are written. Write-behind and the archive are
+     * not used with shared files, and the sharded engine doesn't support them.
+     * @return true if the task files are shared
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Gets the number of consecutive task IDs that the sharded engine keeps in one shard file.
+     * Only used when a new sharded store is created; an existing store keeps the size in its manifest.
+     * @return The shard size
+     */
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    public void setShardSize(int shardSize) {
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("Shard size must be positive: " + shardSize);
+        }
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * Gets the number of journal records after which the journal is folded into a new snapshot.
+     * @return The compaction threshold
+     */
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be positive: " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Gets the number of completed tasks kept in the working set. The oldest completed tasks beyond it
+     * are moved to the archive next to the task files, which isn't loaded at startup, and clearing the
+     * completed tasks archives them instead of deleting them.
+     * @return The number of completed tasks to keep, or -1 if the archive is disabled
+     */
+    public int getArchiveKeepCompleted() {
+        return archiveKeepCompleted;
+    }
+
+    public void setArchiveKeepCompleted(int archiveKeepCompleted) {
+        if (archiveKeepCompleted < -1) {
+            throw new IllegalArgumentException("Completed tasks to keep must be -1 or more: " + archiveKeepCompleted);
+        }
+        this.archiveKeepCompleted = archiveKeepCompleted;
+    }
+
+    /**
+     * Whether changes are applied in memory and written to disk later by a background writer thread.
+     * @return true if write-behind is enabled
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Gets how long the background writer collects changes before writing them as one group.
+     * @return The flush interval in milliseconds
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush interval must not be negative: " + flushIntervalMillis);
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Gets the number of queued changes that makes the background writer flush before the interval ends.
+     * @return The maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Gets the directory under which every named task list other than the default one has a directory
+     * of its own.
+     * @return The directory
+     * @see TaskLists
+     */
+    public File getListsDirectory() {
+        return new File(listsDirectory);
+    }
+
+    public void setListsDirectory(String listsDirectory) {
+        if (listsDirectory == null || listsDirectory.isBlank()) {
+            throw new IllegalArgumentException("Lists directory must not be empty");
+        }
+        this.listsDirectory = listsDirectory;
+    }
+
+    /**
+     * Gets the number of task lists kept open at most; the least recently used ones that aren't in use
+     * are closed beyond it.
+     * @return The maximum number of open lists
+     */
+    public int getMaxOpenLists() {
+        return maxOpenLists;
+    }
+
+    public void setMaxOpenLists(int maxOpenLists) {
+        if (maxOpenLists < 1) {
+            throw new IllegalArgumentException("Maximum open lists must be positive: " + maxOpenLists);
+        }
+        this.maxOpenLists = maxOpenLists;
+    }
+
+    /**
+     * Gets the estimated memory the tasks of the open task lists may take before the least recently used
+     * ones that aren't in use are closed.
+     * @return The memory budget in megabytes
+     */
+    public int getListsMemoryBudgetMB() {
+        return listsMemoryBudgetMB;
+    }
+
+    public void setListsMemoryBudgetMB(int listsMemoryBudgetMB) {
+        if (listsMemoryBudgetMB < 1) {
+            throw new IllegalArgumentException("Lists memory budget must be positive: " + listsMemoryBudgetMB);
+        }
+        this.listsMemoryBudgetMB = listsMemoryBudgetMB;
+    }
+
+    /**
+     * Whether the storage metrics are published as an MBean on the platform MBean server.
+     * @return true if the metrics are published over JMX
+     */
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    public void setMetricsJmx(boolean metricsJmx) {
+        this.metricsJmx = metricsJmx;
+    }
+
+    /**
+     * Gets the file the storage metrics are periodically written to.
+     * @return The path of the file, or null if the metrics aren't written to a file
+     */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    /**
+     * Gets the time between two writes of the metrics file.
+     * @return The interval in seconds
+     */
+    public long getMetricsIntervalSeconds() {
+        return metricsIntervalSeconds;
+    }
+
+    public void setMetricsIntervalSeconds(long metricsIntervalSeconds) {
+        if (metricsIntervalSeconds < 1) {
+            throw new IllegalArgumentException("Metrics interval must be positive: " + metricsIntervalSeconds);
+        }
+        this.metricsIntervalSeconds = metricsIntervalSeconds;
+    }
+
+    /**
+     * Gets the listener that receives the tasks while the repository is being opened. It is set in code
+     * only, not through a system property.
+     * @return The listener, or null if none is set
+     */
+    public TaskLoadListener getLoadListener() {
+        return loadListener;
+    }
+
+    public void setLoadListener(TaskLoadListener loadListener) {
+        this.loadListener = loadListener;
+    }
+}
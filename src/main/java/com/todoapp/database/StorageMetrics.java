@@ -0,0 +1,203 @@
+package com.todoapp.database;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and latency histograms of the operations of a {@link JsonDatabaseManager}, the size and
+ * latency of its writes to disk and the time it took to load.
+ * <p>
+ * Recording an operation costs two calls to {@link System#nanoTime()} and a few atomic increments,
+ * so the metrics are always on.
+ */
+public class StorageMetrics implements StorageMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(StorageMetrics.class.getName());
+    private static final double NANOS_PER_MICRO = 1_000;
+    private static final double NANOS_PER_MILLI = 1_000_000;
+
+    /**
+     * The measured repository operations.
+     */
+    public enum Operation {
+        GET_ALL,
+        GET,
+        QUERY,
+        SEARCH,
+        ADD,
+        UPDATE_COMPLETION,
+        UPDATE_DESCRIPTION,
+        UPDATE_SCHEDULE,
+        DELETE,
+        BATCH,
+        CLEAR_COMPLETED,
+        ARCHIVE,
+        SEARCH_ARCHIVE,
+        RESTORE,
+        REMIND,
+        RELOAD,
+        REPLACE_ALL,
+        FLUSH
+    }
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Histogram writeLatency = new Histogram();
+    private final Histogram bytesPerWrite = new Histogram();
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile long loadTimeNanos;
+    private volatile int loadedTaskCount;
+    private ObjectName objectName;
+
+    public StorageMetrics() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Histogram());
+        }
+    }
+
+    /**
+     * Records an operation that started at the given time and ends now.
+     * @param operation The operation
+     * @param startNanos The value of {@link System#nanoTime()} when the operation started
+     */
+    void record(Operation operation, long startNanos) {
+        latencies.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a write to disk.
+     * @param nanos How long the write took
+     * @param bytes The number of bytes written
+     */
+    void recordWrite(long nanos, long bytes) {
+        writeLatency.record(nanos);
+        bytesPerWrite.record(bytes);
+        bytesWritten.add(bytes);
+    }
+
+    void recordLoad(long nanos, int taskCount) {
+        loadTimeNanos = nanos;
+        loadedTaskCount = taskCount;
+    }
+
+    /**
+     * Gets the latency of one operation.
+     * @param operation The operation
+     * @return The latency summary in microseconds
+     */
+    public HistogramSnapshot getLatencyMicros(Operation operation) {
+        return HistogramSnapshot.of(latencies.get(operation), NANOS_PER_MICRO);
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getOperationLatencyMicros() {
+        Map<String, HistogramSnapshot> result = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> {
+            if (histogram.getCount() > 0) {
+                result.put(operation.name(), HistogramSnapshot.of(histogram, NANOS_PER_MICRO));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public HistogramSnapshot getWriteLatencyMicros() {
+        return HistogramSnapshot.of(writeLatency, NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getBytesPerWrite() {
+        return HistogramSnapshot.of(bytesPerWrite, 1);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public double getLoadTimeMillis() {
+        return loadTimeNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public int getLoadedTaskCount() {
+        return loadedTaskCount;
+    }
+
+    @Override
+    public void reset() {
+        latencies.values().forEach(Histogram::reset);
+        writeLatency.reset();
+        bytesPerWrite.reset();
+        bytesWritten.reset();
+    }
+
+    /**
+     * Collects every metric in a map, for example to write it as JSON.
+     * @return The metrics by attribute name
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("loadTimeMillis", getLoadTimeMillis());
+        result.put("loadedTaskCount", getLoadedTaskCount());
+        result.put("bytesWritten", getBytesWritten());
+        result.put("bytesPerWrite", getBytesPerWrite());
+        result.put("writeLatencyMicros", getWriteLatencyMicros());
+        result.put("operationLatencyMicros", getOperationLatencyMicros());
+        return result;
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server. A failure is logged and otherwise ignored,
+     * as the repository works without its metrics being published.
+     * @param path The path of the repository's data file, which tells the repositories of one process apart;
+     *             further repositories with the same path get an instance number
+     */
+    synchronized void register(String path) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String baseName = "com.todoapp:type=StorageMetrics,path=" + ObjectName.quote(path);
+        for (int instance = 1; objectName == null; instance++) {
+            try {
+                ObjectName name = new ObjectName(instance == 1 ? baseName : baseName + ",instance=" + instance);
+                server.registerMBean(this, name);
+                objectName = name;
+            } catch (InstanceAlreadyExistsException e) {
+                // Taken by another open repository; try the next instance number
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Failed to publish storage metrics for " + path, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server if they were published.
+     */
+    synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to unpublish storage metrics " + objectName, e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * Gets the name under which the metrics are published.
+     * @return The object name, or null if the metrics aren't published
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+}
@@ -0,0 +1,51 @@
+package com.todoapp.database;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link StorageMetrics}, published over JMX under
+ * {@code com.todoapp:type=StorageMetrics,path=<snapshot file>}.
+ */
+public interface StorageMetricsMXBean {
+
+    /**
+     * Gets the latency of every repository operation that has run at least once.
+     * @return The latency summaries in microseconds, by operation name
+     */
+    Map<String, HistogramSnapshot> getOperationLatencyMicros();
+
+    /**
+     * Gets the latency of the writes to disk, whether made by the calling thread or the background writer.
+     * @return The latency summary in microseconds
+     */
+    HistogramSnapshot getWriteLatencyMicros();
+
+    /**
+     * Gets the number of bytes written to disk by each write.
+     * @return The size summary in bytes
+     */
+    HistogramSnapshot getBytesPerWrite();
+
+    /**
+     * Gets the total number of bytes written to disk, including journal compactions.
+     * @return The number of bytes
+     */
+    long getBytesWritten();
+
+    /**
+     * Gets how long loading the tasks took when the repository was opened.
+     * @return The load time in milliseconds
+     */
+    double getLoadTimeMillis();
+
+    /**
+     * Gets the number of tasks loaded when the repository was opened.
+     * @return The number of tasks
+     */
+    int getLoadedTaskCount();
+
+    /**
+     * Forgets the recorded operations and writes. The load time is kept.
+     */
+    void reset();
+}
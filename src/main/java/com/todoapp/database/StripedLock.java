@@ -0,0 +1,52 @@
+package com.todoapp.database;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that task IDs are spread over, so writers touching different tasks
+ * rarely contend. Operations that span many tasks take every stripe, always in index order,
+ * which keeps them from deadlocking with each other.
+ */
+class StripedLock {
+    private final ReentrantLock[] stripes;
+
+    /**
+     * @param stripeCount The number of stripes, rounded up to a power of two
+     */
+    StripedLock(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the lock that guards a task ID.
+     * @param id The task ID
+     * @return The lock of the ID's stripe
+     */
+    ReentrantLock forId(int id) {
+        // Spread consecutive IDs, which are the common case, over different stripes
+        int hash = id * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Acquires every stripe in index order.
+     */
+    void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Releases every stripe acquired by {@link #lockAll()}.
+     */
+    void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only, compressed store of the tasks that were moved out of the working set. It lives in a
+ * directory next to the task files and is never read at startup; it is only scanned to search for or
+ * restore an archived task.
+ * <p>
+ * The records are {@link TaskMutation}s as in the journal: an ADD for every archived task and a DELETE
+ * when a task is restored. The records appended together are compressed into one GZIP block, which is
+ * written after its length at the end of the current segment file; a new segment is started once the
+ * current one reaches its size limit. Appends reach the disk at the configured
+ * {@link StorageConfig.Durability}. A block torn by a crash is skipped when reading and cut off before
+ * the next append.
+ */
+class TaskArchive {
+    private static final Logger LOGGER = Logger.getLogger(TaskArchive.class.getName());
+    static final String DIRECTORY_SUFFIX = ".archive";
+    static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.arc");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter recordWriter;
+    private final File directory;
+    private final StorageConfig.Durability durability;
+    private final long segmentBytes;
+    private final LongAdder bytesWritten = new LongAdder();
+
+    // Number of the segment that appends go to; 0 until the directory has been checked
+    private int currentSegment;
+
+    TaskArchive(ObjectMapper objectMapper, File directory, StorageConfig.Durability durability, long segmentBytes) {
+        this.objectMapper = objectMapper;
+        this.recordWriter = objectMapper.writerFor(TaskMutation.class);
+        this.directory = directory;
+        this.durability = durability;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Appends tasks to the archive.
+     * @param tasks The tasks to archive
+     */
+    synchronized void archive(List<TaskRecord> tasks) throws IOException {
+        List<TaskMutation> records = new ArrayList<>(tasks.size());
+        for (TaskRecord task : tasks) {
+            records.add(TaskMutation.add(task));
+        }
+        append(records);
+    }
+
+    /**
+     * Records that archived tasks were restored, so they are no longer found in the archive.
+     * @param taskIds The archived IDs of the tasks
+     */
+    synchronized void markRestored(List<Integer> taskIds) throws IOException {
+        List<TaskMutation> records = new ArrayList<>(taskIds.size());
+        for (int taskId : taskIds) {
+            records.add(TaskMutation.delete(taskId));
+        }
+        append(records);
+    }
+
+    private void append(List<TaskMutation> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(block), StandardCharsets.UTF_8)) {
+            for (TaskMutation record : records) {
+                writer.write(recordWriter.writeValueAsString(record));
+                writer.write('\n');
+            }
+        }
+
+        File segment = segmentFile(openSegment());
+        boolean created = !segment.exists();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(block.size()).array());
+            block.writeTo(out);
+            if (durability == StorageConfig.Durability.FSYNC) {
+                out.getChannel().force(false);
+                if (created) {
+                    SnapshotPersistence.syncDirectory(directory.getAbsoluteFile());
+                }
+            }
+        }
+        bytesWritten.add(Integer.BYTES + block.size());
+        if (segment.length() >= segmentBytes) {
+            currentSegment++;
+        }
+    }
+
+    /**
+     * Finds the segment that appends go to the first time it is needed, cutting off a block that a
+     * crash left incomplete at its end.
+     */
+    private int openSegment() throws IOException {
+        if (currentSegment > 0) {
+            return currentSegment;
+        }
+        Files.createDirectories(directory.toPath());
+        NavigableMap<Integer, File> segments = segments();
+        if (segments.isEmpty()) {
+            currentSegment = 1;
+            return currentSegment;
+        }
+        int last = segments.lastKey();
+        File file = segments.get(last);
+        try (RandomAccessFile segment = new RandomAccessFile(file, "rw")) {
+            long length = segment.length();
+            long position = 0;
+            while (position + Integer.BYTES <= length) {
+                segment.seek(position);
+                int blockLength = segment.readInt();
+                if (blockLength < 0 || position + Integer.BYTES + blockLength > length) {
+                    break;
+                }
+                position += Integer.BYTES + blockLength;
+            }
+            if (position < length) {
+                LOGGER.warning("Cutting off " + (length - position) + " bytes of an incomplete block from " + file.getName());
+                segment.setLength(position);
+            }
+            currentSegment = position >= segmentBytes ? last + 1 : last;
+        }
+        return currentSegment;
+    }
+
+    /**
+     * Finds the archived tasks whose descriptions contain every word of the query, with the same word
+     * matching as the search of the working set.
+     * @param query The words to search for; every archived task if it has no words
+     * @return The matching tasks, in the order they were archived
+     */
+    synchronized List<TaskRecord> search(String query) throws IOException {
+        Set<String> words = TaskSearchIndex.tokenize(query);
+        Map<Integer, TaskRecord> matches = new LinkedHashMap<>();
+        read(record -> {
+            matches.remove(record.getId());
+            if (record.getType() == TaskMutation.Type.ADD && matches(words, record.getDescription())) {
+                matches.put(record.getId(), record.toRecord(record.getId()));
+            }
+        });
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * Looks up an archived task.
+     * @param taskId The ID the task had when it was archived
+     * @return The task, or null if it isn't in the archive or has been restored
+     */
+    synchronized TaskRecord find(int taskId) throws IOException {
+        TaskRecord[] found = new TaskRecord[1];
+        read(record -> {
+            if (record.getId() == taskId) {
+                found[0] = record.getType() == TaskMutation.Type.ADD ? record.toRecord(record.getId()) : null;
+            }
+        });
+        return found[0];
+    }
+
+    private static boolean matches(Set<String> words, String description) {
+        if (words.isEmpty()) {
+            return true;
+        }
+        Set<String> taskWords = TaskSearchIndex.tokenize(description);
+        for (String word : words) {
+            if (taskWords.stream().noneMatch(taskWord -> taskWord.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads every record of every segment in the order they were appended.
+     */
+    private void read(Consumer<TaskMutation> sink) throws IOException {
+        for (File segment : segments().values()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+                while (true) {
+                    byte[] block;
+                    try {
+                        block = new byte[in.readInt()];
+                        in.readFully(block);
+                    } catch (EOFException e) {
+                        break;
+                    } catch (NegativeArraySizeException e) {
+                        LOGGER.log(Level.WARNING, "Ignoring damaged block in " + segment.getName(), e);
+                        break;
+                    }
+                    readBlock(block, sink);
+                }
+            }
+        }
+    }
+
+    private void readBlock(byte[] block, Consumer<TaskMutation> sink) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(block)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    sink.accept(objectMapper.readValue(line, TaskMutation.class));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the segment files by number.
+     */
+    private NavigableMap<Integer, File> segments() {
+        TreeMap<Integer, File> segments = new TreeMap<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+                if (matcher.matches()) {
+                    segments.put(Integer.parseInt(matcher.group(1)), file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format("segment-%06d.arc", number));
+    }
+
+    long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    String getPath() {
+        return directory.getAbsolutePath();
+    }
+}
@@ -0,0 +1,143 @@
+package com.todoapp.database;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of task changes that a {@link TaskRepository} applies together with
+ * {@link TaskRepository#applyBatch(TaskBatch)}: either all of them take effect or none does,
+ * and the file-backed engine writes them to disk in one go.
+ */
+public class TaskBatch {
+    private final List<TaskMutation> operations = new ArrayList<>();
+    private int addCount;
+
+    /**
+     * Adds a new task. Its ID is assigned when the batch is applied.
+     * @param description The description of the task
+     * @return This batch
+     */
+    public TaskBatch add(String description) {
+        return add(description, false);
+    }
+
+    /**
+     * Adds a new task with a completion status, for example when tasks are imported.
+     * Its ID is assigned when the batch is applied.
+     * @param description The description of the task
+     * @param completed Whether the task is completed
+     * @return This batch
+     */
+    public TaskBatch add(String description, boolean completed) {
+        return add(description, completed, null, null);
+    }
+
+    /**
+     * Adds a new task with a completion status, a due date and a reminder.
+     * Its ID is assigned when the batch is applied.
+     * @param description The description of the task
+     * @param completed Whether the task is completed
+     * @param dueDate When the task is due, or null
+     * @param reminder When to remind of the task, or null
+     * @return This batch
+     */
+    public TaskBatch add(String description, boolean completed, Instant dueDate, Instant reminder) {
+        operations.add(TaskMutation.add(-1, description, completed, dueDate, reminder));
+        addCount++;
+        return this;
+    }
+
+    /**
+     * Updates the completion status of a task.
+     * @param taskId The ID of the task to update
+     * @param completed The new completion status
+     * @return This batch
+     */
+    public TaskBatch setCompleted(int taskId, boolean completed) {
+        operations.add(TaskMutation.setCompleted(taskId, completed));
+        return this;
+    }
+
+    /**
+     * Changes the description of a task.
+     * @param taskId The ID of the task to update
+     * @param description The new description
+     * @return This batch
+     */
+    public TaskBatch setDescription(int taskId, String description) {
+        operations.add(TaskMutation.setDescription(taskId, description));
+        return this;
+    }
+
+    /**
+     * Sets or clears the due date and the reminder of a task.
+     * @param taskId The ID of the task to update
+     * @param dueDate The new due date, or null for none
+     * @param reminder The new reminder time, or null for none
+     * @return This batch
+     */
+    public TaskBatch setSchedule(int taskId, Instant dueDate, Instant reminder) {
+        operations.add(TaskMutation.setSchedule(taskId, dueDate, reminder));
+        return this;
+    }
+
+    /**
+     * Sets or clears the due date of a task and keeps its reminder. The reminder is read when the batch
+     * is applied, so a concurrent change of it isn't undone.
+     * @param taskId The ID of the task to update
+     * @param dueDate The new due date, or null for none
+     * @return This batch
+     */
+    public TaskBatch setDueDate(int taskId, Instant dueDate) {
+        operations.add(TaskMutation.setDueDate(taskId, dueDate));
+        return this;
+    }
+
+    /**
+     * Sets or clears the reminder of a task and keeps its due date. The due date is read when the batch
+     * is applied, so a concurrent change of it isn't undone.
+     * @param taskId The ID of the task to update
+     * @param reminder The new reminder time, or null for none
+     * @return This batch
+     */
+    public TaskBatch setReminder(int taskId, Instant reminder) {
+        operations.add(TaskMutation.setReminder(taskId, reminder));
+        return this;
+    }
+
+    /**
+     * Deletes a task.
+     * @param taskId The ID of the task to delete
+     * @return This batch
+     */
+    public TaskBatch delete(int taskId) {
+        operations.add(TaskMutation.delete(taskId));
+        return this;
+    }
+
+    /**
+     * Gets the operations in the order they were added; add operations carry the ID -1.
+     * @return The operations
+     */
+    public List<TaskMutation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Gets the number of tasks the batch adds.
+     * @return The number of add operations
+     */
+    public int getAddCount() {
+        return addCount;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+}
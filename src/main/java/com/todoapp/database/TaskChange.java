@@ -0,0 +1,96 @@
+package com.todoapp.database;
+
+/**
+ * A change to the stored tasks, as published to {@link TaskChangeListener}s.
+ */
+public final class TaskChange {
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+        /** A task was added; it has a higher ID than every task before it. */
+        ADDED,
+        /** The description or completion status of a task changed. */
+        UPDATED,
+        /** A task was deleted. */
+        REMOVED,
+        /** All tasks were replaced, for example by an import; everything read before must be read again. */
+        RESET
+    }
+
+    private final Type type;
+    private final int taskId;
+    private final TaskRecord previous;
+    private final TaskRecord current;
+    private final long version;
+
+    TaskChange(Type type, int taskId, TaskRecord previous, TaskRecord current, long version) {
+        this.type = type;
+        this.taskId = taskId;
+        this.previous = previous;
+        this.current = current;
+        this.version = version;
+    }
+
+    /**
+     * Describes the change of one task between two records.
+     * @param previous The record before the change, or null if the task was added
+     * @param current The record after the change, or null if the task was removed
+     * @param version The repository version after the change
+     * @return The change, or null if the task didn't exist before or after
+     */
+    static TaskChange between(TaskRecord previous, TaskRecord current, long version) {
+        if (previous == null && current == null) {
+            return null;
+        }
+        Type type = previous == null ? Type.ADDED : current == null ? Type.REMOVED : Type.UPDATED;
+        int taskId = previous != null ? previous.getId() : current.getId();
+        return new TaskChange(type, taskId, previous, current, version);
+    }
+
+    static TaskChange reset(long version) {
+        return new TaskChange(Type.RESET, -1, null, null, version);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the changed task.
+     * @return The ID, or -1 for a reset
+     */
+    public int getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Gets the task before the change.
+     * @return The previous record, or null if the task was added or for a reset
+     */
+    public TaskRecord getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Gets the task after the change.
+     * @return The current record, or null if the task was removed or for a reset
+     */
+    public TaskRecord getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets the {@link TaskRepository#getVersion() version} of the repository right after the change.
+     * A read that started at this version or later already reflects the change.
+     * @return The version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskChange{" + type + ", taskId=" + taskId + ", version=" + version + "}";
+    }
+}
@@ -0,0 +1,19 @@
+package com.todoapp.database;
+
+import java.util.List;
+
+/**
+ * Receives the changes made to a {@link TaskRepository}.
+ */
+@FunctionalInterface
+public interface TaskChangeListener {
+
+    /**
+     * Called once per operation with every change it made; a batch or clearing the completed tasks
+     * is delivered as one call. Called on the thread that made the changes, after they are applied
+     * and while the changed tasks are still locked, so the changes of one task arrive in order.
+     * Implementations must return quickly and must not change tasks from within the call.
+     * @param changes The changes, in the order they were made
+     */
+    void onChanges(List<TaskChange> changes);
+}
@@ -0,0 +1,110 @@
+package com.todoapp.database;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Index of the tasks that have a due date, ordered by due date and then by ID. Sorting by due date
+ * walks the index instead of sorting the tasks, and the overdue tasks are the start of it, so finding
+ * them costs as much as there are overdue tasks whatever the total number of tasks.
+ * <p>
+ * The index is updated by the database manager together with the store. Reads may run concurrently
+ * with updates.
+ */
+class TaskDueIndex {
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Replaces the whole index with the given tasks.
+     * @param tasks The tasks to index
+     */
+    void rebuild(Collection<TaskRecord> tasks) {
+        entries.clear();
+        for (TaskRecord task : tasks) {
+            if (task.getDueDate() != null) {
+                entries.add(new Entry(task.getDueDate().toEpochMilli(), task.getId()));
+            }
+        }
+    }
+
+    /**
+     * Updates the index after a task was added, changed or removed.
+     * @param taskId The ID of the task
+     * @param oldDueDate The due date before the change, or null if the task had none or didn't exist
+     * @param newDueDate The due date after the change, or null if the task has none or was removed
+     */
+    void update(int taskId, Instant oldDueDate, Instant newDueDate) {
+        if (oldDueDate != null ? oldDueDate.equals(newDueDate) : newDueDate == null) {
+            return;
+        }
+        if (oldDueDate != null) {
+            entries.remove(new Entry(oldDueDate.toEpochMilli(), taskId));
+        }
+        if (newDueDate != null) {
+            entries.add(new Entry(newDueDate.toEpochMilli(), taskId));
+        }
+    }
+
+    /**
+     * Gets every task that has a due date.
+     * @return The IDs, the earliest due date first and by ID for equal due dates
+     */
+    int[] all() {
+        return ids(entries);
+    }
+
+    /**
+     * Gets the tasks that are due before a time, completed or not.
+     * @param time The time
+     * @return The IDs, the earliest due date first and by ID for equal due dates
+     */
+    int[] dueBefore(Instant time) {
+        return ids(entries.headSet(new Entry(time.toEpochMilli(), Integer.MIN_VALUE), false));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static int[] ids(Collection<Entry> range) {
+        // The size of a concurrent set is only known by walking it, so the array grows as the entries are copied
+        int[] ids = new int[16];
+        int count = 0;
+        for (Entry entry : range) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = entry.taskId;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final long dueMillis;
+        final int taskId;
+
+        Entry(long dueMillis, int taskId) {
+            this.dueMillis = dueMillis;
+            this.taskId = taskId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDate = Long.compare(dueMillis, other.dueMillis);
+            return byDate != 0 ? byDate : Integer.compare(taskId, other.taskId);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry && compareTo((Entry) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(dueMillis) * 31 + taskId;
+        }
+    }
+}
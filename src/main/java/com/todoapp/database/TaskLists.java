@@ -0,0 +1,482 @@
+package com.todoapp.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The named task lists of the application, each with its own storage. The {@value #DEFAULT_LIST} list is
+ * stored where the single list always was (see {@link StorageConfig#getStoragePath()}); every other list
+ * is stored in a directory named after it under {@link StorageConfig#getListsDirectory()}, with the
+ * configured engine and settings. Names are compared ignoring case, so that the lists are the same on
+ * file systems that do and don't tell {@code Work} and {@code work} apart; a list keeps the case it was
+ * created with.
+ * <p>
+ * A list is opened when it is first used and then kept open in a cache ordered by use. Whenever more lists
+ * are open than {@link StorageConfig#getMaxOpenLists()}, or their tasks are estimated to take more memory
+ * than {@link StorageConfig#getListsMemoryBudgetMB()}, the least recently used lists that nobody is using
+ * are flushed and closed, to be opened again when they are next used. One process can so serve many lists
+ * while only the busy ones are in memory.
+ * <p>
+ * A list is used through a {@link Lease}, which keeps it open until the lease is closed. Lists are opened
+ * and closed outside the lock of the cache, so a large list that is loading doesn't hold up the others.
+ * The object is safe for use from many threads.
+ */
+public class TaskLists implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TaskLists.class.getName());
+    public static final String DEFAULT_LIST = "default";
+    // Rough memory of one task with its snapshot entry and search index postings, for the memory budget
+    static final long ESTIMATED_BYTES_PER_TASK = 256;
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9 _.-]{0,63}");
+
+    private final StorageConfig config;
+    private final File directory;
+    private final int maxOpenLists;
+    private final long memoryBudgetBytes;
+    // The maps and the set below are keyed by the name in lower case (see key(String))
+    // Open lists, least recently used first
+    private final LinkedHashMap<String, OpenList> openLists = new LinkedHashMap<>(16, 0.75f, true);
+    // Evicted lists that are still being closed; a list is opened again only once its files are released
+    private final Map<String, OpenList> closingLists = new HashMap<>();
+    // Lists whose files are being deleted; they can't be opened or created meanwhile
+    private final Set<String> deletingLists = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * Creates the lists described by the configuration; no list is opened yet.
+     * @param config The storage configuration, used for every list
+     */
+    public TaskLists(StorageConfig config) {
+        this.config = config.copy();
+        this.directory = config.getListsDirectory();
+        this.maxOpenLists = config.getMaxOpenLists();
+        this.memoryBudgetBytes = config.getListsMemoryBudgetMB() * 1024L * 1024L;
+    }
+
+    /**
+     * Gets the names of all lists, without opening any.
+     * @return The {@value #DEFAULT_LIST} list followed by the others in alphabetical order
+     */
+    public synchronized List<String> getNames() {
+        TreeSet<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        File[] files = directory.listFiles(File::isDirectory);
+        if (files != null) {
+            for (File file : files) {
+                if (isValidName(file.getName()) && !isDefault(file.getName())
+                        && !deletingLists.contains(key(file.getName()))) {
+                    names.add(file.getName());
+                }
+            }
+        }
+        List<String> result = new ArrayList<>(names.size() + 1);
+        result.add(DEFAULT_LIST);
+        result.addAll(names);
+        return result;
+    }
+
+    /**
+     * Tells whether a list exists. A list that is being deleted no longer exists.
+     * @param name The name of the list, in any case
+     * @return true if the list exists
+     */
+    public synchronized boolean exists(String name) {
+        return isDefault(name) || (isValidName(name) && !deletingLists.contains(key(name)) && findDirectory(name) != null);
+    }
+
+    /**
+     * Creates an empty list.
+     * @param name The name of the list: up to 64 letters, digits, spaces, dots, dashes and underscores,
+     *             starting with a letter or digit
+     * @return true if the list was created, false if a list with that name in any case already existed
+     * @throws IllegalArgumentException If the name is not valid
+     * @throws IllegalStateException If a list with that name is being deleted
+     */
+    public synchronized boolean create(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid task list name: " + name);
+        }
+        if (deletingLists.contains(key(name))) {
+            throw new IllegalStateException("Task list " + name + " is being deleted");
+        }
+        if (exists(name)) {
+            return false;
+        }
+        try {
+            Files.createDirectories(new File(directory, name).toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create task list " + name, e);
+        }
+        LOGGER.info("Created task list " + name);
+        return true;
+    }
+
+    /**
+     * Deletes a list with all of its tasks and files. From the start of the call the list no longer exists,
+     * so it can't be opened again while it is closed and its files are deleted.
+     * @param name The name of the list, in any case
+     * @return true if the list was deleted, false if it didn't exist or is already being deleted
+     * @throws IllegalArgumentException If it is the {@value #DEFAULT_LIST} list
+     * @throws IllegalStateException If the list is in use
+     */
+    public boolean delete(String name) {
+        if (isDefault(name)) {
+            throw new IllegalArgumentException("The " + DEFAULT_LIST + " list can't be deleted");
+        }
+        String key = key(name);
+        OpenList list;
+        File listDirectory;
+        synchronized (this) {
+            if (!exists(name)) {
+                return false;
+            }
+            listDirectory = findDirectory(name);
+            list = openLists.get(key);
+            if (list != null && list.leases > 0) {
+                throw new IllegalStateException("Task list " + name + " is in use");
+            }
+            if (list != null) {
+                openLists.remove(key);
+                closingLists.put(key, list);
+            } else {
+                list = closingLists.get(key);
+            }
+            deletingLists.add(key);
+        }
+        try {
+            if (list != null) {
+                close(list);
+                list.awaitClosed();
+            }
+            try (Stream<Path> files = Files.walk(listDirectory.toPath())) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete task list " + name, e);
+            }
+        } finally {
+            synchronized (this) {
+                deletingLists.remove(key);
+            }
+        }
+        LOGGER.info("Deleted task list " + name);
+        return true;
+    }
+
+    /**
+     * Starts using a list, opening it if it isn't open.
+     * @param name The name of the list, in any case
+     * @return The lease of the list, which must be closed when the list is no longer used
+     * @throws IllegalArgumentException If there is no list with that name
+     */
+    public Lease acquire(String name) {
+        return acquire(name, null);
+    }
+
+    /**
+     * Starts using a list, opening it if it isn't open.
+     * @param name The name of the list, in any case
+     * @param loadListener Receives the tasks while this call opens the list, or null; it isn't called if
+     *                     the list is already open
+     * @return The lease of the list, which must be closed when the list is no longer used
+     * @throws IllegalArgumentException If there is no list with that name
+     */
+    public Lease acquire(String name, TaskLoadListener loadListener) {
+        String key = key(name);
+        OpenList list;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The task lists are closed");
+            }
+            list = openLists.get(key);
+            if (list == null) {
+                if (!exists(name)) {
+                    throw new IllegalArgumentException("No task list named " + name);
+                }
+                // The list goes by the name its directory has
+                String storedName = isDefault(name) ? DEFAULT_LIST : findDirectory(name).getName();
+                list = new OpenList(storedName, closingLists.get(key));
+                openLists.put(key, list);
+            }
+            list.leases++;
+        }
+        try {
+            list.open(loadListener);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                list.leases--;
+                openLists.remove(key, list);
+            }
+            throw e;
+        }
+        // Opening may have pushed the cache over its limits
+        closeAll(evict());
+        return new Lease(list);
+    }
+
+    private void release(OpenList list) {
+        synchronized (this) {
+            list.leases--;
+        }
+        closeAll(evict());
+    }
+
+    /**
+     * Takes the least recently used lists that nobody is using out of the cache until it is within its
+     * limits again. The lists are closed by the caller, outside the lock.
+     */
+    private synchronized List<OpenList> evict() {
+        List<OpenList> evicted = new ArrayList<>();
+        int count = openLists.size();
+        long bytes = 0;
+        for (OpenList list : openLists.values()) {
+            bytes += list.estimatedBytes();
+        }
+        Iterator<OpenList> lists = openLists.values().iterator();
+        while (lists.hasNext() && (count > maxOpenLists || bytes > memoryBudgetBytes)) {
+            OpenList list = lists.next();
+            if (list.leases > 0 || !list.isOpen()) {
+                continue;
+            }
+            lists.remove();
+            closingLists.put(key(list.name), list);
+            count--;
+            bytes -= list.estimatedBytes();
+            evicted.add(list);
+        }
+        return evicted;
+    }
+
+    private void closeAll(List<OpenList> lists) {
+        for (OpenList list : lists) {
+            close(list);
+        }
+    }
+
+    /**
+     * Flushes and closes a list that has been taken out of the cache.
+     */
+    private void close(OpenList list) {
+        try {
+            list.close();
+        } finally {
+            synchronized (this) {
+                closingLists.remove(key(list.name), list);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of lists that are open.
+     * @return The number of open lists
+     */
+    public synchronized int getOpenCount() {
+        return openLists.size();
+    }
+
+    /**
+     * Tells whether a list is open, without opening it or counting as a use.
+     * @param name The name of the list, in any case
+     * @return true if the list is open
+     */
+    public synchronized boolean isOpen(String name) {
+        return openLists.containsKey(key(name));
+    }
+
+    /**
+     * Closes every open list, whether in use or not, and waits for lists that are being closed.
+     * Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        List<OpenList> lists;
+        List<OpenList> closing;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lists = new ArrayList<>(openLists.values());
+            closing = new ArrayList<>(closingLists.values());
+            openLists.clear();
+        }
+        closeAll(lists);
+        for (OpenList list : closing) {
+            list.awaitClosed();
+        }
+    }
+
+    private static boolean isValidName(String name) {
+        return name != null && VALID_NAME.matcher(name).matches() && !name.endsWith(".") && !name.endsWith(" ");
+    }
+
+    private static boolean isDefault(String name) {
+        return DEFAULT_LIST.equalsIgnoreCase(name);
+    }
+
+    /**
+     * Gets the key of a list in the maps of this object, which is the same for every case of its name.
+     * No list has the key of a missing name.
+     */
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds the directory of a list whatever the case of the name, so that it is found the same way on
+     * case-sensitive file systems.
+     * @return The directory, or null if there is none
+     */
+    private File findDirectory(String name) {
+        File exact = new File(directory, name);
+        if (exact.isDirectory()) {
+            return exact;
+        }
+        File[] files = directory.listFiles(file -> file.isDirectory() && file.getName().equalsIgnoreCase(name));
+        return files == null || files.length == 0 ? null : files[0];
+    }
+
+    /**
+     * Gets the configuration of a list, which stores its files in its own directory.
+     */
+    private StorageConfig configFor(String name) {
+        StorageConfig listConfig = config.copy();
+        if (isDefault(name)) {
+            return listConfig;
+        }
+        File listDirectory = new File(directory, name);
+        if (ShardedTaskRepositoryProvider.NAME.equalsIgnoreCase(config.getEngine())) {
+            listConfig.setStoragePath(new File(listDirectory, ShardedPersistence.DEFAULT_DIRECTORY_NAME).getPath());
+        } else {
+            listConfig.setStoragePath(new File(listDirectory, config.getSnapshotFormat().getDefaultFileName()).getPath());
+        }
+        return listConfig;
+    }
+
+    /**
+     * A list in the cache, with the number of leases that are using it.
+     */
+    private final class OpenList {
+        final String name;
+        // The earlier copy of the list that is still being closed, if any
+        private final OpenList previous;
+        private final CountDownLatch closedLatch = new CountDownLatch(1);
+        // Guarded by the lock of the task lists
+        int leases;
+        private volatile TaskRepository repository;
+
+        OpenList(String name, OpenList previous) {
+            this.name = name;
+            this.previous = previous;
+        }
+
+        /**
+         * Opens the repository of the list if it isn't open yet; other users of the list wait for it.
+         */
+        synchronized void open(TaskLoadListener loadListener) {
+            if (repository != null) {
+                return;
+            }
+            if (previous != null) {
+                previous.awaitClosed();
+            }
+            StorageConfig listConfig = configFor(name);
+            listConfig.setLoadListener(loadListener);
+            repository = TaskRepositories.open(listConfig);
+            LOGGER.info("Opened task list " + name);
+        }
+
+        boolean isOpen() {
+            return repository != null;
+        }
+
+        long estimatedBytes() {
+            TaskRepository current = repository;
+            return current == null ? 0 : current.getTaskCount() * ESTIMATED_BYTES_PER_TASK;
+        }
+
+        synchronized void close() {
+            try {
+                if (repository != null) {
+                    repository.flush();
+                    repository.close();
+                    LOGGER.info("Closed task list " + name);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Failed to close task list " + name, e);
+            } finally {
+                closedLatch.countDown();
+            }
+        }
+
+        void awaitClosed() {
+            try {
+                closedLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while task list " + name + " was closing", e);
+            }
+        }
+    }
+
+    /**
+     * The use of one list, which stays open until every lease of it is closed.
+     */
+    public final class Lease implements AutoCloseable {
+        private final OpenList list;
+        private boolean released;
+
+        private Lease(OpenList list) {
+            this.list = list;
+        }
+
+        /**
+         * Gets the name of the list.
+         * @return The name
+         */
+        public String getName() {
+            return list.name;
+        }
+
+        /**
+         * Gets the repository of the list. It must not be used after the lease is closed.
+         * @return The repository
+         */
+        public TaskRepository getRepository() {
+            return list.repository;
+        }
+
+        /**
+         * Ends this use of the list, which may then be closed to make room for others.
+         * Calling this method more than once has no effect.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            release(list);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.todoapp.database;
+
+import java.util.List;
+
+/**
+ * Receives the tasks of a {@link TaskRepository} while it is being opened, so that they can be shown
+ * before the whole store is loaded.
+ * @see StorageConfig#setLoadListener(TaskLoadListener)
+ */
+@FunctionalInterface
+public interface TaskLoadListener {
+
+    /**
+     * Called with each chunk of tasks as it is read from disk, in the order they are stored, on the thread
+     * that opens the repository. The repository can't be used until it is opened; the last chunk is
+     * delivered before that.
+     * @param tasks The tasks read since the previous call
+     */
+    void onTasksLoaded(List<TaskRecord> tasks);
+}
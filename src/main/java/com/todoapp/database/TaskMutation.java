@@ -0,0 +1,159 @@
+package com.todoapp.database;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * A single change to the task store. Mutations are written to the journal one per line
+ * and replayed in order on startup. Each mutation touches one task ID, so replaying a journal
+ * on top of a snapshot that already contains some of its changes gives the same result.
+ * <p>
+ * Due dates and reminders are written as ISO-8601 instants. A {@link Type#SET_SCHEDULE} replaces both,
+ * so a missing field clears it; {@link Type#SET_DUE_DATE} and {@link Type#SET_REMINDER} replace one and
+ * keep the other as it is when the change is applied.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskMutation {
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+        ADD,
+        SET_COMPLETED,
+        SET_DESCRIPTION,
+        SET_SCHEDULE,
+        SET_DUE_DATE,
+        SET_REMINDER,
+        DELETE
+    }
+
+    private final Type type;
+    private final int id;
+    private final String description;
+    private final Boolean completed;
+    private final Instant dueDate;
+    private final Instant reminder;
+
+    TaskMutation(Type type, int id, String description, Boolean completed) {
+        this(type, id, description, completed, (Instant) null, null);
+    }
+
+    TaskMutation(Type type, int id, String description, Boolean completed, Instant dueDate, Instant reminder) {
+        this.type = type;
+        this.id = id;
+        this.description = description;
+        this.completed = completed;
+        this.dueDate = dueDate;
+        this.reminder = reminder;
+    }
+
+    @JsonCreator
+    TaskMutation(@JsonProperty("type") Type type,
+                 @JsonProperty("id") int id,
+                 @JsonProperty("description") String description,
+                 @JsonProperty("completed") Boolean completed,
+                 @JsonProperty("dueDate") String dueDate,
+                 @JsonProperty("reminder") String reminder) {
+        this(type, id, description, completed,
+                dueDate == null ? null : Instant.parse(dueDate), reminder == null ? null : Instant.parse(reminder));
+    }
+
+    public static TaskMutation add(int id, String description, boolean completed) {
+        return new TaskMutation(Type.ADD, id, description, completed);
+    }
+
+    public static TaskMutation add(int id, String description, boolean completed, Instant dueDate, Instant reminder) {
+        return new TaskMutation(Type.ADD, id, description, completed, dueDate, reminder);
+    }
+
+    /**
+     * Creates the mutation that adds a task as it is, with its ID.
+     * @param task The task
+     * @return The mutation
+     */
+    static TaskMutation add(TaskRecord task) {
+        return add(task.getId(), task.getDescription(), task.isCompleted(), task.getDueDate(), task.getReminder());
+    }
+
+    public static TaskMutation setCompleted(int id, boolean completed) {
+        return new TaskMutation(Type.SET_COMPLETED, id, null, completed);
+    }
+
+    public static TaskMutation setDescription(int id, String description) {
+        return new TaskMutation(Type.SET_DESCRIPTION, id, description, null);
+    }
+
+    public static TaskMutation setSchedule(int id, Instant dueDate, Instant reminder) {
+        return new TaskMutation(Type.SET_SCHEDULE, id, null, null, dueDate, reminder);
+    }
+
+    public static TaskMutation setDueDate(int id, Instant dueDate) {
+        return new TaskMutation(Type.SET_DUE_DATE, id, null, null, dueDate, null);
+    }
+
+    public static TaskMutation setReminder(int id, Instant reminder) {
+        return new TaskMutation(Type.SET_REMINDER, id, null, null, null, reminder);
+    }
+
+    public static TaskMutation delete(int id) {
+        return new TaskMutation(Type.DELETE, id, null, null);
+    }
+
+    /**
+     * Creates the task an {@link Type#ADD} mutation adds.
+     * @param taskId The ID of the task, which replaces the ID of the mutation
+     * @return The task
+     */
+    TaskRecord toRecord(int taskId) {
+        return new TaskRecord(taskId, description, Boolean.TRUE.equals(completed), dueDate, reminder);
+    }
+
+    @JsonProperty("type")
+    public Type getType() {
+        return type;
+    }
+
+    @JsonProperty("id")
+    public int getId() {
+        return id;
+    }
+
+    @JsonProperty("description")
+    public String getDescription() {
+        return description;
+    }
+
+    @JsonProperty("completed")
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    @JsonIgnore
+    public Instant getDueDate() {
+        return dueDate;
+    }
+
+    @JsonIgnore
+    public Instant getReminder() {
+        return reminder;
+    }
+
+    @JsonProperty("dueDate")
+    private String getDueDateText() {
+        return dueDate == null ? null : dueDate.toString();
+    }
+
+    @JsonProperty("reminder")
+    private String getReminderText() {
+        return reminder == null ? null : reminder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+}
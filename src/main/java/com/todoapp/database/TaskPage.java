@@ -0,0 +1,53 @@
+package com.todoapp.database;
+
+import com.todoapp.model.Task;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the results of a {@link TaskQuery}.
+ */
+public class TaskPage {
+    private final List<Task> tasks;
+    private final int offset;
+    private final int totalCount;
+
+    public TaskPage(List<Task> tasks, int offset, int totalCount) {
+        this.tasks = Collections.unmodifiableList(tasks);
+        this.offset = offset;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Gets the tasks of this page.
+     * @return The tasks in the order of the query
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Gets the position of the first task of this page among all results.
+     * @return The offset of the page
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the number of results of the query across all pages.
+     * @return The total number of matching tasks
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Checks whether there are results after this page.
+     * @return True if another page follows
+     */
+    public boolean hasNext() {
+        return offset + tasks.size() < totalCount;
+    }
+}
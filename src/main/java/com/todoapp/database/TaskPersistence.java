@@ -0,0 +1,110 @@
+package com.todoapp.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Writes the task store to disk and reads it back on startup.
+ */
+interface TaskPersistence extends Closeable {
+
+    /**
+     * Loads the persisted tasks one at a time, creating the backing files if they don't exist yet.
+     * @param sink Receives the tasks in insertion order
+     */
+    void load(Consumer<TaskRecord> sink) throws IOException;
+
+    /**
+     * Persists a group of changes that have already been applied to the in-memory store.
+     * @param mutations The changes, in the order they were applied
+     * @param state Supplies the snapshot of the store after the changes, for implementations that write
+     *              the whole state or the part of it that the changes touched
+     */
+    void persist(List<TaskMutation> mutations, Supplier<TaskSnapshot> state) throws IOException;
+
+    /**
+     * Replaces everything on disk with the given tasks.
+     * @param state A live view of the store; it must not be retained after the call returns
+     */
+    void rewrite(Collection<TaskRecord> state) throws IOException;
+
+    /**
+     * Gets the next task ID recorded on disk, which may be higher than any stored ID if the tasks with the
+     * highest IDs were deleted. Only valid after {@link #load}.
+     * @return The next ID, or 0 if the persistence doesn't record it
+     */
+    default int getNextId() {
+        return 0;
+    }
+
+    /**
+     * Whether other processes may change the files while this persistence is open. A repository over
+     * shared files reserves its task IDs with {@link #reserveIds}, and applies the changes of other
+     * processes that {@link #persist} and {@link #catchUp} hand to its {@link ExternalChangeHandler}.
+     * @return true if the files are shared
+     */
+    default boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Reserves a block of task IDs that no other process will hand out. Only supported by shared persistence.
+     * @param count The number of IDs
+     * @return The first reserved ID; the block is the IDs from it up to {@code count} more
+     */
+    default int reserveIds(int count) throws IOException {
+        throw new UnsupportedOperationException("The task files aren't shared: " + getPath());
+    }
+
+    /**
+     * Registers the handler of the changes other processes make and starts watching the files for them.
+     * Has no effect unless the files are shared.
+     * @param handler The handler
+     */
+    default void watch(ExternalChangeHandler handler) {
+        // Nobody else writes the files
+    }
+
+    /**
+     * Reads the changes other processes have made since the last read and hands them to the handler.
+     * The caller must hold every lock of the repository.
+     * @param state Supplies the current snapshot of the store
+     */
+    default void catchUp(Supplier<TaskSnapshot> state) throws IOException {
+        // Nobody else writes the files
+    }
+
+    /**
+     * Gets the number of bytes written to disk since the persistence was created.
+     * @return The number of bytes
+     */
+    long getBytesWritten();
+
+    /**
+     * Gets the path of the main data file.
+     * @return The path of the data file
+     */
+    String getPath();
+
+    /**
+     * Receives the changes that other processes made to shared files.
+     */
+    interface ExternalChangeHandler {
+        /**
+         * Applies changes read from the files to the store. Called by {@link #persist} and {@link #catchUp},
+         * whose caller holds every lock of the repository.
+         * @param changes The changes, in the order they were written
+         */
+        void apply(List<TaskMutation> changes);
+
+        /**
+         * Called from the watching thread when another process may have changed the files; the handler
+         * takes the locks of the repository and calls {@link #catchUp}.
+         */
+        void filesChanged();
+    }
+}
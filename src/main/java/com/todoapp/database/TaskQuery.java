@@ -0,0 +1,157 @@
+package com.todoapp.database;
+
+import java.time.Instant;
+
+/**
+ * Describes a read of the tasks: which tasks, in which order and which page of them.
+ * Queries are answered from the repository's indexes rather than by scanning the tasks.
+ */
+public class TaskQuery {
+    /**
+     * Which tasks a query returns, by completion status.
+     */
+    public enum Status {
+        ALL,
+        ACTIVE,
+        COMPLETED
+    }
+
+    /**
+     * The order of the results.
+     */
+    public enum Order {
+        ID_ASCENDING,
+        ID_DESCENDING,
+        /** The earliest due date first, then the tasks without a due date by ID. */
+        DUE_DATE
+    }
+
+    private Status status = Status.ALL;
+    private Order order = Order.ID_ASCENDING;
+    private String searchText;
+    private Instant overdueAt;
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Creates a query for the tasks with a completion status.
+     * @param status The status
+     * @return A new query for all matching tasks, ordered by ID
+     */
+    public static TaskQuery of(Status status) {
+        return new TaskQuery().status(status);
+    }
+
+    /**
+     * Restricts the query to tasks with a completion status.
+     * @param status The status
+     * @return This query
+     */
+    public TaskQuery status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Sets the order of the results.
+     * @param order The order
+     * @return This query
+     */
+    public TaskQuery orderBy(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * Restricts the query to tasks whose descriptions contain every word of the text,
+     * as in {@link TaskRepository#searchTaskIds(String)}.
+     * @param searchText The words to search for, or null for no restriction
+     * @return This query
+     */
+    public TaskQuery matching(String searchText) {
+        this.searchText = searchText;
+        return this;
+    }
+
+    /**
+     * Restricts the query to the tasks that are overdue at a time: open tasks whose due date is before it.
+     * @param now The time, or null for no restriction
+     * @return This query
+     */
+    public TaskQuery overdueAt(Instant now) {
+        this.overdueAt = now;
+        return this;
+    }
+
+    /**
+     * Selects a page of the results.
+     * @param offset The number of results to skip
+     * @param limit The maximum number of results to return
+     * @return This query
+     */
+    public TaskQuery page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Creates an independent copy of this query.
+     * @return The copy
+     */
+    public TaskQuery copy() {
+        TaskQuery copy = new TaskQuery();
+        copy.status = status;
+        copy.order = order;
+        copy.searchText = searchText;
+        copy.overdueAt = overdueAt;
+        copy.offset = offset;
+        copy.limit = limit;
+        return copy;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    /**
+     * Gets the time at which the returned tasks must be overdue.
+     * @return The time, or null if the query isn't restricted to overdue tasks
+     */
+    public Instant getOverdueAt() {
+        return overdueAt;
+    }
+
+    /**
+     * Checks whether the query restricts the tasks by their descriptions.
+     * @return True if the search text contains any characters other than whitespace
+     */
+    public boolean hasSearchText() {
+        return searchText != null && !searchText.isBlank();
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskQuery{status=" + status + ", order=" + order + ", searchText='" + searchText
+                + "'" + (overdueAt != null ? ", overdueAt=" + overdueAt : "") + ", offset=" + offset + ", limit=" + limit + "}";
+    }
+}
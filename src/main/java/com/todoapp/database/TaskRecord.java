@@ -0,0 +1,135 @@
+package com.todoapp.database;
+
+import com.todoapp.model.Task;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * Immutable storage representation of a task. Unlike {@link Task} it carries no JavaFX properties.
+ * The in-memory store keeps its tasks in compact arrays (see {@link TaskSnapshot}) and creates
+ * records as tasks are read; a {@link Task} is only created when a record is handed to the UI.
+ * <p>
+ * The optional due date and reminder are kept to the millisecond.
+ */
+public final class TaskRecord {
+    private final int id;
+    private final String description;
+    private final boolean completed;
+    private final Instant dueDate;
+    private final Instant reminder;
+
+    public TaskRecord(int id, String description, boolean completed) {
+        this(id, description, completed, null, null);
+    }
+
+    /**
+     * Creates a record with a due date and a reminder.
+     * @param id The ID of the task
+     * @param description The description of the task
+     * @param completed Whether the task is completed
+     * @param dueDate When the task is due, or null
+     * @param reminder When to remind of the task, or null
+     */
+    public TaskRecord(int id, String description, boolean completed, Instant dueDate, Instant reminder) {
+        this.id = id;
+        this.description = description;
+        this.completed = completed;
+        this.dueDate = dueDate == null ? null : dueDate.truncatedTo(ChronoUnit.MILLIS);
+        this.reminder = reminder == null ? null : reminder.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Creates a record from the current values of a task.
+     * @param task The task to copy
+     * @return The record
+     */
+    public static TaskRecord of(Task task) {
+        return new TaskRecord(task.getId(), task.getDescription(), task.isCompleted(), task.getDueDate(), task.getReminder());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets when the task is due.
+     * @return The due date, or null if the task has none
+     */
+    public Instant getDueDate() {
+        return dueDate;
+    }
+
+    /**
+     * Gets when to remind of the task.
+     * @return The reminder time, or null if the task has no pending reminder
+     */
+    public Instant getReminder() {
+        return reminder;
+    }
+
+    /**
+     * Checks whether the task is still open after its due date.
+     * @param now The current time
+     * @return True if the task isn't completed and its due date is before {@code now}
+     */
+    public boolean isOverdue(Instant now) {
+        return !completed && dueDate != null && dueDate.isBefore(now);
+    }
+
+    /**
+     * Returns a record that differs from this one only in its completion status.
+     * @param completed The new completion status
+     * @return This record if the status is unchanged, otherwise a new record
+     */
+    public TaskRecord withCompleted(boolean completed) {
+        return completed == this.completed ? this : new TaskRecord(id, description, completed, dueDate, reminder);
+    }
+
+    /**
+     * Returns a record that differs from this one only in its description.
+     * @param description The new description
+     * @return A new record
+     */
+    public TaskRecord withDescription(String description) {
+        return new TaskRecord(id, description, completed, dueDate, reminder);
+    }
+
+    /**
+     * Returns a record that differs from this one only in its due date and reminder.
+     * @param dueDate The new due date, or null for none
+     * @param reminder The new reminder time, or null for none
+     * @return This record if both are unchanged, otherwise a new record
+     */
+    public TaskRecord withSchedule(Instant dueDate, Instant reminder) {
+        TaskRecord updated = new TaskRecord(id, description, completed, dueDate, reminder);
+        return Objects.equals(updated.dueDate, this.dueDate) && Objects.equals(updated.reminder, this.reminder)
+                ? this : updated;
+    }
+
+    /**
+     * Creates a JavaFX task with the values of this record.
+     * @return A new task
+     */
+    public Task toTask() {
+        Task task = new Task(id, description, completed);
+        task.setDueDate(dueDate);
+        task.setReminder(reminder);
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskRecord{id=" + id + ", description='" + description + "', completed=" + completed
+                + (dueDate != null ? ", dueDate=" + dueDate : "") + (reminder != null ? ", reminder=" + reminder : "") + "}";
+    }
+}
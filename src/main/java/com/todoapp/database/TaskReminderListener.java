@@ -0,0 +1,28 @@
+package com.todoapp.database;
+
+import java.util.List;
+
+/**
+ * Receives the reminders of a {@link TaskRepository} and is told when tasks become overdue.
+ * @see TaskRepository#addReminderListener(TaskReminderListener)
+ */
+@FunctionalInterface
+public interface TaskReminderListener {
+
+    /**
+     * Called when the reminder time of open tasks has come, on the repository's reminder thread. Each
+     * reminder is delivered once: the repository then clears it, keeping the due date. Reminders that
+     * came while no listener was registered, also while the repository was closed, are delivered as soon
+     * as a listener is registered.
+     * @param tasks The tasks, with the reminder that was due
+     */
+    void onReminders(List<TaskRecord> tasks);
+
+    /**
+     * Called when the due date of open tasks has passed while the repository is open, on the repository's
+     * reminder thread. Tasks that were already overdue when the repository was opened are not reported.
+     * @param tasks The tasks that became overdue
+     */
+    default void onOverdue(List<TaskRecord> tasks) {
+    }
+}
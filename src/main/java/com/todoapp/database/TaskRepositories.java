@@ -0,0 +1,52 @@
+package com.todoapp.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+/**
+ * Opens the configured {@link TaskRepository} engine.
+ */
+public final class TaskRepositories {
+    private static final Logger LOGGER = Logger.getLogger(TaskRepositories.class.getName());
+
+    private TaskRepositories() {
+    }
+
+    /**
+     * Opens the engine configured through the system properties.
+     * @return The opened repository
+     */
+    public static TaskRepository open() {
+        return open(StorageConfig.fromSystemProperties());
+    }
+
+    /**
+     * Opens the engine named in the configuration.
+     * @param config The storage configuration
+     * @return The opened repository
+     */
+    public static TaskRepository open(StorageConfig config) {
+        TaskRepositoryProvider provider = findProvider(config.getEngine());
+        LOGGER.info("Opening task repository engine: " + provider.getName());
+        return provider.create(config);
+    }
+
+    /**
+     * Finds a registered engine by name.
+     * @param name The engine name
+     * @return The provider of the engine
+     * @throws IllegalArgumentException If no engine with that name is registered
+     */
+    public static TaskRepositoryProvider findProvider(String name) {
+        List<String> available = new ArrayList<>();
+        for (TaskRepositoryProvider provider : ServiceLoader.load(TaskRepositoryProvider.class)) {
+            if (provider.getName().equalsIgnoreCase(name)) {
+                return provider;
+            }
+            available.add(provider.getName());
+        }
+        throw new IllegalArgumentException("Unknown task repository engine '" + name + "', available: " + available);
+    }
+}
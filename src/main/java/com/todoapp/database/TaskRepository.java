@@ -0,0 +1,294 @@
+package com.todoapp.database;
+
+import com.todoapp.model.Task;
+import javafx.collections.ObservableList;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Predicate;
+
+/**
+ * Storage engine for the tasks of the To-Do List application.
+ * Implementations are discovered through {@link TaskRepositoryProvider} and opened with
+ * {@link TaskRepositories#open()}.
+ */
+public interface TaskRepository extends AutoCloseable {
+
+    /**
+     * Retrieves all tasks.
+     * @return ObservableList of all tasks
+     */
+    ObservableList<Task> getAllTasks();
+
+    /**
+     * Retrieves a single task.
+     * @param taskId The ID of the task
+     * @return The task, or empty if there is no task with that ID
+     */
+    Optional<Task> getTask(int taskId);
+
+    /**
+     * Gets the number of stored tasks.
+     * @return The number of tasks
+     */
+    int getTaskCount();
+
+    /**
+     * Gets a number that changes whenever any task is added, changed or removed. Reading the version
+     * before reading tasks tells whether they may have changed since an earlier read, for example to
+     * answer a conditional request without reading them again.
+     * @return The current version
+     */
+    long getVersion();
+
+    /**
+     * Gets an immutable view of every task as of now, together with its version. Taking a snapshot
+     * costs the same whatever the number of tasks, and later changes don't affect it, so a long read
+     * such as an export sees one consistent state without holding up writers.
+     * @return The current snapshot
+     */
+    TaskSnapshot snapshot();
+
+    /**
+     * Retrieves the tasks that match a condition, in insertion order.
+     * @param filter The condition, evaluated against the stored records
+     * @return The matching tasks
+     */
+    List<Task> findTasks(Predicate<? super TaskRecord> filter);
+
+    /**
+     * Gets the number of tasks with a completion status, without scanning the tasks.
+     * @param status The status
+     * @return The number of tasks
+     */
+    int countTasks(TaskQuery.Status status);
+
+    /**
+     * Retrieves a page of the tasks that match a query.
+     * @param query The query
+     * @return The requested page and the total number of matches
+     */
+    TaskPage queryTasks(TaskQuery query);
+
+    /**
+     * Retrieves the IDs of a page of the tasks that match a query.
+     * @param query The query
+     * @return The IDs in the order of the query
+     */
+    int[] queryTaskIds(TaskQuery query);
+
+    /**
+     * Finds the tasks whose descriptions contain every word of the query. Each query word also
+     * matches the words it is the beginning of, and case is ignored: "gro mil" finds "Buy groceries and milk".
+     * @param query The words to search for
+     * @return The IDs of the matching tasks in ascending order; every task if the query has no words
+     */
+    int[] searchTaskIds(String query);
+
+    /**
+     * Finds the tasks whose descriptions contain every word of the query.
+     * @param query The words to search for
+     * @return The matching tasks, ordered by ID
+     * @see #searchTaskIds(String)
+     */
+    default List<Task> searchTasks(String query) {
+        int[] ids = searchTaskIds(query);
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            getTask(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Adds a new task.
+     * @param description The description of the task
+     * @return The generated ID of the new task
+     */
+    int addTask(String description);
+
+    /**
+     * Adds several tasks.
+     * @param descriptions The descriptions of the tasks
+     * @return The generated IDs, in the order of the descriptions
+     */
+    default int[] addTasks(Collection<String> descriptions) {
+        int[] ids = new int[descriptions.size()];
+        int i = 0;
+        for (String description : descriptions) {
+            ids[i++] = addTask(description);
+        }
+        return ids;
+    }
+
+    /**
+     * Updates the completion status of a task.
+     * @param taskId The ID of the task to update
+     * @param completed The new completion status
+     */
+    void updateTaskCompletion(int taskId, boolean completed);
+
+    /**
+     * Updates the completion status of several tasks.
+     * @param completions The new completion status by task ID
+     */
+    default void updateCompletion(Map<Integer, Boolean> completions) {
+        for (Map.Entry<Integer, Boolean> entry : completions.entrySet()) {
+            updateTaskCompletion(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Changes the description of a task.
+     * @param taskId The ID of the task to update
+     * @param description The new description
+     */
+    void updateTaskDescription(int taskId, String description);
+
+    /**
+     * Sets or clears the due date and the reminder of a task.
+     * @param taskId The ID of the task to update
+     * @param dueDate The new due date, or null for none
+     * @param reminder When to remind of the task, or null for no reminder
+     * @see #addReminderListener(TaskReminderListener)
+     */
+    void updateTaskSchedule(int taskId, Instant dueDate, Instant reminder);
+
+    /**
+     * Deletes a task.
+     * @param taskId The ID of the task to delete
+     * @return Whether the task existed and was deleted; false if another caller deleted it first
+     */
+    boolean deleteTask(int taskId);
+
+    /**
+     * Deletes several tasks.
+     * @param taskIds The IDs of the tasks to delete
+     */
+    default void deleteTasks(int[] taskIds) {
+        for (int taskId : taskIds) {
+            deleteTask(taskId);
+        }
+    }
+
+    /**
+     * Applies a group of changes in order. Operations on tasks that don't exist are skipped.
+     * @param batch The changes to apply
+     * @return The generated IDs of the added tasks, in the order of the add operations
+     */
+    default int[] applyBatch(TaskBatch batch) {
+        int[] ids = new int[batch.getAddCount()];
+        int added = 0;
+        for (TaskMutation operation : batch.getOperations()) {
+            switch (operation.getType()) {
+                case ADD:
+                    ids[added] = addTask(operation.getDescription());
+                    if (operation.getCompleted()) {
+                        updateTaskCompletion(ids[added], true);
+                    }
+                    if (operation.getDueDate() != null || operation.getReminder() != null) {
+                        updateTaskSchedule(ids[added], operation.getDueDate(), operation.getReminder());
+                    }
+                    added++;
+                    break;
+                case SET_COMPLETED:
+                    updateTaskCompletion(operation.getId(), operation.getCompleted());
+                    break;
+                case SET_DESCRIPTION:
+                    updateTaskDescription(operation.getId(), operation.getDescription());
+                    break;
+                case SET_SCHEDULE:
+                    updateTaskSchedule(operation.getId(), operation.getDueDate(), operation.getReminder());
+                    break;
+                case SET_DUE_DATE:
+                    getTask(operation.getId()).ifPresent(
+                            task -> updateTaskSchedule(task.getId(), operation.getDueDate(), task.getReminder()));
+                    break;
+                case SET_REMINDER:
+                    getTask(operation.getId()).ifPresent(
+                            task -> updateTaskSchedule(task.getId(), task.getDueDate(), operation.getReminder()));
+                    break;
+                case DELETE:
+                    deleteTask(operation.getId());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operation.getType());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Deletes all completed tasks, or moves them to the archive if the engine keeps one.
+     * @return The number of tasks deleted or archived
+     */
+    int clearCompletedTasks();
+
+    /**
+     * Finds the archived tasks whose descriptions contain every word of the query, with the same word
+     * matching as {@link #searchTaskIds(String)}. Engines without an archive find nothing.
+     * @param query The words to search for
+     * @return The matching archived tasks, in the order they were archived
+     * @see StorageConfig#getArchiveKeepCompleted()
+     */
+    default List<TaskRecord> searchArchive(String query) {
+        return List.of();
+    }
+
+    /**
+     * Moves an archived task back into the working set, keeping its ID unless that ID has been taken since.
+     * @param archivedId The ID the task had when it was archived
+     * @return The ID of the restored task, or empty if there is no such archived task
+     */
+    default OptionalInt restoreArchivedTask(int archivedId) {
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Replaces the stored tasks with the given list.
+     * @param taskList The tasks to store
+     */
+    void saveAllTasks(ObservableList<Task> taskList);
+
+    /**
+     * Registers a listener that is told about every change made to the tasks from now on,
+     * whichever thread or client makes it.
+     * @param listener The listener
+     */
+    void addChangeListener(TaskChangeListener listener);
+
+    /**
+     * Unregisters a change listener.
+     * @param listener The listener
+     */
+    void removeChangeListener(TaskChangeListener listener);
+
+    /**
+     * Registers a listener for the reminders of open tasks and for tasks that become overdue. Pending
+     * reminders are kept in a timing wheel, so they cost nothing until they are due whatever their number.
+     * @param listener The listener
+     */
+    void addReminderListener(TaskReminderListener listener);
+
+    /**
+     * Unregisters a reminder listener.
+     * @param listener The listener
+     */
+    void removeReminderListener(TaskReminderListener listener);
+
+    /**
+     * Waits until every accepted change has been persisted.
+     */
+    void flush();
+
+    /**
+     * Persists outstanding changes and releases the storage. Calling this method more than once has no effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,22 @@
+package com.todoapp.database;
+
+/**
+ * Service provider for a {@link TaskRepository} engine. Providers are registered in
+ * {@code META-INF/services/com.todoapp.database.TaskRepositoryProvider} and selected by name
+ * with the {@value StorageConfig#ENGINE_PROPERTY} system property.
+ */
+public interface TaskRepositoryProvider {
+
+    /**
+     * Gets the name used to select this engine.
+     * @return The engine name
+     */
+    String getName();
+
+    /**
+     * Opens a repository.
+     * @param config The storage configuration
+     * @return The opened repository
+     */
+    TaskRepository create(StorageConfig config);
+}
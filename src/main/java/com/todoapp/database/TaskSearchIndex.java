@@ -0,0 +1,303 @@
+package com.todoapp.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from the words of the task descriptions to the IDs of the tasks that contain them.
+ * Words are the runs of letters and digits in a description, compared case-insensitively.
+ * <p>
+ * A query matches the tasks that contain every one of its words, where each query word may be
+ * the beginning of a longer word: "gro mil" matches "Buy groceries and milk". The terms are kept
+ * sorted, so the words starting with a prefix are one contiguous range, and every posting list is a
+ * sorted array of IDs. A query starts from its most selective word and narrows that candidate list
+ * with the others, so its cost follows the size of the smallest match rather than the number of tasks.
+ * <p>
+ * The index is updated by the database manager together with the store. Searches may run concurrently
+ * with updates.
+ */
+class TaskSearchIndex {
+    // A posting list is probed by binary search rather than walked once it is this many times longer than the candidates
+    private static final int PROBE_RATIO = 16;
+
+    private final NavigableMap<String, PostingList> terms = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Splits a text into its distinct lower-case words.
+     * @param text The text, may be null
+     * @return The words in order of first occurrence
+     */
+    static Set<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Replaces the whole index with the given tasks.
+     * @param tasks The tasks to index
+     */
+    void rebuild(Collection<TaskRecord> tasks) {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            for (TaskRecord task : tasks) {
+                for (String word : tokenize(task.getDescription())) {
+                    terms.computeIfAbsent(word, w -> new PostingList()).add(task.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the index after a task was added, changed or removed.
+     * @param taskId The ID of the task
+     * @param oldDescription The previous description, or null if the task didn't exist
+     * @param newDescription The new description, or null if the task was removed
+     */
+    void update(int taskId, String oldDescription, String newDescription) {
+        if (oldDescription != null && oldDescription.equals(newDescription)) {
+            return;
+        }
+        Set<String> oldWords = tokenize(oldDescription);
+        Set<String> newWords = tokenize(newDescription);
+        lock.writeLock().lock();
+        try {
+            for (String word : oldWords) {
+                if (!newWords.contains(word)) {
+                    PostingList postings = terms.get(word);
+                    if (postings != null && postings.remove(taskId) && postings.size == 0) {
+                        terms.remove(word);
+                    }
+                }
+            }
+            for (String word : newWords) {
+                if (!oldWords.contains(word)) {
+                    terms.computeIfAbsent(word, w -> new PostingList()).add(taskId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the tasks whose descriptions contain every word of the query, each possibly as a prefix.
+     * @param query The query
+     * @return The matching IDs in ascending order, or null if the query has no words
+     */
+    int[] search(String query) {
+        Set<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Collection<PostingList>> matches = new ArrayList<>(words.size());
+            int smallest = 0;
+            long smallestSize = Long.MAX_VALUE;
+            for (String word : words) {
+                Collection<PostingList> postings = withPrefix(word).values();
+                long size = 0;
+                for (PostingList list : postings) {
+                    size += list.size;
+                }
+                if (size == 0) {
+                    return new int[0];
+                }
+                if (size < smallestSize) {
+                    smallestSize = size;
+                    smallest = matches.size();
+                }
+                matches.add(postings);
+            }
+
+            int[] candidates = union(matches.get(smallest));
+            for (int i = 0; i < matches.size() && candidates.length > 0; i++) {
+                if (i != smallest) {
+                    candidates = retainAny(candidates, matches.get(i));
+                }
+            }
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of distinct words in the index.
+     * @return The number of terms
+     */
+    int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, PostingList> withPrefix(String prefix) {
+        // Every word starting with the prefix sorts before the prefix followed by the highest char
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Merges posting lists into one sorted array without duplicates. A prefix can cover thousands of
+     * small lists, so they are merged through a bitmap over their ID range rather than by sorting.
+     */
+    private static int[] union(Collection<PostingList> postings) {
+        if (postings.size() == 1) {
+            PostingList list = postings.iterator().next();
+            return Arrays.copyOf(list.ids, list.size);
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (PostingList list : postings) {
+            min = Math.min(min, list.ids[0]);
+            max = Math.max(max, list.ids[list.size - 1]);
+        }
+        long[] bits = new long[(int) (((long) max - min) >>> 6) + 1];
+        int count = 0;
+        for (PostingList list : postings) {
+            for (int i = 0; i < list.size; i++) {
+                int offset = list.ids[i] - min;
+                long mask = 1L << offset;
+                if ((bits[offset >>> 6] & mask) == 0) {
+                    bits[offset >>> 6] |= mask;
+                    count++;
+                }
+            }
+        }
+        int[] ids = new int[count];
+        int position = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long value = bits[word];
+            while (value != 0) {
+                ids[position++] = min + (word << 6) + Long.numberOfTrailingZeros(value);
+                value &= value - 1;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Keeps the candidates that occur in at least one of the posting lists. A list is normally walked
+     * and checked against a bitmap of the candidates; a list much longer than the candidates is probed
+     * with each candidate instead, so a huge list costs no more than the candidates it is checked against.
+     */
+    private static int[] retainAny(int[] candidates, Collection<PostingList> postings) {
+        int min = candidates[0];
+        int max = candidates[candidates.length - 1];
+        long[] candidateBits = new long[(int) (((long) max - min) >>> 6) + 1];
+        for (int id : candidates) {
+            int offset = id - min;
+            candidateBits[offset >>> 6] |= 1L << offset;
+        }
+        long[] foundBits = new long[candidateBits.length];
+        for (PostingList list : postings) {
+            if (list.size <= (long) candidates.length * PROBE_RATIO) {
+                int from = list.lowerBound(min);
+                for (int i = from; i < list.size && list.ids[i] <= max; i++) {
+                    int offset = list.ids[i] - min;
+                    foundBits[offset >>> 6] |= candidateBits[offset >>> 6] & (1L << offset);
+                }
+            } else {
+                for (int id : candidates) {
+                    int offset = id - min;
+                    long mask = 1L << offset;
+                    if ((foundBits[offset >>> 6] & mask) == 0 && list.contains(id)) {
+                        foundBits[offset >>> 6] |= mask;
+                    }
+                }
+            }
+        }
+        int kept = 0;
+        for (int id : candidates) {
+            int offset = id - min;
+            if ((foundBits[offset >>> 6] & (1L << offset)) != 0) {
+                candidates[kept++] = id;
+            }
+        }
+        return kept == candidates.length ? candidates : Arrays.copyOf(candidates, kept);
+    }
+
+    /**
+     * Sorted array of the IDs of the tasks that contain a word. New tasks get the highest ID so far,
+     * so adding is almost always an append.
+     */
+    private static final class PostingList {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        /**
+         * Gets the index of the first ID that is not lower than the given one.
+         */
+        int lowerBound(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private void insertAt(int index, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.todoapp.database;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable view of every stored task at one version of the repository.
+ * <p>
+ * The tasks are kept in a persistent radix trie keyed by task ID. Every leaf holds {@value #LEAF_SIZE}
+ * consecutive IDs as bitsets of the stored and completed tasks and one byte arena with their UTF-8
+ * descriptions, so a task costs four bytes plus its description; records are created only when a task is
+ * read. Due dates and reminders are kept in arrays that a leaf only allocates once one of its tasks has
+ * one. Every node also counts the stored and completed tasks below it, which lets a page anywhere in the
+ * tasks of a status be found by skipping whole subtrees.
+ * <p>
+ * A change copies only the leaf and the nodes on the path to it and shares everything else with the
+ * previous version, so writers publish a new snapshot per change and a reader that holds a snapshot
+ * keeps a consistent view for as long as it likes, without locks. Versions that no reader holds any more
+ * are reclaimed by the garbage collector like any other object.
+ */
+public final class TaskSnapshot {
+    private static final int LEAF_BITS = 6;
+    private static final int LEAF_SIZE = 1 << LEAF_BITS;
+    private static final int BRANCH_BITS = 5;
+    private static final int BRANCH_SIZE = 1 << BRANCH_BITS;
+
+    static final TaskSnapshot EMPTY = new TaskSnapshot(null, LEAF_BITS, 0);
+
+    // Null when there are no tasks
+    private final Node root;
+    // The root holds the IDs below 2^shift
+    private final int shift;
+    private final long version;
+
+    private TaskSnapshot(Node root, int shift, long version) {
+        this.root = root;
+        this.shift = shift;
+        this.version = version;
+    }
+
+    /**
+     * Gets the repository version this snapshot shows.
+     * @return The version, as in {@link TaskRepository#getVersion()}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of tasks.
+     * @return The number of tasks
+     */
+    public int size() {
+        return root == null ? 0 : root.live;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the number of tasks with a status.
+     * @param status The status
+     * @return The number of tasks
+     */
+    public int count(TaskQuery.Status status) {
+        return root == null ? 0 : root.count(status);
+    }
+
+    /**
+     * Gets a task.
+     * @param id The ID of the task
+     * @return The task, or null if there is no task with that ID
+     */
+    public TaskRecord get(int id) {
+        Leaf leaf = findLeaf(root, shift, id);
+        return leaf == null ? null : leaf.record(id);
+    }
+
+    /**
+     * Passes every task to an action in ID order.
+     * @param action The action
+     */
+    public void forEach(Consumer<TaskRecord> action) {
+        if (root != null) {
+            forEach(root, shift, 0, action);
+        }
+    }
+
+    /**
+     * Passes the tasks with IDs in a range to an action in ID order, skipping the subtrees outside the range.
+     * @param fromId The lowest ID, inclusive
+     * @param toId The highest ID, exclusive
+     * @param action The action
+     */
+    public void forEach(int fromId, int toId, Consumer<TaskRecord> action) {
+        if (root != null && fromId < toId) {
+            forEach(root, shift, 0, fromId, toId, action);
+        }
+    }
+
+    /**
+     * Copies every task into a list.
+     * @return The tasks in ID order
+     */
+    public List<TaskRecord> toList() {
+        List<TaskRecord> result = new ArrayList<>(size());
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Gets the IDs of all tasks.
+     * @return The IDs in ascending order
+     */
+    int[] ids() {
+        return page(TaskQuery.Status.ALL, false, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets a page of the IDs of the tasks with a status.
+     * @param status The status
+     * @param descending Whether to return the highest IDs first
+     * @param offset The number of matching IDs to skip
+     * @param limit The maximum number of IDs to return
+     * @return The IDs in the requested order
+     */
+    int[] page(TaskQuery.Status status, boolean descending, int offset, int limit) {
+        PageCollector collector = new PageCollector(offset,
+                Math.min(limit, Math.max(0, count(status) - offset)), status, descending);
+        if (collector.ids.length > 0) {
+            collector.collect(root, shift, 0);
+        }
+        return collector.ids;
+    }
+
+    /**
+     * Keeps the IDs whose task has a status.
+     * @param ids Task IDs in any order; the array is reused for the result
+     * @param status The status
+     * @return The IDs with the status, in their original order
+     */
+    int[] retain(int[] ids, TaskQuery.Status status) {
+        int kept = 0;
+        for (int id : ids) {
+            Leaf leaf = findLeaf(root, shift, id);
+            if (leaf != null && (leaf.bits(status) & (1L << id)) != 0) {
+                ids[kept++] = id;
+            }
+        }
+        return kept == ids.length ? ids : Arrays.copyOf(ids, kept);
+    }
+
+    /**
+     * Gets the highest stored ID.
+     * @return The highest ID, or -1 if there are no tasks
+     */
+    public int lastId() {
+        int[] last = page(TaskQuery.Status.ALL, true, 0, 1);
+        return last.length == 0 ? -1 : last[0];
+    }
+
+    /**
+     * Creates a snapshot with one task added or replaced, at the next version.
+     * @param record The task
+     * @return The new snapshot
+     */
+    TaskSnapshot with(TaskRecord record) {
+        Editor editor = edit();
+        editor.put(record);
+        return editor.toSnapshot(version + 1);
+    }
+
+    /**
+     * Creates a snapshot without a task, at the next version.
+     * @param id The ID of the task
+     * @return The new snapshot
+     */
+    TaskSnapshot without(int id) {
+        Editor editor = edit();
+        editor.remove(id);
+        return editor.toSnapshot(version + 1);
+    }
+
+    /**
+     * Creates a snapshot with the same tasks at another version.
+     * @param version The version
+     * @return The new snapshot
+     */
+    TaskSnapshot atVersion(long version) {
+        return new TaskSnapshot(root, shift, version);
+    }
+
+    /**
+     * Starts a group of changes to this snapshot, which stays unchanged.
+     * @return An editor that starts from the tasks of this snapshot
+     */
+    Editor edit() {
+        return new Editor(root, shift);
+    }
+
+    private static Leaf findLeaf(Node node, int shift, int id) {
+        if (id < 0 || (id >>> shift) != 0) {
+            return null;
+        }
+        while (node instanceof Branch) {
+            shift -= BRANCH_BITS;
+            node = ((Branch) node).children[(id >>> shift) & (BRANCH_SIZE - 1)];
+        }
+        return (Leaf) node;
+    }
+
+    private static void forEach(Node node, int shift, int base, Consumer<TaskRecord> action) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            for (long bits = leaf.stored; bits != 0; bits &= bits - 1) {
+                action.accept(leaf.record(base + Long.numberOfTrailingZeros(bits)));
+            }
+            return;
+        }
+        Node[] children = ((Branch) node).children;
+        int childShift = shift - BRANCH_BITS;
+        for (int index = 0; index < BRANCH_SIZE; index++) {
+            if (children[index] != null) {
+                forEach(children[index], childShift, base + (index << childShift), action);
+            }
+        }
+    }
+
+    private static void forEach(Node node, int shift, long base, int fromId, int toId, Consumer<TaskRecord> action) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            for (long bits = leaf.stored; bits != 0; bits &= bits - 1) {
+                long id = base + Long.numberOfTrailingZeros(bits);
+                if (id >= fromId && id < toId) {
+                    action.accept(leaf.record((int) id));
+                }
+            }
+            return;
+        }
+        Node[] children = ((Branch) node).children;
+        int childShift = shift - BRANCH_BITS;
+        for (int index = 0; index < BRANCH_SIZE; index++) {
+            long childBase = base + ((long) index << childShift);
+            if (children[index] != null && childBase < toId && childBase + (1L << childShift) > fromId) {
+                forEach(children[index], childShift, childBase, fromId, toId, action);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TaskSnapshot{version=" + version + ", size=" + size() + "}";
+    }
+
+    /**
+     * Fills a page of IDs, skipping every subtree that lies completely before the offset.
+     */
+    private static final class PageCollector {
+        private final int[] ids;
+        private final TaskQuery.Status status;
+        private final boolean descending;
+        private int skip;
+        private int found;
+
+        PageCollector(int skip, int size, TaskQuery.Status status, boolean descending) {
+            this.ids = new int[size];
+            this.status = status;
+            this.descending = descending;
+            this.skip = skip;
+        }
+
+        void collect(Node node, int shift, int base) {
+            int count = node.count(status);
+            if (skip >= count) {
+                skip -= count;
+                return;
+            }
+            if (node instanceof Leaf) {
+                long bits = ((Leaf) node).bits(status);
+                while (bits != 0 && found < ids.length) {
+                    int slot = descending ? Long.SIZE - 1 - Long.numberOfLeadingZeros(bits)
+                            : Long.numberOfTrailingZeros(bits);
+                    bits &= ~(1L << slot);
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        ids[found++] = base + slot;
+                    }
+                }
+                return;
+            }
+            Node[] children = ((Branch) node).children;
+            int childShift = shift - BRANCH_BITS;
+            for (int i = 0; i < BRANCH_SIZE && found < ids.length; i++) {
+                int index = descending ? BRANCH_SIZE - 1 - i : i;
+                if (children[index] != null) {
+                    collect(children[index], childShift, base + (index << childShift));
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a group of changes with as little copying as possible. The first change to a node copies
+     * it; the copy belongs to the editor and later changes modify it in place, so loading a million tasks
+     * or clearing every completed one builds each node once. Nothing the editor changes is visible
+     * outside it until {@link #toSnapshot(long)}, and the snapshot it started from is never modified.
+     * <p>
+     * An editor must only be used by one thread at a time.
+     */
+    static final class Editor {
+        private Object owner = new Object();
+        private Node root;
+        private int shift;
+        // The last leaf the editor wrote to, trimmed once the editor moves on to another leaf
+        private Leaf lastLeaf;
+
+        private Editor(Node root, int shift) {
+            this.root = root;
+            this.shift = shift;
+        }
+
+        /**
+         * Gets a task as changed so far.
+         * @param id The ID of the task
+         * @return The task, or null if there is no task with that ID
+         */
+        TaskRecord get(int id) {
+            Leaf leaf = findLeaf(root, shift, id);
+            return leaf == null ? null : leaf.record(id);
+        }
+
+        /**
+         * Adds a task or replaces the task with the same ID.
+         * @param record The task
+         * @return The replaced task, or null if there was none
+         */
+        TaskRecord put(TaskRecord record) {
+            int id = record.getId();
+            if (id < 0) {
+                throw new IllegalArgumentException("Task IDs must not be negative: " + id);
+            }
+            while ((id >>> shift) != 0) {
+                // The trie grows upwards: the old root becomes the first child of a new one
+                Branch branch = new Branch(owner);
+                if (root != null) {
+                    branch.children[0] = root;
+                    branch.live = root.live;
+                    branch.completed = root.completed;
+                }
+                root = branch;
+                shift += BRANCH_BITS;
+            }
+            byte[] description = record.getDescription() == null
+                    ? null : record.getDescription().getBytes(StandardCharsets.UTF_8);
+            TaskRecord previous = get(id);
+            root = set(root, shift, id, description, record, true);
+            return previous;
+        }
+
+        /**
+         * Removes a task.
+         * @param id The ID of the task
+         * @return The removed task, or null if there was none
+         */
+        TaskRecord remove(int id) {
+            TaskRecord previous = get(id);
+            if (previous != null) {
+                root = set(root, shift, id, null, null, false);
+                if (root.live == 0) {
+                    root = null;
+                    shift = LEAF_BITS;
+                }
+            }
+            return previous;
+        }
+
+        /**
+         * Makes the changes so far available as a snapshot. The editor may be used for further changes,
+         * which don't affect the snapshot.
+         * @param version The version of the snapshot
+         * @return The snapshot
+         */
+        TaskSnapshot toSnapshot(long version) {
+            if (lastLeaf != null) {
+                lastLeaf.trim();
+                lastLeaf = null;
+            }
+            // From now on the nodes are shared, so further changes copy them again
+            owner = new Object();
+            return new TaskSnapshot(root, shift, version);
+        }
+
+        private Node set(Node node, int shift, int id, byte[] description, TaskRecord record, boolean stored) {
+            if (shift == LEAF_BITS) {
+                // A copied leaf gets room for the new description, so that it isn't copied twice
+                Leaf leaf = node == null ? new Leaf(owner)
+                        : ((Leaf) node).editable(owner, description == null ? 0 : description.length);
+                if (leaf != lastLeaf) {
+                    if (lastLeaf != null) {
+                        lastLeaf.trim();
+                    }
+                    lastLeaf = leaf;
+                }
+                leaf.set(id & (LEAF_SIZE - 1), description, record, stored);
+                return leaf;
+            }
+            Branch branch = node == null ? new Branch(owner) : ((Branch) node).editable(owner);
+            int childShift = shift - BRANCH_BITS;
+            int index = (id >>> childShift) & (BRANCH_SIZE - 1);
+            Node child = branch.children[index];
+            int live = child == null ? 0 : child.live;
+            int completedCount = child == null ? 0 : child.completed;
+            Node updated = set(child, childShift, id, description, record, stored);
+            branch.live += updated.live - live;
+            branch.completed += updated.completed - completedCount;
+            // Empty subtrees are dropped, so that every node counts at least one task
+            branch.children[index] = updated.live == 0 ? null : updated;
+            return branch;
+        }
+    }
+
+    private abstract static class Node {
+        // The editor that may still change this node in place
+        final Object owner;
+        int live;
+        int completed;
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+
+        int count(TaskQuery.Status status) {
+            switch (status) {
+                case ACTIVE:
+                    return live - completed;
+                case COMPLETED:
+                    return completed;
+                default:
+                    return live;
+            }
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children;
+
+        Branch(Object owner) {
+            super(owner);
+            this.children = new Node[BRANCH_SIZE];
+        }
+
+        private Branch(Object owner, Branch source) {
+            super(owner);
+            this.children = source.children.clone();
+            this.live = source.live;
+            this.completed = source.completed;
+        }
+
+        Branch editable(Object editor) {
+            return owner == editor ? this : new Branch(editor, this);
+        }
+    }
+
+    /**
+     * The tasks of {@value #LEAF_SIZE} consecutive IDs. The description of slot {@code i} is the arena
+     * range from the end of slot {@code i - 1} to {@code ends[i]}, so empty slots take no arena bytes.
+     * The due dates and reminders, in milliseconds since the epoch, are only valid where their bit is set.
+     */
+    private static final class Leaf extends Node {
+        long stored;
+        long completedBits;
+        long nullDescriptions;
+        long dueDateBits;
+        long reminderBits;
+        final int[] ends;
+        byte[] arena;
+        // Null until a task of the leaf has a due date or a reminder
+        long[] dueDates;
+        long[] reminders;
+
+        Leaf(Object owner) {
+            super(owner);
+            this.ends = new int[LEAF_SIZE];
+            this.arena = new byte[0];
+        }
+
+        private Leaf(Object owner, Leaf source, int spareBytes) {
+            super(owner);
+            this.stored = source.stored;
+            this.completedBits = source.completedBits;
+            this.nullDescriptions = source.nullDescriptions;
+            this.ends = source.ends.clone();
+            this.arena = Arrays.copyOf(source.arena, source.ends[LEAF_SIZE - 1] + spareBytes);
+            this.dueDateBits = source.dueDateBits;
+            this.reminderBits = source.reminderBits;
+            this.dueDates = source.dueDates == null ? null : source.dueDates.clone();
+            this.reminders = source.reminders == null ? null : source.reminders.clone();
+            this.live = source.live;
+            this.completed = source.completed;
+        }
+
+        Leaf editable(Object editor, int spareBytes) {
+            return owner == editor ? this : new Leaf(editor, this, spareBytes);
+        }
+
+        long bits(TaskQuery.Status status) {
+            switch (status) {
+                case ACTIVE:
+                    return stored & ~completedBits;
+                case COMPLETED:
+                    return completedBits;
+                default:
+                    return stored;
+            }
+        }
+
+        TaskRecord record(int id) {
+            int slot = id & (LEAF_SIZE - 1);
+            long mask = 1L << slot;
+            if ((stored & mask) == 0) {
+                return null;
+            }
+            int start = slot == 0 ? 0 : ends[slot - 1];
+            String description = (nullDescriptions & mask) != 0
+                    ? null : new String(arena, start, ends[slot] - start, StandardCharsets.UTF_8);
+            return new TaskRecord(id, description, (completedBits & mask) != 0,
+                    (dueDateBits & mask) != 0 ? Instant.ofEpochMilli(dueDates[slot]) : null,
+                    (reminderBits & mask) != 0 ? Instant.ofEpochMilli(reminders[slot]) : null);
+        }
+
+        void set(int slot, byte[] description, TaskRecord record, boolean isStored) {
+            int start = slot == 0 ? 0 : ends[slot - 1];
+            int oldEnd = ends[slot];
+            int used = ends[LEAF_SIZE - 1];
+            int delta = (description == null ? 0 : description.length) - (oldEnd - start);
+            if (delta != 0) {
+                if (used + delta > arena.length) {
+                    arena = Arrays.copyOf(arena, Math.max(used + delta, arena.length + (arena.length >> 1)));
+                }
+                // Move the descriptions of the later slots
+                System.arraycopy(arena, oldEnd, arena, oldEnd + delta, used - oldEnd);
+                for (int i = slot; i < LEAF_SIZE; i++) {
+                    ends[i] += delta;
+                }
+            }
+            if (description != null) {
+                System.arraycopy(description, 0, arena, start, description.length);
+            }
+            long mask = 1L << slot;
+            boolean isCompleted = isStored && record.isCompleted();
+            stored = isStored ? stored | mask : stored & ~mask;
+            completedBits = isCompleted ? completedBits | mask : completedBits & ~mask;
+            nullDescriptions = isStored && description == null ? nullDescriptions | mask : nullDescriptions & ~mask;
+            Instant dueDate = isStored ? record.getDueDate() : null;
+            Instant reminder = isStored ? record.getReminder() : null;
+            if (dueDate != null) {
+                if (dueDates == null) {
+                    dueDates = new long[LEAF_SIZE];
+                }
+                dueDates[slot] = dueDate.toEpochMilli();
+            }
+            if (reminder != null) {
+                if (reminders == null) {
+                    reminders = new long[LEAF_SIZE];
+                }
+                reminders[slot] = reminder.toEpochMilli();
+            }
+            dueDateBits = dueDate != null ? dueDateBits | mask : dueDateBits & ~mask;
+            reminderBits = reminder != null ? reminderBits | mask : reminderBits & ~mask;
+            live = Long.bitCount(stored);
+            completed = Long.bitCount(completedBits);
+        }
+
+        /**
+         * Drops the spare arena capacity left from growing it.
+         */
+        void trim() {
+            if (arena.length > ends[LEAF_SIZE - 1]) {
+                arena = Arrays.copyOf(arena, ends[LEAF_SIZE - 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.todoapp.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel that tells which task timers have expired, as described by Varghese and Lauck.
+ * <p>
+ * Time advances in ticks. The lowest wheel has a slot for each of the next {@value #WHEEL_SIZE} ticks, and
+ * each wheel above it has a slot for {@value #WHEEL_SIZE} slots of the one below, so {@value #LEVELS}
+ * wheels cover {@code 64^4} ticks; timers beyond that wait in an overflow list. Every slot is a doubly
+ * linked list, so starting and cancelling a timer costs the same however many are pending, and a tick
+ * only looks at one slot of the lowest wheel. When the lowest wheel comes round, the next slot of the
+ * wheel above is emptied into it, and so on upwards, so every timer is moved at most once per wheel.
+ * <p>
+ * Safe for use from many threads.
+ */
+final class TimingWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int SLOT_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    // Beyond this many ticks, placing every timer again is cheaper than turning the wheels tick by tick
+    private static final long MAX_CATCH_UP_TICKS = 1L << 20;
+
+    private final long tickMillis;
+    private final Bucket[][] wheels;
+    // Timers beyond the highest wheel
+    private final Bucket overflow = new Bucket();
+    // Timers whose tick had already passed when they were started
+    private final Bucket expired = new Bucket();
+    private final Map<Integer, Timer> timers = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * Creates an empty wheel.
+     * @param tickMillis The length of a tick in milliseconds
+     * @param nowMillis The current time in milliseconds since the epoch
+     */
+    TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("The tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+        this.wheels = new Bucket[LEVELS][WHEEL_SIZE];
+        for (Bucket[] wheel : wheels) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheel[slot] = new Bucket();
+            }
+        }
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Starts a timer, replacing the timer with the same ID. It expires in the first tick that ends at or
+     * after the deadline; a deadline that has passed expires at the next {@link #advance(long)}.
+     * @param id The ID of the timer
+     * @param deadlineMillis The deadline in milliseconds since the epoch
+     */
+    synchronized void schedule(int id, long deadlineMillis) {
+        cancel(id);
+        long deadlineTick = Math.floorDiv(deadlineMillis, tickMillis)
+                + (Math.floorMod(deadlineMillis, tickMillis) == 0 ? 0 : 1);
+        Timer timer = new Timer(id, deadlineTick);
+        timers.put(id, timer);
+        place(timer);
+    }
+
+    /**
+     * Cancels a timer.
+     * @param id The ID of the timer
+     * @return Whether the timer was pending
+     */
+    synchronized boolean cancel(int id) {
+        Timer timer = timers.remove(id);
+        if (timer == null) {
+            return false;
+        }
+        timer.unlink();
+        return true;
+    }
+
+    /**
+     * Cancels every timer.
+     */
+    synchronized void clear() {
+        for (Timer timer : timers.values()) {
+            timer.unlink();
+        }
+        timers.clear();
+    }
+
+    /**
+     * Gets the number of pending timers.
+     * @return The number of timers that haven't expired yet
+     */
+    synchronized int size() {
+        return timers.size();
+    }
+
+    /**
+     * Moves the wheels forward to a time and removes the timers that expire on the way.
+     * @param nowMillis The current time in milliseconds since the epoch; earlier times are ignored
+     * @return The IDs of the expired timers, in the order of their ticks
+     */
+    synchronized int[] advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        IdCollector fired = new IdCollector();
+        drain(expired, fired);
+        if (targetTick - currentTick > MAX_CATCH_UP_TICKS) {
+            // After a long sleep, every timer is placed again relative to the new time
+            List<Timer> pending = new ArrayList<>(timers.values());
+            pending.sort(Comparator.comparingLong(timer -> timer.deadlineTick));
+            currentTick = targetTick;
+            for (Timer timer : pending) {
+                timer.unlink();
+                place(timer);
+            }
+            drain(expired, fired);
+            return fired.toArray();
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            // Timers moved down for exactly this tick land in the expired list rather than the lowest wheel
+            drain(expired, fired);
+            drain(wheels[0][(int) (currentTick & SLOT_MASK)], fired);
+        }
+        return fired.toArray();
+    }
+
+    /**
+     * Moves the timers of the slots that start at the current tick down to the lower wheels, highest wheel first.
+     */
+    private void cascade() {
+        int wrapped = 0;
+        while (wrapped < LEVELS && (currentTick & ((1L << (WHEEL_BITS * (wrapped + 1))) - 1)) == 0) {
+            wrapped++;
+        }
+        if (wrapped == LEVELS) {
+            redistribute(overflow);
+        }
+        for (int level = Math.min(wrapped, LEVELS - 1); level >= 1; level--) {
+            redistribute(wheels[level][(int) ((currentTick >>> (WHEEL_BITS * level)) & SLOT_MASK)]);
+        }
+    }
+
+    private void redistribute(Bucket bucket) {
+        for (Timer timer = bucket.first(); timer != null; timer = bucket.first()) {
+            timer.unlink();
+            place(timer);
+        }
+    }
+
+    /**
+     * Puts a timer into the lowest wheel whose range, seen from the current tick, contains its tick.
+     */
+    private void place(Timer timer) {
+        long tick = timer.deadlineTick;
+        if (tick <= currentTick) {
+            expired.add(timer);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int above = WHEEL_BITS * (level + 1);
+            if ((tick >>> above) == (currentTick >>> above)) {
+                wheels[level][(int) ((tick >>> (WHEEL_BITS * level)) & SLOT_MASK)].add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+
+    private void drain(Bucket bucket, IdCollector fired) {
+        for (Timer timer = bucket.first(); timer != null; timer = bucket.first()) {
+            timer.unlink();
+            timers.remove(timer.id);
+            fired.add(timer.id);
+        }
+    }
+
+    private static final class Timer {
+        final int id;
+        final long deadlineTick;
+        Timer previous;
+        Timer next;
+
+        Timer(int id, long deadlineTick) {
+            this.id = id;
+            this.deadlineTick = deadlineTick;
+        }
+
+        void unlink() {
+            if (previous != null) {
+                previous.next = next;
+                next.previous = previous;
+                previous = null;
+                next = null;
+            }
+        }
+    }
+
+    /**
+     * The timers of one slot, as a circular list around a sentinel.
+     */
+    private static final class Bucket {
+        private final Timer sentinel = new Timer(-1, 0);
+
+        Bucket() {
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        void add(Timer timer) {
+            timer.previous = sentinel.previous;
+            timer.next = sentinel;
+            sentinel.previous.next = timer;
+            sentinel.previous = timer;
+        }
+
+        Timer first() {
+            return sentinel.next == sentinel ? null : sentinel.next;
+        }
+    }
+
+    private static final class IdCollector {
+        private int[] ids = new int[0];
+        private int count;
+
+        void add(int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+            }
+            ids[count++] = id;
+        }
+
+        int[] toArray() {
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.todoapp.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background writer for write-behind persistence. Mutations that have already been applied to the
+ * in-memory store are queued here, and a dedicated thread writes them to the {@link TaskPersistence}
+ * in groups: one write per flush interval, or sooner once the queue reaches the maximum batch size.
+ * A failed write is kept at the head of the queue and retried after the next interval.
+ */
+class WriteBehindWriter implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindWriter.class.getName());
+
+    private final TaskPersistence persistence;
+    private final Supplier<TaskSnapshot> state;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final Thread thread;
+
+    private final Object lock = new Object();
+    private List<TaskMutation> pending = new ArrayList<>();
+    private boolean rewriteRequested;
+    private long enqueued;
+    private long persisted;
+    private long flushRequestedUpTo;
+    private long failures;
+    private IOException lastFailure;
+    private boolean closing;
+
+    /**
+     * Creates the writer and starts its thread.
+     * @param persistence Where the queued changes are written
+     * @param state Returns the current snapshot of the store; called from the writer thread
+     * @param flushIntervalMillis How long changes are collected before they are written
+     * @param maxBatchSize The queue length that triggers an early write
+     */
+    WriteBehindWriter(TaskPersistence persistence, Supplier<TaskSnapshot> state,
+                      long flushIntervalMillis, int maxBatchSize) {
+        this.persistence = persistence;
+        this.state = state;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.thread = new Thread(this::run, "task-write-behind");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues changes that have already been applied to the in-memory store.
+     * Callers must enqueue in the same order in which they applied the changes.
+     * @param mutations The changes to write
+     */
+    void enqueue(List<TaskMutation> mutations) {
+        synchronized (lock) {
+            if (closing) {
+                throw new IllegalStateException("Write-behind writer is closed");
+            }
+            pending.addAll(mutations);
+            enqueued += mutations.size();
+            if (pending.size() >= maxBatchSize) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Requests a full rewrite of the store, which supersedes every change queued so far.
+     */
+    void enqueueRewrite() {
+        synchronized (lock) {
+            if (closing) {
+                throw new IllegalStateException("Write-behind writer is closed");
+            }
+            pending.clear();
+            rewriteRequested = true;
+            // Counts as one change so that flush() waits for it
+            enqueued++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Writes every change queued so far and waits until it is on disk.
+     * @throws IOException If a write fails while waiting
+     */
+    void flush() throws IOException {
+        synchronized (lock) {
+            long target = enqueued;
+            long failuresBefore = failures;
+            flushRequestedUpTo = Math.max(flushRequestedUpTo, target);
+            lock.notifyAll();
+            while (persisted < target) {
+                if (failures != failuresBefore) {
+                    throw new IOException("Write-behind flush failed", lastFailure);
+                }
+                if (!thread.isAlive()) {
+                    throw new IOException("Write-behind writer stopped with unwritten changes", lastFailure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing changes", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of changes that have been queued but not yet written.
+     * @return The number of pending changes
+     */
+    long getPendingCount() {
+        synchronized (lock) {
+            return enqueued - persisted;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<TaskMutation> batch;
+            boolean rewrite;
+            long upTo;
+            synchronized (lock) {
+                try {
+                    while (pending.isEmpty() && !rewriteRequested && !closing) {
+                        lock.wait();
+                    }
+                    // Group commit: keep collecting until the window ends, the batch is full or someone waits
+                    long deadline = System.nanoTime() + flushIntervalNanos;
+                    long remaining;
+                    while (!closing && pending.size() < maxBatchSize && flushRequestedUpTo <= persisted
+                            && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    // Shutdown is signalled through closing; just write what we have
+                }
+                if (pending.isEmpty() && !rewriteRequested) {
+                    return;
+                }
+                batch = pending;
+                rewrite = rewriteRequested;
+                upTo = enqueued;
+                pending = new ArrayList<>();
+                rewriteRequested = false;
+            }
+
+            try {
+                if (rewrite) {
+                    persistence.rewrite(state.get().toList());
+                }
+                if (!batch.isEmpty()) {
+                    persistence.persist(batch, state);
+                }
+                synchronized (lock) {
+                    persisted = upTo;
+                    lock.notifyAll();
+                }
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Wrote " + batch.size() + " queued changes" + (rewrite ? " after a full rewrite" : ""));
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Failed to write " + batch.size() + " queued changes", e);
+                synchronized (lock) {
+                    batch.addAll(pending);
+                    pending = batch;
+                    rewriteRequested |= rewrite;
+                    failures++;
+                    lastFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    lock.notifyAll();
+                    if (closing) {
+                        return;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, Math.max(flushIntervalNanos, TimeUnit.MILLISECONDS.toNanos(100)));
+                    } catch (InterruptedException ignored) {
+                        // Retry immediately
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining changes and stops the writer thread.
+     * @throws IOException If the remaining changes couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the write-behind writer", e);
+        }
+        synchronized (lock) {
+            if (persisted < enqueued) {
+                throw new IOException((enqueued - persisted) + " changes could not be written", lastFailure);
+            }
+        }
+    }
+}
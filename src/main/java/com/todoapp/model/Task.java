@@ -1,22 +1,30 @@
 package com.todoapp.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+import java.time.Instant;
+
 /**
  * Model class representing a single task in the to-do list.
- * Compatible with Jackson JSON serialization/deserialization.
+ * Compatible with Jackson JSON serialization/deserialization; the optional due date and reminder
+ * are written as ISO-8601 instants and left out when not set.
  */
 public class Task {
     private final IntegerProperty id;
     private final StringProperty description;
     private final BooleanProperty completed;
+    private final ObjectProperty<Instant> dueDate = new SimpleObjectProperty<>();
+    private final ObjectProperty<Instant> reminder = new SimpleObjectProperty<>();
 
     /**
      * Default constructor for Jackson deserialization.
@@ -91,6 +99,58 @@ public class Task {
         this.completed.set(completed);
     }
 
+    @JsonIgnore
+    public Instant getDueDate() {
+        return dueDate.get();
+    }
+
+    @JsonIgnore
+    public void setDueDate(Instant dueDate) {
+        this.dueDate.set(dueDate);
+    }
+
+    @JsonIgnore
+    public Instant getReminder() {
+        return reminder.get();
+    }
+
+    @JsonIgnore
+    public void setReminder(Instant reminder) {
+        this.reminder.set(reminder);
+    }
+
+    // The instants are written as text, which needs no Jackson date module
+    @JsonProperty("dueDate")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getDueDateText() {
+        return getDueDate() == null ? null : getDueDate().toString();
+    }
+
+    @JsonProperty("dueDate")
+    private void setDueDateText(String dueDate) {
+        setDueDate(dueDate == null ? null : Instant.parse(dueDate));
+    }
+
+    @JsonProperty("reminder")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getReminderText() {
+        return getReminder() == null ? null : getReminder().toString();
+    }
+
+    @JsonProperty("reminder")
+    private void setReminderText(String reminder) {
+        setReminder(reminder == null ? null : Instant.parse(reminder));
+    }
+
+    /**
+     * Checks whether the task is still open after its due date.
+     * @param now The current time
+     * @return True if the task isn't completed and its due date is before {@code now}
+     */
+    public boolean isOverdue(Instant now) {
+        return !isCompleted() && getDueDate() != null && getDueDate().isBefore(now);
+    }
+
     // JavaFX property getters (ignored by Jackson)
     @JsonIgnore
     public IntegerProperty idProperty() {
@@ -107,6 +167,16 @@ public class Task {
         return completed;
     }
 
+    @JsonIgnore
+    public ObjectProperty<Instant> dueDateProperty() {
+        return dueDate;
+    }
+
+    @JsonIgnore
+    public ObjectProperty<Instant> reminderProperty() {
+        return reminder;
+    }
+
     @Override
     public String toString() {
         return getDescription() + (isCompleted() ? " (Completed)" : " (Pending)");
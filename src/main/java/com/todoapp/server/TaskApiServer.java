@@ -0,0 +1,725 @@
+package com.todoapp.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskBatch;
+import com.todoapp.database.TaskLists;
+import com.todoapp.database.TaskPage;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.database.TaskSnapshot;
+import com.todoapp.model.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the tasks of a {@link TaskRepository}, or of every list of {@link TaskLists}, as a JSON REST API,
+ * for scripts and other tools that work without the JavaFX window. Started by {@code TodoApp --headless}.
+ * <p>
+ * Endpoints:
+ * <pre>
+ * GET    /api/tasks?status=active&amp;q=milk&amp;order=desc&amp;offset=0&amp;limit=50   a page of tasks
+ * POST   /api/tasks                    {"description": "...", "dueDate": "...", "reminder": "..."}; adds a task
+ * POST   /api/tasks/clear-completed    deletes the completed tasks
+ * GET    /api/tasks/{id}               one task
+ * PATCH  /api/tasks/{id}               {"description": "...", "completed": true, "dueDate": "...", "reminder": "..."};
+ *                                      any field may be left out, and null clears the due date or reminder
+ * DELETE /api/tasks/{id}               deletes a task
+ * </pre>
+ * Due dates and reminders are ISO-8601 instants such as {@code 2024-05-01T09:00:00Z}. Pages are ordered by
+ * due date with {@code order=due}, and {@code overdue=true} returns only the tasks that are overdue now.
+ * When serving {@link TaskLists}, {@code /api/tasks} is the {@value TaskLists#DEFAULT_LIST} list, and:
+ * <pre>
+ * GET    /api/lists                    the names of the lists
+ * PUT    /api/lists/{name}             creates a list
+ * DELETE /api/lists/{name}             deletes a list with its tasks
+ * ...    /api/lists/{name}/tasks...    the task endpoints above, for that list
+ * </pre>
+ * Reads carry an ETag derived from {@link TaskRepository#getVersion()}. A request whose
+ * {@code If-None-Match} holds the current tag is answered with 304 Not Modified before any task is read.
+ * Lists of overdue tasks carry no tag, as they change when a due date passes.
+ * <p>
+ * Every request runs on its own virtual thread where the JDK provides them (Java 21 and later), and on
+ * a bounded pool of platform threads otherwise.
+ */
+public class TaskApiServer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TaskApiServer.class.getName());
+    public static final String PORT_PROPERTY = "todoapp.server.port";
+    public static final int DEFAULT_PORT = 8080;
+    static final String BASE_PATH = "/api/tasks";
+    static final String LISTS_PATH = "/api/lists";
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BODY_SIZE = 1 << 20;
+    private static final int BACKLOG = 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(JSON_FACTORY);
+
+    static {
+        // The JDK server writes the headers and the body of a response separately; with Nagle's algorithm
+        // the body then waits for the client's delayed ACK, about 40 ms per request on a kept-alive
+        // connection. The option is read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // One of the two is set: a single repository, or the named lists
+    private final TaskRepository repository;
+    private final TaskLists lists;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates the server for a single repository; call {@link #start()} to accept requests.
+     * @param repository The repository to serve
+     * @param address The address to listen on; port 0 picks a free port
+     * @throws IOException If the address can't be bound
+     */
+    public TaskApiServer(TaskRepository repository, InetSocketAddress address) throws IOException {
+        this(repository, null, address);
+    }
+
+    /**
+     * Creates the server for the named lists; call {@link #start()} to accept requests.
+     * A list is kept open only while a request uses it, or longer if the cache of lists has room.
+     * @param lists The lists to serve
+     * @param address The address to listen on; port 0 picks a free port
+     * @throws IOException If the address can't be bound
+     */
+    public TaskApiServer(TaskLists lists, InetSocketAddress address) throws IOException {
+        this(null, lists, address);
+    }
+
+    private TaskApiServer(TaskRepository repository, TaskLists lists, InetSocketAddress address) throws IOException {
+        this.repository = repository;
+        this.lists = lists;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = createExecutor();
+        server.setExecutor(executor);
+        server.createContext(BASE_PATH, this::handle);
+        if (lists != null) {
+            server.createContext(LISTS_PATH, this::handle);
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per request. The factory method is looked up at
+     * runtime, as the application is built for Java 17, where a pool of platform threads is used instead.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOGGER.info("Serving requests on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+            LOGGER.info("Virtual threads are not available, serving requests on " + threads + " threads");
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "task-api");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+        LOGGER.info("Task API listening on http://" + server.getAddress().getHostString() + ":" + getPort() + BASE_PATH);
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return The port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for the running ones. The repository or lists are not closed.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.info("Task API stopped");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to handle " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI(), e);
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (isUnder(path, BASE_PATH)) {
+            String rest = subPath(path, BASE_PATH);
+            if (repository != null) {
+                routeTasks(exchange, repository, BASE_PATH, rest);
+            } else {
+                try (TaskLists.Lease lease = lists.acquire(TaskLists.DEFAULT_LIST)) {
+                    routeTasks(exchange, lease.getRepository(), BASE_PATH, rest);
+                }
+            }
+            return;
+        }
+        if (lists != null && isUnder(path, LISTS_PATH)) {
+            routeLists(exchange, subPath(path, LISTS_PATH));
+            return;
+        }
+        throw new ApiException(404, "Not found: " + path);
+    }
+
+    private static boolean isUnder(String path, String basePath) {
+        return path.equals(basePath) || path.startsWith(basePath + "/");
+    }
+
+    private static String subPath(String path, String basePath) {
+        return path.length() > basePath.length() ? path.substring(basePath.length() + 1) : "";
+    }
+
+    private void routeLists(HttpExchange exchange, String rest) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (rest.isEmpty()) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed(exchange, "GET");
+            }
+            listLists(exchange);
+            return;
+        }
+        int slash = rest.indexOf('/');
+        String name = slash < 0 ? rest : rest.substring(0, slash);
+        String listRest = slash < 0 ? "" : rest.substring(slash + 1);
+
+        if (slash < 0) {
+            switch (method) {
+                case "PUT":
+                    createList(exchange, name);
+                    return;
+                case "DELETE":
+                    deleteList(exchange, name);
+                    return;
+                default:
+                    throw methodNotAllowed(exchange, "PUT, DELETE");
+            }
+        }
+        String tasksPath = LISTS_PATH + "/" + encodePathSegment(name) + "/tasks";
+        if (!isUnder("/" + listRest, "/tasks")) {
+            throw new ApiException(404, "Not found: " + exchange.getRequestURI().getPath());
+        }
+        TaskLists.Lease lease;
+        try {
+            lease = lists.acquire(name);
+        } catch (IllegalArgumentException e) {
+            throw listNotFound(name);
+        }
+        try (lease) {
+            routeTasks(exchange, lease.getRepository(), tasksPath, subPath("/" + listRest, "/tasks"));
+        }
+    }
+
+    private void routeTasks(HttpExchange exchange, TaskRepository repository, String basePath, String rest) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (rest.isEmpty()) {
+            switch (method) {
+                case "GET":
+                    listTasks(exchange, repository);
+                    return;
+                case "POST":
+                    addTask(exchange, repository, basePath);
+                    return;
+                default:
+                    throw methodNotAllowed(exchange, "GET, POST");
+            }
+        }
+        if (rest.equals("clear-completed")) {
+            if (!method.equals("POST")) {
+                throw methodNotAllowed(exchange, "POST");
+            }
+            clearCompleted(exchange, repository);
+            return;
+        }
+
+        int taskId = parseId(basePath, rest);
+        switch (method) {
+            case "GET":
+                getTask(exchange, repository, taskId);
+                return;
+            case "PATCH":
+                updateTask(exchange, repository, taskId);
+                return;
+            case "DELETE":
+                deleteTask(exchange, repository, taskId);
+                return;
+            default:
+                throw methodNotAllowed(exchange, "GET, PATCH, DELETE");
+        }
+    }
+
+    private void listLists(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("lists");
+            for (String name : lists.getNames()) {
+                generator.writeString(name);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        send(exchange, 200, body.toByteArray());
+    }
+
+    private void createList(HttpExchange exchange, String name) throws IOException {
+        boolean created;
+        try {
+            created = lists.create(name);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ApiException(409, e.getMessage());
+        }
+        exchange.getResponseHeaders().set("Location", LISTS_PATH + "/" + encodePathSegment(name) + "/tasks");
+        send(exchange, created ? 201 : 200, null);
+    }
+
+    private void deleteList(HttpExchange exchange, String name) throws IOException {
+        boolean deleted;
+        try {
+            deleted = lists.delete(name);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ApiException(409, e.getMessage());
+        }
+        if (!deleted) {
+            throw listNotFound(name);
+        }
+        send(exchange, 204, null);
+    }
+
+    private void listTasks(HttpExchange exchange, TaskRepository repository) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        // The overdue tasks also change as time passes, which the version doesn't show, so they carry no tag.
+        // Otherwise read the version before the tasks, so that a change made in between makes the tag stale
+        // rather than labelling new tasks with an old tag.
+        boolean overdue = "true".equalsIgnoreCase(parameters.get("overdue"));
+        String etag = overdue ? null : etag(repository.getVersion());
+        if (etag != null && notModified(exchange, etag)) {
+            return;
+        }
+
+        int offset = parseInt(parameters, "offset", 0);
+        int limit = parseInt(parameters, "limit", DEFAULT_PAGE_SIZE);
+        if (offset < 0 || limit < 0 || limit > MAX_PAGE_SIZE) {
+            throw new ApiException(400, "offset must not be negative and limit must be between 0 and " + MAX_PAGE_SIZE);
+        }
+        TaskQuery query = TaskQuery.of(parseStatus(parameters.get("status")))
+                .orderBy(parseOrder(parameters.get("order")))
+                .matching(parameters.get("q"))
+                .overdueAt(overdue ? Instant.now() : null)
+                .page(offset, limit);
+        TaskPage page = repository.queryTasks(query);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128 + page.getTasks().size() * 64);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("offset", page.getOffset());
+            generator.writeNumberField("limit", limit);
+            generator.writeNumberField("total", page.getTotalCount());
+            generator.writeBooleanField("hasNext", page.hasNext());
+            generator.writeArrayFieldStart("tasks");
+            for (Task task : page.getTasks()) {
+                writeTask(generator, task);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        send(exchange, 200, body.toByteArray());
+    }
+
+    private void getTask(HttpExchange exchange, TaskRepository repository, int taskId) throws IOException {
+        // The tag and the task come from one snapshot, so the tag is exact
+        TaskSnapshot snapshot = repository.snapshot();
+        String etag = etag(snapshot.getVersion());
+        if (notModified(exchange, etag)) {
+            return;
+        }
+        TaskRecord record = snapshot.get(taskId);
+        if (record == null) {
+            throw taskNotFound(taskId);
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        send(exchange, 200, taskJson(record.toTask()));
+    }
+
+    private void addTask(HttpExchange exchange, TaskRepository repository, String basePath) throws IOException {
+        JsonNode body = readBody(exchange);
+        JsonNode description = body.get("description");
+        if (description == null || !description.isTextual() || description.asText().isBlank()) {
+            throw new ApiException(400, "A non-empty \"description\" is required");
+        }
+        Instant dueDate = parseInstant(body, "dueDate");
+        Instant reminder = parseInstant(body, "reminder");
+        int taskId = dueDate == null && reminder == null ? repository.addTask(description.asText().trim())
+                : repository.applyBatch(new TaskBatch().add(description.asText().trim(), false, dueDate, reminder))[0];
+        Task task = repository.getTask(taskId).orElseThrow(() -> taskNotFound(taskId));
+        exchange.getResponseHeaders().set("Location", basePath + "/" + taskId);
+        send(exchange, 201, taskJson(task));
+    }
+
+    private void updateTask(HttpExchange exchange, TaskRepository repository, int taskId) throws IOException {
+        JsonNode body = readBody(exchange);
+        JsonNode description = body.get("description");
+        JsonNode completed = body.get("completed");
+        if (description != null && (!description.isTextual() || description.asText().isBlank())) {
+            throw new ApiException(400, "\"description\" must be a non-empty string");
+        }
+        if (completed != null && !completed.isBoolean()) {
+            throw new ApiException(400, "\"completed\" must be true or false");
+        }
+        Instant dueDate = parseInstant(body, "dueDate");
+        Instant reminder = parseInstant(body, "reminder");
+        // All fields are changed in one batch, so they are written together
+        TaskBatch batch = new TaskBatch();
+        if (description != null) {
+            batch.setDescription(taskId, description.asText().trim());
+        }
+        if (completed != null) {
+            batch.setCompleted(taskId, completed.asBoolean());
+        }
+        // A date that isn't given is kept as it is when the batch is applied, so a concurrent PATCH of
+        // the other date isn't undone
+        if (body.has("dueDate") && body.has("reminder")) {
+            batch.setSchedule(taskId, dueDate, reminder);
+        } else if (body.has("dueDate")) {
+            batch.setDueDate(taskId, dueDate);
+        } else if (body.has("reminder")) {
+            batch.setReminder(taskId, reminder);
+        }
+        repository.applyBatch(batch);
+        Task task = repository.getTask(taskId).orElseThrow(() -> taskNotFound(taskId));
+        send(exchange, 200, taskJson(task));
+    }
+
+    private void deleteTask(HttpExchange exchange, TaskRepository repository, int taskId) throws IOException {
+        // Checked by the deletion itself, so that of two concurrent requests only one succeeds
+        if (!repository.deleteTask(taskId)) {
+            throw taskNotFound(taskId);
+        }
+        send(exchange, 204, null);
+    }
+
+    private void clearCompleted(HttpExchange exchange, TaskRepository repository) throws IOException {
+        int cleared = repository.clearCompletedTasks();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(32);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("cleared", cleared);
+            generator.writeEndObject();
+        }
+        send(exchange, 200, body.toByteArray());
+    }
+
+    private static String etag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Answers with 304 Not Modified if the client already holds the current version.
+     */
+    private static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // Weak comparison, as required for If-None-Match
+            if (tag.equals("*") || tag.equals(etag) || ("W/" + tag).equals(etag)) {
+                exchange.getResponseHeaders().set("ETag", etag);
+                send(exchange, 304, null);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the JSON object of a request body. Bodies over {@link #MAX_BODY_SIZE} are refused with 413,
+     * by their Content-Length before anything is read, or once that many bytes have arrived otherwise.
+     */
+    private static JsonNode readBody(HttpExchange exchange) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && parseContentLength(contentLength) > MAX_BODY_SIZE) {
+            throw bodyTooLarge();
+        }
+        byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (bytes.length > MAX_BODY_SIZE) {
+            throw bodyTooLarge();
+        }
+        JsonNode body;
+        try {
+            body = bytes.length == 0 ? null : OBJECT_MAPPER.readTree(bytes);
+        } catch (IOException e) {
+            throw new ApiException(400, "The request body is not valid JSON");
+        }
+        if (body == null || !body.isObject()) {
+            throw new ApiException(400, "The request body must be a JSON object");
+        }
+        return body;
+    }
+
+    private static long parseContentLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Content-Length must be a number: " + value);
+        }
+    }
+
+    private static ApiException bodyTooLarge() {
+        return new ApiException(413, "The request body must not be larger than " + MAX_BODY_SIZE + " bytes");
+    }
+
+    private static byte[] taskJson(Task task) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(96);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            writeTask(generator, task);
+        }
+        return body.toByteArray();
+    }
+
+    private static void writeTask(JsonGenerator generator, Task task) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", task.getId());
+        generator.writeStringField("description", task.getDescription());
+        generator.writeBooleanField("completed", task.isCompleted());
+        if (task.getDueDate() != null) {
+            generator.writeStringField("dueDate", task.getDueDate().toString());
+        }
+        if (task.getReminder() != null) {
+            generator.writeStringField("reminder", task.getReminder().toString());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads an optional instant field of a request body.
+     * @return The instant, or null if the field is missing or null
+     */
+    private static Instant parseInstant(JsonNode body, String name) {
+        JsonNode value = body.get(name);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        try {
+            if (value.isTextual()) {
+                return Instant.parse(value.asText());
+            }
+        } catch (DateTimeParseException e) {
+            // Answered below
+        }
+        throw new ApiException(400, "\"" + name + "\" must be an ISO-8601 instant such as 2024-05-01T09:00:00Z, or null");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("error", message);
+            generator.writeEndObject();
+        }
+        send(exchange, status, body.toByteArray());
+    }
+
+    /**
+     * Sends a response with a known length, so that the connection can be kept alive.
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        // A response without a body completes the exchange at once, and the JDK server closes the
+        // connection if the request hasn't been read to its end by then
+        exchange.getRequestBody().close();
+        Headers headers = exchange.getResponseHeaders();
+        if (body != null) {
+            headers.set("Content-Type", "application/json; charset=utf-8");
+        }
+        headers.set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        if (body != null) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static ApiException methodNotAllowed(HttpExchange exchange, String allowed) {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        return new ApiException(405, "Method " + exchange.getRequestMethod() + " is not allowed");
+    }
+
+    private static ApiException taskNotFound(int taskId) {
+        return new ApiException(404, "No task found with ID: " + taskId);
+    }
+
+    private static ApiException listNotFound(String name) {
+        return new ApiException(404, "No task list named " + name);
+    }
+
+    private static int parseId(String basePath, String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "Not found: " + basePath + "/" + text);
+        }
+    }
+
+    /**
+     * Encodes a list name for a URL path; names hold only letters, digits, spaces and {@code _.-}.
+     */
+    private static String encodePathSegment(String name) {
+        return name.replace(" ", "%20");
+    }
+
+    private static int parseInt(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a number: " + value);
+        }
+    }
+
+    private static TaskQuery.Order parseOrder(String value) {
+        if ("desc".equalsIgnoreCase(value)) {
+            return TaskQuery.Order.ID_DESCENDING;
+        }
+        return "due".equalsIgnoreCase(value) ? TaskQuery.Order.DUE_DATE : TaskQuery.Order.ID_ASCENDING;
+    }
+
+    private static TaskQuery.Status parseStatus(String value) {
+        if (value == null) {
+            return TaskQuery.Status.ALL;
+        }
+        try {
+            return TaskQuery.Status.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "status must be all, active or completed: " + value);
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            try {
+                parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Malformed query parameter: " + pair);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * A request that can't be served, answered with an error status and message.
+     */
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Runs the API without the JavaFX window until the process is stopped. The API has no authentication,
+     * so it only listens on the loopback interface unless another address is given.
+     * @param args {@code --port=N} overrides the port, and {@code --bind=ADDRESS} listens on the given
+     *             address instead, such as {@code 0.0.0.0} for every interface; other arguments are ignored
+     */
+    public static void main(String[] args) throws IOException {
+        int port = Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--bind=")) {
+                bindAddress = InetAddress.getByName(arg.substring("--bind=".length()));
+            }
+        }
+
+        TaskLists lists = new TaskLists(StorageConfig.fromSystemProperties());
+        TaskApiServer server = new TaskApiServer(lists, new InetSocketAddress(bindAddress, port));
+        // The server's dispatcher thread keeps the process running until it is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                lists.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Failed to close the task lists", e);
+            }
+        }, "task-api-shutdown"));
+        server.start();
+    }
+}
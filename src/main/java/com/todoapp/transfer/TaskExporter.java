@@ -0,0 +1,212 @@
+package com.todoapp.transfer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.database.TaskSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Writes the tasks of a {@link TaskRepository} to an NDJSON or CSV file.
+ * <p>
+ * The export reads a single {@link TaskSnapshot}, so the file shows the tasks at one version however
+ * long the export runs, and writers carry on meanwhile. The snapshot is cut into ranges of
+ * {@value #RANGE_IDS} IDs that are formatted in parallel on the common fork-join pool and written in ID
+ * order, with at most a few formatted ranges per core waiting to be written. The file is written under a
+ * temporary name and renamed when it is complete.
+ */
+public class TaskExporter {
+    private static final Logger LOGGER = Logger.getLogger(TaskExporter.class.getName());
+    static final int RANGE_IDS = 1 << 16;
+    static final String CSV_HEADER = "id,description,completed\r\n";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final TaskRepository repository;
+    private final int maxRangesInFlight;
+
+    /**
+     * Creates an exporter that formats up to two ranges per core ahead of the file.
+     * @param repository The repository to export
+     */
+    public TaskExporter(TaskRepository repository) {
+        this.repository = repository;
+        this.maxRangesInFlight = 2 * ForkJoinPool.getCommonPoolParallelism();
+    }
+
+    /**
+     * Writes all tasks to a file, in the format given by its extension.
+     * @param target The file to write
+     * @return The number of exported tasks, the bytes written and the time taken
+     */
+    public TransferProgress exportTo(File target) throws IOException {
+        return exportTo(target, TaskFormat.forFile(target), progress -> { });
+    }
+
+    /**
+     * Writes all tasks to a file, replacing it.
+     * @param target The file to write
+     * @param format The format of the file
+     * @param listener Receives the progress after every written range, on the calling thread
+     * @return The number of exported tasks, the bytes written and the time taken
+     */
+    public TransferProgress exportTo(File target, TaskFormat format, Consumer<TransferProgress> listener) throws IOException {
+        long start = System.nanoTime();
+        TaskSnapshot snapshot = repository.snapshot();
+        long total = snapshot.size();
+        long records = 0;
+        long bytes = 0;
+        File temp = new File(target.getPath() + ".tmp");
+        ArrayDeque<Future<FormattedRange>> inFlight = new ArrayDeque<>();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)) {
+            if (format == TaskFormat.CSV) {
+                byte[] header = CSV_HEADER.getBytes(StandardCharsets.UTF_8);
+                out.write(header);
+                bytes += header.length;
+            }
+            long end = (long) snapshot.lastId() + 1;
+            for (long from = 0; from < end; from += RANGE_IDS) {
+                int rangeStart = (int) from;
+                int rangeEnd = (int) Math.min(end, from + RANGE_IDS);
+                inFlight.add(ForkJoinPool.commonPool().submit(() -> format(snapshot, rangeStart, rangeEnd, format)));
+
+                while (inFlight.size() >= maxRangesInFlight || (!inFlight.isEmpty() && inFlight.peek().isDone())) {
+                    FormattedRange range = await(inFlight.poll());
+                    range.bytes.writeTo(out);
+                    records += range.records;
+                    bytes += range.bytes.size();
+                    listener.accept(new TransferProgress(records, total, bytes, -1, System.nanoTime() - start));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                FormattedRange range = await(inFlight.poll());
+                range.bytes.writeTo(out);
+                records += range.records;
+                bytes += range.bytes.size();
+                listener.accept(new TransferProgress(records, total, bytes, -1, System.nanoTime() - start));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Future<FormattedRange> pending : inFlight) {
+                pending.cancel(true);
+            }
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        TransferProgress result = new TransferProgress(records, total, bytes, -1, System.nanoTime() - start);
+        LOGGER.info("Exported " + result + " to " + target.getPath());
+        return result;
+    }
+
+    private static FormattedRange await(Future<FormattedRange> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException | CancellationException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Failed to format tasks", e);
+        }
+    }
+
+    private static FormattedRange format(TaskSnapshot snapshot, int fromId, int toId, TaskFormat format) throws IOException {
+        FormattedRange range = new FormattedRange();
+        if (format == TaskFormat.CSV) {
+            try (Writer writer = new OutputStreamWriter(range.bytes, StandardCharsets.UTF_8)) {
+                snapshot.forEach(fromId, toId, task -> {
+                    try {
+                        writeCsv(writer, task);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    range.records++;
+                });
+            }
+        } else {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(range.bytes, JsonEncoding.UTF8)) {
+                // Every object is on a line of its own instead of being separated by a space
+                generator.setRootValueSeparator(null);
+                snapshot.forEach(fromId, toId, task -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", task.getId());
+                        generator.writeStringField("description", task.getDescription());
+                        generator.writeBooleanField("completed", task.isCompleted());
+                        if (task.getDueDate() != null) {
+                            generator.writeStringField("dueDate", task.getDueDate().toString());
+                        }
+                        if (task.getReminder() != null) {
+                            generator.writeStringField("reminder", task.getReminder().toString());
+                        }
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    range.records++;
+                });
+            }
+        }
+        return range;
+    }
+
+    private static void writeCsv(Writer writer, TaskRecord task) throws IOException {
+        writer.write(Integer.toString(task.getId()));
+        writer.write(',');
+        // A missing description is an empty field, and an empty one is quoted to tell the two apart
+        String description = task.getDescription();
+        if (description != null && needsQuotes(description)) {
+            writer.write('"');
+            writer.write(description.replace("\"", "\"\""));
+            writer.write('"');
+        } else if (description != null) {
+            writer.write(description);
+        }
+        writer.write(task.isCompleted() ? ",true\r\n" : ",false\r\n");
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        if (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1))) {
+            return true;
+        }
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class FormattedRange {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int records;
+    }
+}
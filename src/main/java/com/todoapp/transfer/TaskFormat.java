@@ -0,0 +1,44 @@
+package com.todoapp.transfer;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * The line-oriented file formats that tasks are imported from and exported to.
+ */
+public enum TaskFormat {
+    /** One JSON object per line: {@code {"id":1,"description":"...","completed":false}}, with an optional {@code dueDate} and {@code reminder}. */
+    NDJSON(".ndjson"),
+    /**
+     * RFC 4180 CSV with a header row naming the {@code id}, {@code description} and {@code completed} columns.
+     * An empty description is written as {@code ""}, and an empty field without quotes is a task without one.
+     */
+    CSV(".csv");
+
+    private final String extension;
+
+    TaskFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Picks the format from the extension of a file name; {@code .jsonl} is read as NDJSON.
+     * @param file The file
+     * @return The format
+     * @throws IllegalArgumentException If the extension is not known
+     */
+    public static TaskFormat forFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Unknown task file format: " + file.getName() + " (expected .ndjson, .jsonl or .csv)");
+    }
+}
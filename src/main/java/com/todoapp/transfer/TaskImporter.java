@@ -0,0 +1,488 @@
+package com.todoapp.transfer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.todoapp.database.TaskBatch;
+import com.todoapp.database.TaskRepository;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Adds the tasks of an NDJSON or CSV file of any size to a {@link TaskRepository}.
+ * <p>
+ * The file is read sequentially in chunks of about {@value #DEFAULT_CHUNK_BYTES} bytes that end on a
+ * record boundary. The chunks are parsed in parallel on the common fork-join pool, each into one
+ * {@link TaskBatch}, and the batches are applied in file order, so every chunk costs one write of the
+ * storage engine and the tasks keep the order of the file. Only a few chunks per core are read ahead of
+ * the batch being applied: reading waits while the storage engine catches up, so memory use doesn't
+ * grow with the size of the file.
+ * <p>
+ * IDs in the file are not kept; the imported tasks get new IDs after the existing ones, reserved for a
+ * whole chunk at once. An import is not atomic: if it fails, the chunks applied before the failure stay.
+ * <p>
+ * A CSV file starts with a header row. The description is read from the {@code description} or
+ * {@code title} column and the status from an optional {@code completed} or {@code done} column, in
+ * which {@code true}, {@code yes}, {@code y}, {@code x}, {@code 1}, {@code done} and {@code completed}
+ * count as completed; other columns are ignored. NDJSON records may also carry a {@code dueDate} and a
+ * {@code reminder} as ISO-8601 instants.
+ */
+public class TaskImporter {
+    private static final Logger LOGGER = Logger.getLogger(TaskImporter.class.getName());
+    static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Set<String> DESCRIPTION_COLUMNS = Set.of("description", "title");
+    private static final Set<String> COMPLETED_COLUMNS = Set.of("completed", "done");
+    private static final Set<String> COMPLETED_VALUES = Set.of("true", "yes", "y", "x", "1", "done", "completed");
+
+    private final TaskRepository repository;
+    private final int chunkBytes;
+    private final int maxChunksInFlight;
+
+    /**
+     * Creates an importer that reads ahead two chunks per core.
+     * @param repository The repository to add the tasks to
+     */
+    public TaskImporter(TaskRepository repository) {
+        this(repository, DEFAULT_CHUNK_BYTES, 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Creates an importer.
+     * @param repository The repository to add the tasks to
+     * @param chunkBytes The number of bytes parsed and applied together; a record longer than this makes its chunk grow
+     * @param maxChunksInFlight The number of chunks that may be read before the oldest is applied
+     */
+    public TaskImporter(TaskRepository repository, int chunkBytes, int maxChunksInFlight) {
+        if (chunkBytes < 1 || maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("Chunk size and chunks in flight must be positive");
+        }
+        this.repository = repository;
+        this.chunkBytes = chunkBytes;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Adds the tasks of a file, in the format given by its extension.
+     * @param source The file to import
+     * @return The number of imported tasks, the bytes read and the time taken
+     */
+    public TransferProgress importFrom(File source) throws IOException {
+        return importFrom(source, TaskFormat.forFile(source), progress -> { });
+    }
+
+    /**
+     * Adds the tasks of a file.
+     * @param source The file to import
+     * @param format The format of the file
+     * @param listener Receives the progress after every applied chunk, on the calling thread
+     * @return The number of imported tasks, the bytes read and the time taken
+     */
+    public TransferProgress importFrom(File source, TaskFormat format, Consumer<TransferProgress> listener) throws IOException {
+        long start = System.nanoTime();
+        long totalBytes = source.length();
+        long records = 0;
+        long bytes = 0;
+        ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        try (ChunkReader reader = new ChunkReader(new FileInputStream(source), chunkBytes, format == TaskFormat.CSV)) {
+            CsvColumns columns = null;
+            Chunk chunk;
+            while ((chunk = reader.next()) != null) {
+                if (format == TaskFormat.CSV && columns == null) {
+                    columns = readHeader(chunk, source);
+                }
+                Chunk parsed = chunk;
+                CsvColumns csvColumns = columns;
+                inFlight.add(ForkJoinPool.commonPool().submit(() -> parse(parsed, format, csvColumns)));
+
+                // Reading waits here until the oldest chunk is applied
+                while (inFlight.size() >= maxChunksInFlight || (!inFlight.isEmpty() && inFlight.peek().isDone())) {
+                    ParsedChunk applied = apply(inFlight.poll());
+                    records += applied.batch.getAddCount();
+                    bytes += applied.length;
+                    listener.accept(new TransferProgress(records, -1, bytes, totalBytes, System.nanoTime() - start));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                ParsedChunk applied = apply(inFlight.poll());
+                records += applied.batch.getAddCount();
+                bytes += applied.length;
+                listener.accept(new TransferProgress(records, -1, bytes, totalBytes, System.nanoTime() - start));
+            }
+        } finally {
+            for (Future<ParsedChunk> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+        TransferProgress result = new TransferProgress(records, records, totalBytes, totalBytes, System.nanoTime() - start);
+        LOGGER.info("Imported " + result + " from " + source.getPath());
+        return result;
+    }
+
+    /**
+     * Waits for a chunk to be parsed and applies its batch.
+     */
+    private ParsedChunk apply(Future<ParsedChunk> future) throws IOException {
+        ParsedChunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException | CancellationException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Failed to parse tasks", e);
+        }
+        if (!chunk.batch.isEmpty()) {
+            repository.applyBatch(chunk.batch);
+        }
+        return chunk;
+    }
+
+    private static ParsedChunk parse(Chunk chunk, TaskFormat format, CsvColumns columns) {
+        try {
+            TaskBatch batch = format == TaskFormat.CSV ? parseCsv(chunk, columns) : parseNdjson(chunk);
+            return new ParsedChunk(batch, chunk.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static TaskBatch parseNdjson(Chunk chunk) throws IOException {
+        TaskBatch batch = new TaskBatch();
+        try (JsonParser parser = JSON_FACTORY.createParser(chunk.bytes, chunk.from, chunk.to - chunk.from)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a JSON object per line, found " + token + " " + chunk.describe());
+                }
+                String description = null;
+                boolean hasDescription = false;
+                boolean completed = false;
+                Instant dueDate = null;
+                Instant reminder = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "description":
+                            // Null is kept, as the stores keep it
+                            description = parser.getValueAsString();
+                            hasDescription = true;
+                            break;
+                        case "completed":
+                            completed = parser.getValueAsBoolean();
+                            break;
+                        case "dueDate":
+                            dueDate = parseInstant(parser, chunk);
+                            break;
+                        case "reminder":
+                            reminder = parseInstant(parser, chunk);
+                            break;
+                        default:
+                            parser.skipChildren();
+                            break;
+                    }
+                }
+                if (!hasDescription) {
+                    throw new IOException("Task without a description " + chunk.describe());
+                }
+                batch.add(description, completed, dueDate, reminder);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IOException("Invalid NDJSON " + chunk.describe() + ": " + e.getOriginalMessage(), e);
+        }
+        return batch;
+    }
+
+    private static Instant parseInstant(JsonParser parser, Chunk chunk) throws IOException {
+        String text = parser.getValueAsString();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid instant '" + text + "' " + chunk.describe(), e);
+        }
+    }
+
+    private static TaskBatch parseCsv(Chunk chunk, CsvColumns columns) throws IOException {
+        TaskBatch batch = new TaskBatch();
+        CsvReader reader = new CsvReader(chunk);
+        List<String> fields = new ArrayList<>();
+        while (reader.next(fields)) {
+            if (fields.size() == 1 && fields.get(0) == null) {
+                // Blank line
+                continue;
+            }
+            if (fields.size() <= columns.description) {
+                throw new IOException("CSV record without a description column " + chunk.describe());
+            }
+            boolean completed = columns.completed >= 0 && columns.completed < fields.size()
+                    && fields.get(columns.completed) != null
+                    && COMPLETED_VALUES.contains(fields.get(columns.completed).trim().toLowerCase(Locale.ROOT));
+            batch.add(fields.get(columns.description), completed);
+        }
+        return batch;
+    }
+
+    /**
+     * Reads the header row at the start of the first chunk and moves the chunk past it.
+     */
+    private static CsvColumns readHeader(Chunk chunk, File source) throws IOException {
+        CsvReader reader = new CsvReader(chunk);
+        List<String> header = new ArrayList<>();
+        if (!reader.next(header)) {
+            throw new IOException("CSV file without a header row: " + source.getPath());
+        }
+        chunk.from = reader.position;
+        int description = -1;
+        int completed = -1;
+        for (int index = 0; index < header.size(); index++) {
+            String name = header.get(index) == null ? "" : header.get(index).trim().toLowerCase(Locale.ROOT);
+            if (description < 0 && DESCRIPTION_COLUMNS.contains(name)) {
+                description = index;
+            } else if (completed < 0 && COMPLETED_COLUMNS.contains(name)) {
+                completed = index;
+            }
+        }
+        if (description < 0) {
+            throw new IOException("The CSV header of " + source.getPath() + " has no description or title column: " + header);
+        }
+        return new CsvColumns(description, completed);
+    }
+
+    /**
+     * A run of whole records of the file.
+     */
+    private static final class Chunk {
+        final byte[] bytes;
+        // The records are bytes[from, to); from moves past the header of a CSV file
+        int from;
+        final int to;
+        // Bytes of the file this chunk covers, including a byte order mark and header
+        final int length;
+        final long fileOffset;
+
+        Chunk(byte[] bytes, int from, int to, long fileOffset) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+            this.length = to;
+            this.fileOffset = fileOffset;
+        }
+
+        String describe() {
+            return "in the chunk at byte " + fileOffset;
+        }
+    }
+
+    private static final class ParsedChunk {
+        final TaskBatch batch;
+        final int length;
+
+        ParsedChunk(TaskBatch batch, int length) {
+            this.batch = batch;
+            this.length = length;
+        }
+    }
+
+    private static final class CsvColumns {
+        final int description;
+        // -1 if the file has no status column
+        final int completed;
+
+        CsvColumns(int description, int completed) {
+            this.description = description;
+            this.completed = completed;
+        }
+    }
+
+    /**
+     * Cuts a stream into chunks that end after a line break. For CSV, a line break inside a quoted field
+     * doesn't end a record; in NDJSON, line breaks inside strings are always escaped.
+     */
+    private static final class ChunkReader implements Closeable {
+        private final InputStream in;
+        private final int chunkBytes;
+        private final boolean quoted;
+        // Bytes read after the end of the previous chunk
+        private byte[] carry = new byte[0];
+        private long fileOffset;
+        private boolean eof;
+
+        ChunkReader(InputStream in, int chunkBytes, boolean quoted) {
+            this.in = in;
+            this.chunkBytes = chunkBytes;
+            this.quoted = quoted;
+        }
+
+        Chunk next() throws IOException {
+            byte[] buffer = carry;
+            int filled = carry.length;
+            while (true) {
+                if (eof) {
+                    carry = new byte[0];
+                    return filled == 0 ? null : chunk(buffer, filled);
+                }
+                buffer = Arrays.copyOf(buffer, filled + chunkBytes);
+                int read = in.readNBytes(buffer, filled, chunkBytes);
+                filled += read;
+                eof = read < chunkBytes;
+                int boundary = eof ? filled : lastRecordEnd(buffer, filled);
+                if (boundary > 0) {
+                    carry = Arrays.copyOfRange(buffer, boundary, filled);
+                    return chunk(buffer, boundary);
+                }
+                // A single record is longer than the chunk; read on until it ends
+            }
+        }
+
+        private Chunk chunk(byte[] buffer, int length) {
+            int from = 0;
+            if (fileOffset == 0 && length >= 3 && buffer[0] == (byte) 0xEF && buffer[1] == (byte) 0xBB && buffer[2] == (byte) 0xBF) {
+                // UTF-8 byte order mark, as written by spreadsheets
+                from = 3;
+            }
+            Chunk chunk = new Chunk(buffer, from, length, fileOffset);
+            fileOffset += length;
+            return chunk;
+        }
+
+        /**
+         * Finds the end of the last complete record.
+         * @return The index after its line break, or 0 if no record ends in the buffer
+         */
+        private int lastRecordEnd(byte[] buffer, int length) {
+            if (!quoted) {
+                for (int index = length - 1; index >= 0; index--) {
+                    if (buffer[index] == '\n') {
+                        return index + 1;
+                    }
+                }
+                return 0;
+            }
+            // Chunks start on a record boundary, outside quotes; a doubled quote toggles twice
+            int end = 0;
+            boolean inQuotes = false;
+            for (int index = 0; index < length; index++) {
+                byte b = buffer[index];
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    end = index + 1;
+                }
+            }
+            return end;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads RFC 4180 records from a chunk: fields separated by commas, optionally quoted with doubled
+     * quotes inside, records ended by LF or CRLF. An empty field without quotes is read as null, so that a
+     * task without a description comes back without one, while {@code ""} is an empty description.
+     */
+    private static final class CsvReader {
+        private final byte[] bytes;
+        private final int end;
+        private final Chunk chunk;
+        private int position;
+        private byte[] scratch = new byte[256];
+
+        CsvReader(Chunk chunk) {
+            this.chunk = chunk;
+            this.bytes = chunk.bytes;
+            this.position = chunk.from;
+            this.end = chunk.to;
+        }
+
+        /**
+         * Reads the next record.
+         * @param fields Cleared and filled with the fields of the record, null for an empty unquoted field
+         * @return false if there are no more records
+         */
+        boolean next(List<String> fields) throws IOException {
+            fields.clear();
+            if (position >= end) {
+                return false;
+            }
+            while (true) {
+                if (position < end && bytes[position] == '"') {
+                    fields.add(readQuoted());
+                } else {
+                    int start = position;
+                    while (position < end && bytes[position] != ',' && bytes[position] != '\n' && bytes[position] != '\r') {
+                        position++;
+                    }
+                    fields.add(position == start ? null : new String(bytes, start, position - start, StandardCharsets.UTF_8));
+                }
+                if (position >= end) {
+                    return true;
+                }
+                byte b = bytes[position++];
+                if (b == ',') {
+                    continue;
+                }
+                if (b == '\r' && position < end && bytes[position] == '\n') {
+                    position++;
+                    return true;
+                }
+                if (b == '\n' || b == '\r') {
+                    return true;
+                }
+                throw new IOException("Unexpected character after a quoted CSV field " + chunk.describe());
+            }
+        }
+
+        private String readQuoted() throws IOException {
+            position++;
+            int length = 0;
+            while (true) {
+                if (position >= end) {
+                    throw new IOException("Unterminated quoted CSV field " + chunk.describe());
+                }
+                byte b = bytes[position++];
+                if (b == '"') {
+                    if (position < end && bytes[position] == '"') {
+                        position++;
+                    } else {
+                        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+                    }
+                }
+                if (length == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, length * 2);
+                }
+                scratch[length++] = b;
+            }
+        }
+    }
+}
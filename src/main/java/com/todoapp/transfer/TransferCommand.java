@@ -0,0 +1,97 @@
+package com.todoapp.transfer;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskLists;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Imports or exports the tasks of a task list from the command line, printing the
+ * progress about once a second. Started by {@code TodoApp --import=FILE} or {@code TodoApp --export=FILE};
+ * the format follows the file extension unless {@code --format=ndjson|csv} is given. The tasks are those
+ * of the {@value TaskLists#DEFAULT_LIST} list unless {@code --list=NAME} names another one, which an
+ * import creates if it doesn't exist yet.
+ */
+public final class TransferCommand {
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private TransferCommand() {
+    }
+
+    /**
+     * Checks whether the arguments ask for an import or export.
+     * @param args The command line arguments
+     * @return true if an import or export was requested
+     */
+    public static boolean isRequested(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--import=") || arg.startsWith("--export=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File importFile = null;
+        File exportFile = null;
+        TaskFormat format = null;
+        String listName = TaskLists.DEFAULT_LIST;
+        for (String arg : args) {
+            if (arg.startsWith("--import=")) {
+                importFile = new File(arg.substring("--import=".length()));
+            } else if (arg.startsWith("--export=")) {
+                exportFile = new File(arg.substring("--export=".length()));
+            } else if (arg.startsWith("--format=")) {
+                format = TaskFormat.valueOf(arg.substring("--format=".length()).trim().toUpperCase(Locale.ROOT));
+            } else if (arg.startsWith("--list=")) {
+                listName = arg.substring("--list=".length());
+            }
+        }
+        if ((importFile == null) == (exportFile == null)) {
+            throw new IllegalArgumentException("Usage: --import=FILE | --export=FILE [--format=ndjson|csv] [--list=NAME]");
+        }
+
+        try (TaskLists lists = new TaskLists(StorageConfig.fromSystemProperties())) {
+            if (importFile != null && lists.create(listName)) {
+                System.out.println("Created task list " + listName);
+            }
+            try (TaskLists.Lease lease = lists.acquire(listName)) {
+                transfer(lease, importFile, exportFile, format);
+            }
+        }
+    }
+
+    private static void transfer(TaskLists.Lease lease, File importFile, File exportFile, TaskFormat format) throws IOException {
+        TransferProgress result;
+        if (importFile != null) {
+            result = new TaskImporter(lease.getRepository()).importFrom(importFile,
+                    format != null ? format : TaskFormat.forFile(importFile), new ProgressPrinter());
+            System.out.println("Imported " + result + " into task list " + lease.getName());
+        } else {
+            result = new TaskExporter(lease.getRepository()).exportTo(exportFile,
+                    format != null ? format : TaskFormat.forFile(exportFile), new ProgressPrinter());
+            System.out.println("Exported " + result + " from task list " + lease.getName());
+        }
+    }
+
+    /**
+     * Prints the progress at most once per interval.
+     */
+    private static final class ProgressPrinter implements Consumer<TransferProgress> {
+        private long lastPrinted = System.nanoTime();
+
+        @Override
+        public void accept(TransferProgress progress) {
+            long now = System.nanoTime();
+            if (now - lastPrinted >= PROGRESS_INTERVAL_NANOS) {
+                lastPrinted = now;
+                System.out.println(progress);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.todoapp.transfer;
+
+import java.util.Locale;
+
+/**
+ * Progress of an import or export at one moment, and its result once it has finished.
+ */
+public final class TransferProgress {
+    private final long records;
+    private final long totalRecords;
+    private final long bytes;
+    private final long totalBytes;
+    private final long elapsedNanos;
+
+    /**
+     * @param records The number of tasks transferred so far
+     * @param totalRecords The number of tasks to transfer, or -1 if not known
+     * @param bytes The number of bytes read or written so far
+     * @param totalBytes The number of bytes to read, or -1 if not known
+     * @param elapsedNanos The time since the transfer started
+     */
+    public TransferProgress(long records, long totalRecords, long bytes, long totalBytes, long elapsedNanos) {
+        this.records = records;
+        this.totalRecords = totalRecords;
+        this.bytes = bytes;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the part of the transfer that is done, from the bytes of an import or the tasks of an export.
+     * @return A value from 0 to 1, or -1 if the total is not known
+     */
+    public double getFraction() {
+        if (totalBytes > 0) {
+            return Math.min(1, (double) bytes / totalBytes);
+        }
+        if (totalRecords > 0) {
+            return Math.min(1, (double) records / totalRecords);
+        }
+        return totalBytes == 0 || totalRecords == 0 ? 1 : -1;
+    }
+
+    /**
+     * Gets the average throughput in tasks.
+     * @return Tasks per second since the start
+     */
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Gets the average throughput in bytes.
+     * @return Bytes per second since the start
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        double fraction = getFraction();
+        return String.format(Locale.ROOT, "%,d tasks, %.1f MB%s in %.1f s (%,.0f tasks/s, %.1f MB/s)",
+                records, bytes / 1e6, fraction < 0 ? "" : String.format(Locale.ROOT, " (%.0f%%)", fraction * 100),
+                elapsedNanos / 1e9, getRecordsPerSecond(), getBytesPerSecond() / 1e6);
+    }
+}
@@ -0,0 +1,218 @@
+package com.todoapp;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskChange;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.database.TaskSnapshot;
+import com.todoapp.model.Task;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stress test for concurrent access to the task repositories.
+ * Several writer threads add, complete and delete their own tasks while reader threads
+ * continuously read the whole store. Afterwards the store, and the files after reopening it,
+ * must hold exactly the outcome every writer expects: no lost or duplicated updates.
+ * Replaying the published change events must arrive at the same outcome, and every snapshot a
+ * reader takes must agree with itself while the writers keep changing the tasks.
+ */
+public class ConcurrentRepositoryStressTest {
+    private static final int WRITERS = 8;
+    private static final int READERS = 2;
+    private static final int OPERATIONS_PER_WRITER = 2000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting concurrent repository stress test...");
+        Logger.getLogger("").setLevel(Level.WARNING);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.WARNING);
+
+        File directory = Files.createTempDirectory("todo-stress").toFile();
+        boolean passed = true;
+        passed &= run("memory", config("memory", null, StorageConfig.PersistenceMode.SNAPSHOT, false));
+        passed &= run("file, journal", config("file", new File(directory, "journal.json"),
+                StorageConfig.PersistenceMode.JOURNAL, false));
+        passed &= run("file, journal, write-behind", config("file", new File(directory, "journal-wb.json"),
+                StorageConfig.PersistenceMode.JOURNAL, true));
+        passed &= run("file, snapshot, write-behind", config("file", new File(directory, "snapshot-wb.json"),
+                StorageConfig.PersistenceMode.SNAPSHOT, true));
+
+        if (passed) {
+            System.out.println("\n🎉 All concurrent repository stress tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Concurrent repository stress test failed");
+            System.exit(1);
+        }
+    }
+
+    private static StorageConfig config(String engine, File file, StorageConfig.PersistenceMode mode, boolean writeBehind) {
+        StorageConfig config = new StorageConfig();
+        config.setEngine(engine);
+        config.setStoragePath(file == null ? null : file.getPath());
+        config.setPersistenceMode(mode);
+        config.setCompactionThreshold(5000);
+        config.setWriteBehind(writeBehind);
+        config.setFlushIntervalMillis(5);
+        return config;
+    }
+
+    private static boolean run(String name, StorageConfig config) throws Exception {
+        Map<Integer, Boolean> handedOut = new ConcurrentHashMap<>();
+        Map<Integer, Boolean> expected = new ConcurrentHashMap<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        TaskRepository repository = TaskRepositories.open(config);
+        // Changes to one task are published in order, so replaying them per task rebuilds the store
+        Map<Integer, Boolean> replayed = new ConcurrentHashMap<>();
+        repository.addChangeListener(changes -> {
+            for (TaskChange change : changes) {
+                if (change.getCurrent() == null) {
+                    replayed.remove(change.getTaskId());
+                } else {
+                    replayed.put(change.getTaskId(), change.getCurrent().isCompleted());
+                }
+            }
+        });
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            long seed = w;
+            writers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                Map<Integer, Boolean> own = new HashMap<>();
+                List<Integer> ownIds = new ArrayList<>();
+                await(startSignal);
+                for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                    int choice = random.nextInt(100);
+                    if (choice < 60 || ownIds.isEmpty()) {
+                        int id = repository.addTask("task " + seed + "-" + i);
+                        if (handedOut.putIfAbsent(id, true) != null) {
+                            failure.compareAndSet(null, "ID " + id + " was handed out twice");
+                        }
+                        own.put(id, false);
+                        ownIds.add(id);
+                    } else if (choice < 85) {
+                        int id = ownIds.get(random.nextInt(ownIds.size()));
+                        boolean completed = !own.get(id);
+                        repository.updateTaskCompletion(id, completed);
+                        own.put(id, completed);
+                    } else {
+                        int id = ownIds.remove(random.nextInt(ownIds.size()));
+                        repository.deleteTask(id);
+                        own.remove(id);
+                    }
+                }
+                // Every task this writer still owns must survive with its last completion status
+                expected.putAll(own);
+            }, "writer-" + w));
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                await(startSignal);
+                long previousVersion = -1;
+                while (writing.get()) {
+                    TaskSnapshot snapshot = repository.snapshot();
+                    if (snapshot.getVersion() < previousVersion) {
+                        failure.compareAndSet(null, "Snapshot version went back from " + previousVersion
+                                + " to " + snapshot.getVersion());
+                    }
+                    previousVersion = snapshot.getVersion();
+                    List<TaskRecord> records = snapshot.toList();
+                    long completed = records.stream().filter(TaskRecord::isCompleted).count();
+                    if (records.size() != snapshot.size() || completed != snapshot.count(TaskQuery.Status.COMPLETED)) {
+                        failure.compareAndSet(null, "Snapshot " + snapshot.getVersion() + " has " + records.size()
+                                + " tasks (" + completed + " completed) but counts " + snapshot.size()
+                                + " (" + snapshot.count(TaskQuery.Status.COMPLETED) + ")");
+                    }
+
+                    int previousId = Integer.MIN_VALUE;
+                    for (Task task : repository.getAllTasks()) {
+                        if (task.getId() <= previousId) {
+                            failure.compareAndSet(null, "Read tasks out of order or twice: " + previousId + ", " + task.getId());
+                        }
+                        previousId = task.getId();
+                    }
+                }
+            }, "reader-" + r));
+        }
+
+        writers.forEach(Thread::start);
+        readers.forEach(Thread::start);
+        startSignal.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        Map<Integer, Boolean> finalState = new HashMap<>(expected);
+        String problem = failure.get();
+        if (problem == null) {
+            problem = compare("in memory", finalState, repository.getAllTasks());
+        }
+        if (problem == null && !replayed.equals(finalState)) {
+            problem = "replaying the change events gave " + replayed.size() + " tasks instead of "
+                    + finalState.size() + " or different completion states";
+        }
+        repository.close();
+
+        if (problem == null && config.getStoragePath() != null) {
+            try (TaskRepository reopened = TaskRepositories.open(config)) {
+                problem = compare("after reopening", finalState, reopened.getAllTasks());
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (problem != null) {
+            System.err.println("❌ " + name + ": " + problem);
+            return false;
+        }
+        System.out.println("✓ " + name + ": " + (WRITERS * OPERATIONS_PER_WRITER) + " operations, "
+                + finalState.size() + " tasks left, " + millis + " ms");
+        return true;
+    }
+
+    private static String compare(String stage, Map<Integer, Boolean> expected, List<Task> actual) {
+        if (actual.size() != expected.size()) {
+            return stage + ": expected " + expected.size() + " tasks but found " + actual.size();
+        }
+        for (Task task : actual) {
+            Boolean completed = expected.get(task.getId());
+            if (completed == null) {
+                return stage + ": unexpected task " + task.getId();
+            }
+            if (completed != task.isCompleted()) {
+                return stage + ": task " + task.getId() + " should have completed=" + completed;
+            }
+        }
+        return null;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.todoapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskBatch;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskReminderListener;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.model.Task;
+import com.todoapp.server.TaskApiServer;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that due dates and reminders survive reopening in every storage format, that the due date
+ * index orders tasks and finds the overdue ones, and that each reminder is delivered once.
+ */
+public class DueDateReminderTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting due date and reminder test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        File directory = Files.createTempDirectory("todo-due").toFile();
+        boolean passed = true;
+
+        StorageConfig json = config(new File(directory, "snapshot/tasks.json"));
+        StorageConfig binary = config(new File(directory, "binary/tasks.bin"));
+        binary.setSnapshotFormat(StorageConfig.SnapshotFormat.BINARY);
+        StorageConfig journal = config(new File(directory, "journal/tasks.json"));
+        journal.setPersistenceMode(StorageConfig.PersistenceMode.JOURNAL);
+        passed &= checkPersistence(json, "JSON snapshot");
+        passed &= checkPersistence(binary, "binary snapshot");
+        passed &= checkPersistence(journal, "journal");
+
+        // Ordering and the overdue query
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        try (TaskRepository repository = TaskRepositories.open(config(new File(directory, "order/tasks.json")))) {
+            TaskBatch batch = new TaskBatch();
+            batch.add("No due date", false);
+            batch.add("Due in a week", false, now.plus(Duration.ofDays(7)), null);
+            batch.add("Overdue by a day", false, now.minus(Duration.ofDays(1)), null);
+            batch.add("Done, was due yesterday", true, now.minus(Duration.ofDays(1)), null);
+            batch.add("Overdue by an hour", false, now.minus(Duration.ofHours(1)), null);
+            int[] ids = repository.applyBatch(batch);
+
+            int[] byDueDate = repository.queryTaskIds(TaskQuery.of(TaskQuery.Status.ALL).orderBy(TaskQuery.Order.DUE_DATE));
+            passed &= check(Arrays.equals(byDueDate, new int[]{ids[2], ids[3], ids[4], ids[1], ids[0]}),
+                    "tasks are ordered by due date, tasks without one last");
+            int[] overdue = repository.queryTaskIds(TaskQuery.of(TaskQuery.Status.ALL).overdueAt(now));
+            passed &= check(Arrays.equals(overdue, new int[]{ids[2], ids[4]}), "only open tasks past their due date are overdue");
+            int[] activePage = repository.queryTaskIds(TaskQuery.of(TaskQuery.Status.ACTIVE)
+                    .orderBy(TaskQuery.Order.DUE_DATE).page(1, 2));
+            passed &= check(Arrays.equals(activePage, new int[]{ids[4], ids[1]}), "pages by due date skip other statuses");
+
+            repository.updateTaskSchedule(ids[0], now.minus(Duration.ofDays(2)), null);
+            repository.updateTaskSchedule(ids[2], null, null);
+            passed &= check(Arrays.equals(repository.queryTaskIds(TaskQuery.of(TaskQuery.Status.ALL).overdueAt(now)),
+                    new int[]{ids[0], ids[4]}), "changing a due date moves the task in the index");
+            passed &= check(repository.queryTasks(TaskQuery.of(TaskQuery.Status.ACTIVE).overdueAt(now).matching("hour"))
+                    .getTotalCount() == 1, "the overdue filter combines with search");
+            Task overdueTask = repository.getTask(ids[4]).orElseThrow();
+            passed &= check(overdueTask.isOverdue(now) && !repository.getTask(ids[3]).orElseThrow().isOverdue(now),
+                    "a task tells whether it is overdue");
+        }
+
+        // Reminders: one already due, one a moment away, and one on a completed task that never comes
+        StorageConfig reminding = config(new File(directory, "reminders/tasks.json"));
+        Queue<TaskRecord> reminded = new ConcurrentLinkedQueue<>();
+        Queue<TaskRecord> becameOverdue = new ConcurrentLinkedQueue<>();
+        TaskReminderListener listener = new TaskReminderListener() {
+            @Override
+            public void onReminders(List<TaskRecord> tasks) {
+                reminded.addAll(tasks);
+            }
+
+            @Override
+            public void onOverdue(List<TaskRecord> tasks) {
+                becameOverdue.addAll(tasks);
+            }
+        };
+        int[] ids;
+        try (TaskRepository repository = TaskRepositories.open(reminding)) {
+            Instant soon = Instant.now().plusMillis(1500);
+            TaskBatch batch = new TaskBatch();
+            batch.add("Reminded already", false, Instant.now().plus(Duration.ofDays(1)), Instant.now().minusSeconds(60));
+            batch.add("Reminded soon", false, soon, soon);
+            batch.add("Completed", true, Instant.now().minusSeconds(60), Instant.now().minusSeconds(60));
+            ids = repository.applyBatch(batch);
+            passed &= check(!waitFor(() -> !reminded.isEmpty(), 1200), "no reminder is delivered without a listener");
+
+            repository.addReminderListener(listener);
+            passed &= check(waitFor(() -> reminded.size() >= 2, 10_000) && reminded.size() == 2
+                            && reminded.stream().noneMatch(task -> task.getId() == ids[2]),
+                    "reminders of open tasks are delivered when they come");
+            passed &= check(waitFor(() -> !becameOverdue.isEmpty(), 5_000) && becameOverdue.size() == 1
+                            && becameOverdue.peek().getId() == ids[1],
+                    "a task whose due date passes is reported as overdue");
+            Task delivered = repository.getTask(ids[1]).orElseThrow();
+            passed &= check(delivered.getReminder() == null && delivered.getDueDate() != null,
+                    "a delivered reminder is cleared and the due date kept");
+            repository.removeReminderListener(listener);
+        }
+        reminded.clear();
+        try (TaskRepository reopened = TaskRepositories.open(reminding)) {
+            reopened.addReminderListener(listener);
+            passed &= check(!waitFor(() -> !reminded.isEmpty(), 2500)
+                            && reopened.getTask(ids[2]).orElseThrow().getReminder() != null,
+                    "a delivered reminder isn't delivered again after reopening");
+        }
+
+        // The HTTP API reads and writes the dates
+        try (TaskRepository repository = TaskRepositories.open(config(new File(directory, "api/tasks.json")))) {
+            TaskApiServer server = new TaskApiServer(repository, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            try {
+                String base = "http://127.0.0.1:" + server.getPort() + "/api/tasks";
+                HttpClient client = HttpClient.newHttpClient();
+                String due = now.minus(Duration.ofDays(1)).toString();
+                JsonNode created = OBJECT_MAPPER.readTree(send(client, HttpRequest.newBuilder(URI.create(base))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"description\": \"Pay rent\", \"dueDate\": \"" + due + "\"}"))).body());
+                passed &= check(due.equals(created.path("dueDate").asText()) && !created.has("reminder"),
+                        "POST accepts a due date");
+                send(client, HttpRequest.newBuilder(URI.create(base)).POST(HttpRequest.BodyPublishers.ofString("{\"description\": \"Whenever\"}")));
+                JsonNode overdue = OBJECT_MAPPER.readTree(send(client, HttpRequest.newBuilder(URI.create(base + "?overdue=true&order=due")).GET()).body());
+                passed &= check(overdue.get("total").asInt() == 1 && overdue.get("tasks").get(0).get("description").asText().equals("Pay rent"),
+                        "GET lists the overdue tasks");
+                // The version doesn't change when a due date passes, so its tag mustn't revalidate an overdue list
+                String etag = send(client, HttpRequest.newBuilder(URI.create(base)).GET()).headers().firstValue("ETag").orElse("");
+                HttpResponse<String> revalidated = send(client, HttpRequest.newBuilder(URI.create(base + "?overdue=true"))
+                        .header("If-None-Match", etag).GET());
+                passed &= check(!etag.isEmpty() && revalidated.statusCode() == 200 && revalidated.headers().firstValue("ETag").isEmpty(),
+                        "GET of the overdue tasks is never 304 and has no ETag");
+                int id = created.get("id").asInt();
+                String reminder = now.minus(Duration.ofDays(2)).toString();
+                JsonNode patched = OBJECT_MAPPER.readTree(send(client, HttpRequest.newBuilder(URI.create(base + "/" + id))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"reminder\": \"" + reminder + "\"}"))).body());
+                passed &= check(due.equals(patched.path("dueDate").asText()) && reminder.equals(patched.path("reminder").asText()),
+                        "PATCH of the reminder keeps the due date");
+                HttpResponse<String> cleared = send(client, HttpRequest.newBuilder(URI.create(base + "/" + id))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"dueDate\": null}")));
+                Task clearedTask = repository.getTask(id).orElseThrow();
+                passed &= check(cleared.statusCode() == 200 && clearedTask.getDueDate() == null && clearedTask.getReminder() != null,
+                        "PATCH clears a due date and keeps the reminder");
+                passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/" + id))
+                                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"dueDate\": \"tomorrow\"}"))).statusCode() == 400,
+                        "PATCH with an invalid date is 400");
+            } finally {
+                server.close();
+            }
+        }
+
+        if (passed) {
+            System.out.println("\n🎉 All due date and reminder tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Due date and reminder test failed");
+            System.exit(1);
+        }
+    }
+
+    private static boolean checkPersistence(StorageConfig config, String name) {
+        Instant due = Instant.parse("2030-05-01T09:30:00.123Z");
+        Instant reminder = Instant.parse("2030-04-30T09:30:00Z");
+        int[] ids;
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            TaskBatch batch = new TaskBatch();
+            batch.add("Dated", false, due, reminder);
+            batch.add("Undated", false);
+            batch.add("Rescheduled", true);
+            ids = repository.applyBatch(batch);
+            repository.updateTaskSchedule(ids[2], due.plusSeconds(60), null);
+        }
+        try (TaskRepository reopened = TaskRepositories.open(config)) {
+            Task dated = reopened.getTask(ids[0]).orElseThrow();
+            Task undated = reopened.getTask(ids[1]).orElseThrow();
+            Task rescheduled = reopened.getTask(ids[2]).orElseThrow();
+            return check(due.equals(dated.getDueDate()) && reminder.equals(dated.getReminder())
+                            && undated.getDueDate() == null && undated.getReminder() == null
+                            && due.plusSeconds(60).equals(rescheduled.getDueDate()) && rescheduled.isCompleted(),
+                    "due dates and reminders survive reopening a " + name);
+        }
+    }
+
+    private static StorageConfig config(File file) {
+        file.getParentFile().mkdirs();
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(file.getPath());
+        config.setMetricsJmx(false);
+        return config;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        return client.send(request.header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
@@ -51,7 +51,9 @@ public class JsonDatabaseTest {
             System.out.println("✓ Cleared " + clearedCount + " completed tasks");
             
             // Test deleting a specific task
-            jsonManager.deleteTask(task2Id);
+            if (!jsonManager.deleteTask(task2Id) || jsonManager.deleteTask(task2Id)) {
+                throw new IllegalStateException("Only the first deletion of a task should report it deleted");
+            }
             System.out.println("✓ Deleted task " + task2Id);
             
             // Final verification
@@ -0,0 +1,133 @@
+package com.todoapp;
+
+import com.todoapp.controller.PagedTaskList;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskChange;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.model.Task;
+import javafx.collections.ListChangeListener;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that the changes a paged task list reports put every task at the row the repository has it,
+ * also for tasks that come back with a lower ID than the tasks already shown.
+ */
+public class PagedTaskListTest {
+    private static final int TASK_COUNT = 250;
+    private static final int ARCHIVED_COUNT = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting paged task list test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        File directory = Files.createTempDirectory("todo-paged").toFile();
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(new File(directory, "tasks.json").getPath());
+        // Completed tasks are only archived by clearing them, so a restored task stays
+        config.setArchiveKeepCompleted(TASK_COUNT);
+        config.setMetricsJmx(false);
+        boolean passed = true;
+
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            List<String> descriptions = new ArrayList<>();
+            for (int i = 1; i <= TASK_COUNT; i++) {
+                descriptions.add("Paged task " + i);
+            }
+            repository.addTasks(descriptions);
+            Map<Integer, Boolean> completions = new HashMap<>();
+            for (int i = 1; i <= ARCHIVED_COUNT; i++) {
+                completions.put(i, true);
+            }
+            repository.updateCompletion(completions);
+            passed &= check(repository.clearCompletedTasks() == ARCHIVED_COUNT && repository.searchArchive("").size() == ARCHIVED_COUNT,
+                    "the completed tasks are archived");
+
+            List<TaskChange> pending = new ArrayList<>();
+            repository.addChangeListener(changes -> {
+                synchronized (pending) {
+                    pending.addAll(changes);
+                }
+            });
+            for (TaskQuery.Order order : new TaskQuery.Order[] {TaskQuery.Order.ID_ASCENDING, TaskQuery.Order.ID_DESCENDING}) {
+                TaskQuery query = TaskQuery.of(TaskQuery.Status.ALL).orderBy(order);
+                PagedTaskList list = new PagedTaskList(repository, query);
+                List<Integer> rows = ids(list);
+                AtomicInteger removedRows = new AtomicInteger();
+                list.addListener((ListChangeListener<Task>) change -> {
+                    while (change.next()) {
+                        if (change.wasPermutated() || change.wasUpdated()) {
+                            continue;
+                        }
+                        for (int i = 0; i < change.getRemovedSize(); i++) {
+                            rows.remove(change.getFrom());
+                        }
+                        removedRows.addAndGet(change.getRemovedSize());
+                        List<Integer> added = new ArrayList<>();
+                        for (Task task : change.getAddedSubList()) {
+                            added.add(task.getId());
+                        }
+                        rows.addAll(change.getFrom(), added);
+                    }
+                });
+
+                int restored = order == TaskQuery.Order.ID_ASCENDING ? 2 : 4;
+                repository.restoreArchivedTask(restored);
+                apply(list, pending);
+                passed &= check(rows.equals(expected(repository, query)) && rows.contains(restored),
+                        order + ": a restored task is shown at the row of its ID");
+
+                removedRows.set(0);
+                repository.addTask("Added at the end");
+                apply(list, pending);
+                passed &= check(rows.equals(expected(repository, query)) && removedRows.get() == 0,
+                        order + ": a new task is added without reading the list again");
+            }
+        }
+
+        if (passed) {
+            System.out.println("\n🎉 All paged task list tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Paged task list test failed");
+            System.exit(1);
+        }
+    }
+
+    private static void apply(PagedTaskList list, List<TaskChange> pending) {
+        List<TaskChange> changes;
+        synchronized (pending) {
+            changes = new ArrayList<>(pending);
+            pending.clear();
+        }
+        list.applyChanges(changes);
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        List<Integer> ids = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+    private static List<Integer> expected(TaskRepository repository, TaskQuery query) {
+        return Arrays.stream(repository.queryTaskIds(query)).boxed().collect(Collectors.toList());
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
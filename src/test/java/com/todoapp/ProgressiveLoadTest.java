@@ -0,0 +1,110 @@
+package com.todoapp;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskLists;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that opening a store hands its tasks to a load listener in chunks while they are read, so that
+ * the first tasks can be shown long before the store is open, and that the startup phases are recorded.
+ */
+public class ProgressiveLoadTest {
+    private static final int TASK_COUNT = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting progressive load test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        File directory = Files.createTempDirectory("todo-progressive").toFile();
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(new File(directory, "tasks.json").getPath());
+        config.setMetricsJmx(false);
+        boolean passed = true;
+
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            List<String> descriptions = new ArrayList<>(TASK_COUNT);
+            for (int i = 1; i <= TASK_COUNT; i++) {
+                descriptions.add("Progressive task " + i);
+            }
+            repository.addTasks(descriptions);
+        }
+
+        List<TaskRecord> received = new ArrayList<>();
+        AtomicInteger chunks = new AtomicInteger();
+        AtomicInteger largestChunk = new AtomicInteger();
+        AtomicLong firstChunkNanos = new AtomicLong();
+        StorageConfig listening = config.copy();
+        listening.setLoadListener(tasks -> {
+            firstChunkNanos.compareAndSet(0, System.nanoTime());
+            chunks.incrementAndGet();
+            largestChunk.accumulateAndGet(tasks.size(), Math::max);
+            received.addAll(tasks);
+        });
+        long start = System.nanoTime();
+        try (TaskRepository repository = TaskRepositories.open(listening)) {
+            long openNanos = System.nanoTime() - start;
+            long firstNanos = firstChunkNanos.get() - start;
+            System.out.printf("  first chunk after %.1f ms, open after %.1f ms%n", firstNanos / 1e6, openNanos / 1e6);
+            passed &= check(received.size() == TASK_COUNT && repository.getTaskCount() == TASK_COUNT
+                            && received.get(0).getId() == 1 && received.get(TASK_COUNT - 1).getId() == TASK_COUNT,
+                    "every task reaches the listener once, in stored order");
+            passed &= check(chunks.get() > 1 && largestChunk.get() < TASK_COUNT, "tasks arrive in chunks");
+            passed &= check(firstNanos * 2 < openNanos, "the first chunk arrives before half of the opening time");
+        }
+
+        // The listener is only called by the acquire that opens the list
+        config.setListsDirectory(new File(directory, "lists").getPath());
+        try (TaskLists lists = new TaskLists(config)) {
+            AtomicInteger loaded = new AtomicInteger();
+            try (TaskLists.Lease lease = lists.acquire(TaskLists.DEFAULT_LIST, tasks -> loaded.addAndGet(tasks.size()))) {
+                passed &= check(loaded.get() == TASK_COUNT && lease.getRepository().getTaskCount() == TASK_COUNT,
+                        "opening a list streams its tasks to the listener");
+                AtomicInteger again = new AtomicInteger();
+                try (TaskLists.Lease second = lists.acquire(TaskLists.DEFAULT_LIST, tasks -> again.addAndGet(tasks.size()))) {
+                    passed &= check(again.get() == 0 && second.getRepository() == lease.getRepository(),
+                            "a list that is already open isn't loaded again");
+                }
+            }
+        }
+
+        StartupMetrics startup = StartupMetrics.get();
+        startup.mark(StartupMetrics.Phase.UI_LOADED);
+        startup.mark(StartupMetrics.Phase.WINDOW_SHOWN);
+        startup.mark(StartupMetrics.Phase.FIRST_ROW);
+        long firstRow = startup.getTimeToFirstRowMillis();
+        Thread.sleep(20);
+        startup.mark(StartupMetrics.Phase.FIRST_ROW);
+        startup.tasksLoaded(TASK_COUNT);
+        startup.tasksLoaded(1);
+        passed &= check(firstRow >= startup.getMillis(StartupMetrics.Phase.WINDOW_SHOWN) && startup.getTimeToFirstRowMillis() == firstRow,
+                "only the first time a startup phase is reached counts");
+        passed &= check(startup.getPhaseMillis().keySet().equals(Set.of("UI_LOADED", "WINDOW_SHOWN", "FIRST_ROW", "TASKS_LOADED"))
+                        && startup.getLoadedTaskCount() == TASK_COUNT
+                        && startup.getMillis(StartupMetrics.Phase.TASKS_LOADED) >= firstRow + 20,
+                "every startup phase is timed from the start of the JVM");
+
+        if (passed) {
+            System.out.println("\n🎉 All progressive load tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Progressive load test failed");
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
@@ -0,0 +1,131 @@
+package com.todoapp;
+
+import com.todoapp.database.ShardedTaskRepositoryProvider;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks that the sharded engine writes only the shard of a changed task, removes empty shards, reserves
+ * IDs in its manifest without rewriting it for every add and loads every shard back, in both snapshot formats.
+ */
+public class ShardedStorageTest {
+    private static final int SHARD_SIZE = 100;
+    private static final int TASK_COUNT = 1000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting sharded storage test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+
+        boolean passed = true;
+        for (StorageConfig.SnapshotFormat format : StorageConfig.SnapshotFormat.values()) {
+            passed &= checkShards(format);
+        }
+
+        if (passed) {
+            System.out.println("\n🎉 All sharded storage tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Sharded storage test failed");
+            System.exit(1);
+        }
+    }
+
+    private static boolean checkShards(StorageConfig.SnapshotFormat format) throws Exception {
+        File directory = Files.createTempDirectory("todo-shards").toFile();
+        StorageConfig config = new StorageConfig();
+        config.setEngine(ShardedTaskRepositoryProvider.NAME);
+        config.setStoragePath(directory.getPath());
+        config.setSnapshotFormat(format);
+        config.setShardSize(SHARD_SIZE);
+        config.setMetricsJmx(false);
+        boolean passed = true;
+
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            List<String> descriptions = new ArrayList<>();
+            for (int i = 1; i < TASK_COUNT; i++) {
+                descriptions.add("task " + i);
+            }
+            repository.addTasks(descriptions);
+            passed &= check(shardFiles(directory).size() == TASK_COUNT / SHARD_SIZE,
+                    format + ": the tasks are split into " + TASK_COUNT / SHARD_SIZE + " shards");
+
+            // Every write replaces a file by renaming, so a rewritten shard has a new file key
+            Map<Path, Object> before = fileKeys(directory);
+            repository.updateTaskCompletion(7, true);
+            Map<Path, Object> after = fileKeys(directory);
+            long rewritten = before.keySet().stream().filter(path -> !before.get(path).equals(after.get(path))).count();
+            passed &= check(rewritten == 1 && !before.get(shard(directory, format, 0)).equals(after.get(shard(directory, format, 0))),
+                    format + ": updating a task rewrites only its shard");
+
+            int[] lastShard = new int[SHARD_SIZE];
+            for (int i = 0; i < SHARD_SIZE; i++) {
+                lastShard[i] = TASK_COUNT - SHARD_SIZE + i;
+            }
+            repository.deleteTasks(lastShard);
+            passed &= check(!Files.exists(shard(directory, format, TASK_COUNT / SHARD_SIZE - 1)),
+                    format + ": a shard is removed when its last task is deleted");
+        }
+
+        try (TaskRepository reopened = TaskRepositories.open(config)) {
+            int expected = TASK_COUNT - 1 - SHARD_SIZE;
+            passed &= check(reopened.getTaskCount() == expected
+                            && reopened.getTask(7).map(task -> task.isCompleted()).orElse(false)
+                            && reopened.getTask(TASK_COUNT - SHARD_SIZE - 1).isPresent(),
+                    format + ": every shard is loaded after reopening");
+            // The deleted shard held the highest IDs, which are not handed out again
+            int added = reopened.addTask("after reopening");
+            passed &= check(added >= TASK_COUNT,
+                    format + ": the next ID comes from the manifest, not from the remaining tasks");
+
+            Map<Path, Object> before = fileKeys(directory);
+            reopened.addTask("within the reserved IDs");
+            Map<Path, Object> after = fileKeys(directory);
+            passed &= check(before.keySet().stream().filter(path -> !before.get(path).equals(after.get(path))).count() == 1
+                            && !before.get(shard(directory, format, added / SHARD_SIZE)).equals(after.get(shard(directory, format, added / SHARD_SIZE))),
+                    format + ": adding a task rewrites only its shard, not the manifest");
+        }
+        return passed;
+    }
+
+    private static Path shard(File directory, StorageConfig.SnapshotFormat format, int index) {
+        String name = format.getDefaultFileName();
+        return directory.toPath().resolve(String.format("shard-%06d%s", index, name.substring(name.lastIndexOf('.'))));
+    }
+
+    private static List<Path> shardFiles(File directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory.toPath())) {
+            return files.filter(path -> path.getFileName().toString().matches("shard-\\d+\\.(json|bin)"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Map<Path, Object> fileKeys(File directory) throws IOException {
+        Map<Path, Object> keys = new HashMap<>();
+        List<Path> files = new ArrayList<>(shardFiles(directory));
+        files.add(directory.toPath().resolve("manifest.json"));
+        for (Path path : files) {
+            keys.put(path, Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+        }
+        return keys;
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
@@ -0,0 +1,163 @@
+package com.todoapp;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts several processes that add, complete, rename and delete tasks in the same shared {@code tasks.json}
+ * at the same time, and checks that no change of any process is lost, that no ID is handed out twice and
+ * that every process sees the changes of the others without writing. The journal is compacted often, so
+ * the processes also have to pick up the snapshots written by the others.
+ */
+public class SharedStoreStressTest {
+    private static final int PROCESS_COUNT = 4;
+    private static final int TASKS_PER_PROCESS = 300;
+    private static final int COMPACTION_THRESHOLD = 100;
+    private static final long SYNC_TIMEOUT_MILLIS = 30_000;
+
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        if (args.length == 2) {
+            System.exit(runWorker(new File(args[0]), Integer.parseInt(args[1])) ? 0 : 1);
+        }
+
+        System.out.println("Starting shared store stress test...");
+        File file = new File(Files.createTempDirectory("todo-shared").toFile(), "tasks.json");
+        List<Process> workers = new ArrayList<>();
+        for (int worker = 0; worker < PROCESS_COUNT; worker++) {
+            workers.add(new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"), SharedStoreStressTest.class.getName(),
+                    file.getPath(), Integer.toString(worker))
+                    .inheritIO()
+                    .start());
+        }
+        boolean passed = true;
+        for (Process worker : workers) {
+            passed &= worker.waitFor(2, TimeUnit.MINUTES) && worker.exitValue() == 0;
+        }
+        passed &= check(passed, PROCESS_COUNT + " processes finished and each saw the tasks of all the others");
+
+        try (TaskRepository repository = TaskRepositories.open(config(file))) {
+            Map<String, TaskRecord> tasks = new HashMap<>();
+            for (TaskRecord task : repository.snapshot().toList()) {
+                tasks.put(task.getDescription(), task);
+            }
+            passed &= check(repository.getTaskCount() == PROCESS_COUNT * expectedPerProcess() && tasks.size() == repository.getTaskCount(),
+                    "no task is lost and no ID is handed out twice");
+            boolean allKept = true;
+            for (int worker = 0; worker < PROCESS_COUNT; worker++) {
+                for (int i = 0; i < TASKS_PER_PROCESS; i++) {
+                    TaskRecord task = tasks.get(description(worker, i));
+                    allKept &= isDeleted(i) ? task == null : task != null && task.isCompleted() == isCompleted(i);
+                }
+            }
+            passed &= check(allKept, "every completion, rename and deletion of every process is kept");
+        }
+
+        // A change is in the journal before the journal is folded into the snapshot, so a failing fold must
+        // not report the change as failed; here the temporary snapshot can't be written
+        File blocked = new File(Files.createTempDirectory("todo-shared").toFile(), "tasks.json");
+        StorageConfig blockedConfig = config(blocked);
+        blockedConfig.setCompactionThreshold(5);
+        File tempFile = new File(blocked.getPath() + ".tmp");
+        boolean committed = true;
+        try (TaskRepository repository = TaskRepositories.open(blockedConfig)) {
+            // Made after opening, which removes a leftover temporary snapshot
+            committed &= tempFile.mkdir();
+            for (int i = 0; i < 12; i++) {
+                repository.addTask("kept " + i);
+            }
+        } catch (RuntimeException e) {
+            committed = false;
+        } finally {
+            committed &= tempFile.delete();
+        }
+        try (TaskRepository reopened = TaskRepositories.open(blockedConfig)) {
+            committed &= reopened.getTaskCount() == 12;
+        }
+        passed &= check(committed, "a failed compaction doesn't fail or lose the change that started it");
+
+        if (passed) {
+            System.out.println("\n🎉 All shared store stress tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Shared store stress test failed");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Makes the changes of one process, then waits until it sees the tasks of every process.
+     */
+    private static boolean runWorker(File file, int worker) throws Exception {
+        try (TaskRepository repository = TaskRepositories.open(config(file))) {
+            for (int i = 0; i < TASKS_PER_PROCESS; i++) {
+                int id = repository.addTask("w" + worker + " task " + i);
+                if (isCompleted(i)) {
+                    repository.updateTaskCompletion(id, true);
+                }
+                if (isRenamed(i)) {
+                    repository.updateTaskDescription(id, description(worker, i));
+                }
+                if (isDeleted(i)) {
+                    repository.deleteTask(id);
+                }
+            }
+            long deadline = System.currentTimeMillis() + SYNC_TIMEOUT_MILLIS;
+            while (repository.getTaskCount() != PROCESS_COUNT * expectedPerProcess() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            if (repository.getTaskCount() != PROCESS_COUNT * expectedPerProcess()) {
+                System.err.println("Process " + worker + " sees " + repository.getTaskCount() + " tasks");
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static StorageConfig config(File file) {
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(file.getPath());
+        config.setShared(true);
+        config.setCompactionThreshold(COMPACTION_THRESHOLD);
+        config.setMetricsJmx(false);
+        return config;
+    }
+
+    private static String description(int worker, int i) {
+        return "w" + worker + " task " + i + (isRenamed(i) ? " renamed" : "");
+    }
+
+    private static boolean isCompleted(int i) {
+        return i % 2 == 0;
+    }
+
+    private static boolean isRenamed(int i) {
+        return i % 3 == 0;
+    }
+
+    private static boolean isDeleted(int i) {
+        return i % 5 == 0;
+    }
+
+    private static int expectedPerProcess() {
+        return TASKS_PER_PROCESS - (TASKS_PER_PROCESS + 4) / 5;
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
@@ -0,0 +1,148 @@
+package com.todoapp;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that snapshot files survive interrupted writes and that damaged files are refused rather than
+ * loaded, in every format and at every durability level.
+ */
+public class SnapshotRecoveryTest {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting snapshot recovery test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+
+        boolean passed = true;
+        for (StorageConfig.SnapshotFormat format : StorageConfig.SnapshotFormat.values()) {
+            for (StorageConfig.PersistenceMode mode : StorageConfig.PersistenceMode.values()) {
+                for (StorageConfig.Durability durability : StorageConfig.Durability.values()) {
+                    passed &= checkReopen(format, mode, durability);
+                }
+            }
+            passed &= checkRecovery(format);
+        }
+        passed &= checkMissingDescription();
+
+        if (passed) {
+            System.out.println("\n🎉 All snapshot recovery tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Snapshot recovery test failed");
+            System.exit(1);
+        }
+    }
+
+    private static StorageConfig config(File file, StorageConfig.SnapshotFormat format,
+                                        StorageConfig.PersistenceMode mode, StorageConfig.Durability durability) {
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(file.getPath());
+        config.setSnapshotFormat(format);
+        config.setPersistenceMode(mode);
+        config.setDurability(durability);
+        config.setCompactionThreshold(50);
+        config.setMetricsJmx(false);
+        return config;
+    }
+
+    /**
+     * Writes enough changes to compact the journal, and checks that all of them are there after reopening.
+     */
+    private static boolean checkReopen(StorageConfig.SnapshotFormat format, StorageConfig.PersistenceMode mode,
+                                       StorageConfig.Durability durability) throws Exception {
+        File directory = Files.createTempDirectory("todo-durability").toFile();
+        StorageConfig config = config(new File(directory, format.getDefaultFileName()), format, mode, durability);
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            for (int i = 0; i < 120; i++) {
+                int id = repository.addTask("task " + i);
+                repository.updateTaskCompletion(id, i % 2 == 0);
+            }
+        }
+        try (TaskRepository reopened = TaskRepositories.open(config)) {
+            return check(reopened.getTaskCount() == 120 && reopened.getTask(120).map(task -> !task.isCompleted()).orElse(false),
+                    format + ", " + mode + ", " + durability + ": every change is there after reopening");
+        }
+    }
+
+    /**
+     * Simulates a crash between writing the checksum of a new snapshot and renaming it into place, and
+     * damage to the snapshot file.
+     */
+    private static boolean checkRecovery(StorageConfig.SnapshotFormat format) throws Exception {
+        File directory = Files.createTempDirectory("todo-recovery").toFile();
+        Path snapshot = new File(directory, format.getDefaultFileName()).toPath();
+        Path checksum = Path.of(snapshot + ".crc32c");
+        Path temp = Path.of(snapshot + ".tmp");
+        StorageConfig config = config(snapshot.toFile(), format, StorageConfig.PersistenceMode.SNAPSHOT,
+                StorageConfig.Durability.FLUSH);
+        boolean passed = true;
+
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            repository.addTask("first");
+        }
+        Path oldSnapshot = Files.copy(snapshot, directory.toPath().resolve("old"));
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            repository.addTask("second");
+        }
+        // The new snapshot and its checksum are written, but the rename didn't happen
+        Files.move(snapshot, temp);
+        Files.copy(oldSnapshot, snapshot);
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            passed &= check(repository.getTaskCount() == 2 && !Files.exists(temp),
+                    format + ": an interrupted rename is completed on load");
+        }
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x20;
+        Files.write(snapshot, bytes);
+        boolean refused;
+        try {
+            TaskRepositories.open(config).close();
+            refused = false;
+        } catch (RuntimeException e) {
+            refused = true;
+        }
+        passed &= check(refused, format + ": a damaged snapshot is refused");
+
+        // Deleting the checksum accepts the file as it is, like a file from before checksums were kept
+        Files.write(snapshot, Files.readAllBytes(oldSnapshot));
+        Files.delete(checksum);
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            passed &= check(repository.getTaskCount() == 1, format + ": a snapshot without a checksum is loaded");
+            repository.addTask("third");
+        }
+        passed &= check(Files.exists(checksum), format + ": the next write adds the checksum");
+        return passed;
+    }
+
+    /**
+     * Moves a task without a description from the JSON snapshot to the binary one, and checks that it
+     * doesn't come back with an empty description.
+     */
+    private static boolean checkMissingDescription() throws Exception {
+        File directory = Files.createTempDirectory("todo-null").toFile();
+        Files.writeString(directory.toPath().resolve(StorageConfig.SnapshotFormat.JSON.getDefaultFileName()),
+                "[{\"id\": 1, \"description\": null, \"completed\": true}, {\"id\": 2, \"description\": \"\", \"completed\": false}]");
+        StorageConfig config = config(new File(directory, StorageConfig.SnapshotFormat.BINARY.getDefaultFileName()),
+                StorageConfig.SnapshotFormat.BINARY, StorageConfig.PersistenceMode.SNAPSHOT, StorageConfig.Durability.FLUSH);
+        // Opening migrates the JSON snapshot
+        TaskRepositories.open(config).close();
+        try (TaskRepository reopened = TaskRepositories.open(config)) {
+            return check(reopened.getTask(1).map(task -> task.getDescription() == null && task.isCompleted()).orElse(false)
+                            && reopened.getTask(2).map(task -> "".equals(task.getDescription())).orElse(false),
+                    "BINARY: a missing description stays missing and an empty one stays empty");
+        }
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
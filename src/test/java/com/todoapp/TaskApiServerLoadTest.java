@@ -0,0 +1,235 @@
+package com.todoapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todoapp.database.InMemoryTaskRepository;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.server.TaskApiServer;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the endpoints of the headless task API and then measures its throughput with a local load client.
+ * Optional arguments: the number of client threads and the duration of the load in seconds.
+ */
+public class TaskApiServerLoadTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting task API test...");
+        Logger.getLogger("").setLevel(Level.WARNING);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.WARNING);
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        TaskRepository repository = new InMemoryTaskRepository();
+        TaskApiServer server = new TaskApiServer(repository, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+        String base = "http://127.0.0.1:" + server.getPort() + "/api/tasks";
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        boolean passed = true;
+
+        try {
+            // Create, read, update and delete
+            HttpResponse<String> created = send(client, HttpRequest.newBuilder(URI.create(base))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"description\": \"Buy groceries\"}")));
+            int id = OBJECT_MAPPER.readTree(created.body()).get("id").asInt();
+            passed &= check(created.statusCode() == 201 && created.headers().firstValue("Location")
+                    .orElse("").endsWith("/api/tasks/" + id), "POST creates a task");
+
+            HttpResponse<String> patched = send(client, HttpRequest.newBuilder(URI.create(base + "/" + id))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"completed\": true, \"description\": \"Buy milk\"}")));
+            JsonNode patchedTask = OBJECT_MAPPER.readTree(patched.body());
+            passed &= check(patched.statusCode() == 200 && patchedTask.get("completed").asBoolean()
+                    && patchedTask.get("description").asText().equals("Buy milk"), "PATCH changes both fields");
+
+            HttpResponse<String> single = send(client, HttpRequest.newBuilder(URI.create(base + "/" + id)).GET());
+            passed &= check(single.statusCode() == 200 && single.body().contains("Buy milk"), "GET returns one task");
+            passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/999999")).GET()).statusCode() == 404,
+                    "GET of an unknown task is 404");
+            passed &= check(send(client, HttpRequest.newBuilder(URI.create(base))
+                    .POST(HttpRequest.BodyPublishers.ofString("{}"))).statusCode() == 400, "POST without description is 400");
+            // The HTTP client refuses to send a malformed escape, so the request is written by hand
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                socket.getOutputStream().write("GET /api/tasks?q=%zz HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                passed &= check(readResponse(new BufferedInputStream(socket.getInputStream())) == 400,
+                        "GET with a malformed escape is 400");
+            }
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                // The server answers once it has read part of the body and then closes the connection, so the
+                // body is written by another thread that stops when the connection is gone
+                OutputStream out = socket.getOutputStream();
+                byte[] body = new byte[2_000_000];
+                Arrays.fill(body, (byte) ' ');
+                out.write(("POST /api/tasks HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                Thread writer = new Thread(() -> {
+                    try {
+                        out.write(body);
+                    } catch (IOException e) {
+                        // The server stopped reading
+                    }
+                });
+                writer.start();
+                passed &= check(readResponse(new BufferedInputStream(socket.getInputStream())) == 413,
+                        "POST of a body over the size limit is 413");
+            }
+            passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/" + id)).DELETE()).statusCode() == 204,
+                    "DELETE removes a task");
+            passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/" + id)).DELETE()).statusCode() == 404,
+                    "DELETE of a deleted task is 404");
+            boolean oneDeletion = true;
+            for (int i = 0; i < 20; i++) {
+                int raced = repository.addTask("Deleted twice " + i);
+                List<CompletableFuture<HttpResponse<String>>> deletions = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    deletions.add(client.sendAsync(HttpRequest.newBuilder(URI.create(base + "/" + raced)).DELETE().build(),
+                            HttpResponse.BodyHandlers.ofString()));
+                }
+                long deleted = 0;
+                for (CompletableFuture<HttpResponse<String>> deletion : deletions) {
+                    deleted += deletion.get().statusCode() == 204 ? 1 : 0;
+                }
+                oneDeletion &= deleted == 1;
+            }
+            passed &= check(oneDeletion, "Of concurrent DELETEs of a task exactly one is 204");
+
+            // Pagination and filters
+            List<String> descriptions = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                descriptions.add("Load task " + i);
+            }
+            repository.addTasks(descriptions);
+            HttpResponse<String> page = send(client, HttpRequest.newBuilder(URI.create(base + "?offset=200&limit=100")).GET());
+            JsonNode pageJson = OBJECT_MAPPER.readTree(page.body());
+            passed &= check(pageJson.get("total").asInt() == 250 && pageJson.get("tasks").size() == 50
+                    && !pageJson.get("hasNext").asBoolean(), "GET lists the last page");
+            JsonNode search = OBJECT_MAPPER.readTree(send(client, HttpRequest.newBuilder(
+                    URI.create(base + "?q=task+12&status=active&order=desc")).GET()).body());
+            passed &= check(search.get("total").asInt() == 11
+                    && search.get("tasks").get(0).get("description").asText().equals("Load task 129"), "GET searches and orders");
+
+            // Conditional GET
+            String etag = page.headers().firstValue("ETag").orElse("");
+            HttpResponse<String> notModified = send(client, HttpRequest.newBuilder(URI.create(base + "?offset=200&limit=100"))
+                    .header("If-None-Match", etag).GET());
+            passed &= check(!etag.isEmpty() && notModified.statusCode() == 304 && notModified.body().isEmpty(),
+                    "GET with the current ETag is 304");
+            repository.addTask("Changes the version");
+            passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "?offset=200&limit=100"))
+                    .header("If-None-Match", etag).GET()).statusCode() == 200, "GET after a change is 200");
+
+            // Load: every client keeps one connection open and alternates between revalidating a
+            // cached page and fetching a page
+            LongAdder requests = new LongAdder();
+            LongAdder failures = new LongAdder();
+            String currentEtag = send(client, HttpRequest.newBuilder(URI.create(base)).GET())
+                    .headers().firstValue("ETag").orElse("");
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < clients; t++) {
+                int offset = t * 7 % 250;
+                Thread thread = new Thread(() -> {
+                    byte[] revalidate = ("GET /api/tasks HTTP/1.1\r\nHost: localhost\r\nIf-None-Match: "
+                            + currentEtag + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+                    byte[] fetch = ("GET /api/tasks?limit=20&offset=" + offset + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                            .getBytes(StandardCharsets.US_ASCII);
+                    try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                        socket.setTcpNoDelay(true);
+                        OutputStream out = socket.getOutputStream();
+                        InputStream in = new BufferedInputStream(socket.getInputStream());
+                        for (long count = 0; System.nanoTime() < end; count++) {
+                            boolean conditional = count % 2 == 0;
+                            out.write(conditional ? revalidate : fetch);
+                            out.flush();
+                            if (readResponse(in) != (conditional ? 304 : 200)) {
+                                failures.increment();
+                            }
+                            requests.increment();
+                        }
+                    } catch (IOException e) {
+                        failures.increment();
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            System.out.printf("  %d requests from %d clients in %d s: %.0f requests/s, %d failed%n",
+                    requests.sum(), clients, seconds, requests.sum() / (double) seconds, failures.sum());
+            passed &= check(failures.sum() == 0, "Load completed without errors");
+        } finally {
+            server.close();
+            repository.close();
+        }
+
+        if (passed) {
+            System.out.println("\n🎉 All task API tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Task API test failed");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads one response from a kept-alive connection.
+     * @return The status code
+     */
+    private static int readResponse(InputStream in) throws IOException {
+        int status = -1;
+        int contentLength = 0;
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            if (b != '\n') {
+                line.append((char) b);
+                continue;
+            }
+            String header = line.toString().trim();
+            line.setLength(0);
+            if (header.isEmpty()) {
+                break;
+            }
+            if (status < 0) {
+                status = Integer.parseInt(header.split(" ")[1]);
+            } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+        in.readNBytes(contentLength);
+        return status;
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        return client.send(request.header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
@@ -0,0 +1,124 @@
+package com.todoapp;
+
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskQuery;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepositories;
+import com.todoapp.database.TaskRepository;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that completed tasks beyond the configured number are moved to the archive, stay out of the
+ * working set after reopening, and can be searched and restored, also after a torn append.
+ */
+public class TaskArchiveTest {
+    private static final int TASK_COUNT = 100;
+    private static final int COMPLETED_COUNT = 60;
+    private static final int KEEP_COMPLETED = 10;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting task archive test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        File directory = Files.createTempDirectory("todo-archive").toFile();
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(new File(directory, "tasks.json").getPath());
+        config.setArchiveKeepCompleted(KEEP_COMPLETED);
+        config.setMetricsJmx(false);
+        boolean passed = true;
+
+        try (TaskRepository repository = TaskRepositories.open(config)) {
+            List<String> descriptions = new ArrayList<>();
+            for (int i = 1; i <= TASK_COUNT; i++) {
+                descriptions.add("task " + i);
+            }
+            repository.addTasks(descriptions);
+            Map<Integer, Boolean> completions = new HashMap<>();
+            for (int i = 1; i <= COMPLETED_COUNT; i++) {
+                completions.put(i, true);
+            }
+            repository.updateCompletion(completions);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (repository.countTasks(TaskQuery.Status.COMPLETED) > KEEP_COMPLETED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            passed &= check(repository.countTasks(TaskQuery.Status.COMPLETED) == KEEP_COMPLETED
+                            && repository.getTaskCount() == TASK_COUNT - COMPLETED_COUNT + KEEP_COMPLETED,
+                    "completed tasks beyond the kept number leave the working set");
+            passed &= check(!repository.getTask(1).isPresent() && repository.getTask(COMPLETED_COUNT).isPresent(),
+                    "the oldest completed tasks are archived first");
+        }
+
+        File archiveDirectory = new File(directory, "tasks.json.archive");
+        try (TaskRepository reopened = TaskRepositories.open(config)) {
+            passed &= check(reopened.getTaskCount() == TASK_COUNT - COMPLETED_COUNT + KEEP_COMPLETED,
+                    "archived tasks aren't loaded after reopening");
+            List<TaskRecord> archived = reopened.searchArchive("");
+            passed &= check(archived.size() == COMPLETED_COUNT - KEEP_COMPLETED && archived.get(0).isCompleted(),
+                    "every archived task is found in the archive");
+            passed &= check(ids(reopened.searchArchive("TASK 4")).size() == 11 && ids(reopened.searchArchive("task 7")).equals(List.of(7)),
+                    "archive search matches word prefixes like the working set search");
+
+            passed &= check(reopened.restoreArchivedTask(7).equals(OptionalInt.of(7))
+                            && reopened.getTask(7).map(task -> task.getDescription().equals("task 7")).orElse(false),
+                    "a restored task returns with its ID");
+            passed &= check(reopened.searchArchive("task 7").isEmpty() && !reopened.restoreArchivedTask(7).isPresent(),
+                    "a restored task is no longer in the archive");
+        }
+
+        // A crash in the middle of an append leaves a partial block at the end of the segment
+        File[] segments = archiveDirectory.listFiles((dir, name) -> name.endsWith(".arc"));
+        try (FileOutputStream out = new FileOutputStream(segments[0], true)) {
+            out.write(new byte[] {0, 0, 1, 0, 31, -117});
+        }
+        try (TaskRepository reopened = TaskRepositories.open(config)) {
+            // The restored task is one completed task too many, which is archived in the background after
+            // opening and may already be back in the archive
+            List<Integer> archivedIds = ids(reopened.searchArchive(""));
+            archivedIds.remove(Integer.valueOf(7));
+            passed &= check(archivedIds.size() == COMPLETED_COUNT - KEEP_COMPLETED - 1,
+                    "a torn block at the end of the archive is skipped");
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (reopened.countTasks(TaskQuery.Status.COMPLETED) > KEEP_COMPLETED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            int cleared = reopened.clearCompletedTasks();
+            passed &= check(cleared == KEEP_COMPLETED && reopened.countTasks(TaskQuery.Status.COMPLETED) == 0,
+                    "clearing the completed tasks moves them to the archive");
+            passed &= check(reopened.searchArchive("").size() == COMPLETED_COUNT,
+                    "appends after a torn block are readable");
+        }
+
+        if (passed) {
+            System.out.println("\n🎉 All task archive tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Task archive test failed");
+            System.exit(1);
+        }
+    }
+
+    private static List<Integer> ids(List<TaskRecord> tasks) {
+        List<Integer> ids = new ArrayList<>();
+        for (TaskRecord task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
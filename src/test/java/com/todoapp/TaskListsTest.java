@@ -0,0 +1,246 @@
+package com.todoapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todoapp.database.StorageConfig;
+import com.todoapp.database.TaskLists;
+import com.todoapp.server.TaskApiServer;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that many named lists can be used through a small cache of open lists: the least recently used
+ * lists are flushed and closed beyond the open list limit and the memory budget, lists in use are never
+ * closed, and a closed list comes back with all of its tasks. Also checks the list endpoints of the API.
+ */
+public class TaskListsTest {
+    private static final int LIST_COUNT = 200;
+    private static final int MAX_OPEN = 8;
+    private static final int TASKS_PER_LIST = 20;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting task lists test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        File directory = Files.createTempDirectory("todo-lists").toFile();
+        StorageConfig config = new StorageConfig();
+        config.setStoragePath(new File(directory, "tasks.json").getPath());
+        config.setListsDirectory(new File(directory, "lists").getPath());
+        config.setMaxOpenLists(MAX_OPEN);
+        // Unflushed changes must survive a list being closed to make room
+        config.setWriteBehind(true);
+        config.setFlushIntervalMillis(10_000);
+        config.setMetricsJmx(false);
+        boolean passed = true;
+
+        try (TaskLists lists = new TaskLists(config)) {
+            passed &= check(lists.getNames().equals(List.of(TaskLists.DEFAULT_LIST)), "a new data directory has only the default list");
+            passed &= check(rejects(lists, "..") && rejects(lists, "a/b") && rejects(lists, "") && !lists.create(TaskLists.DEFAULT_LIST),
+                    "invalid and reserved list names are rejected");
+
+            // Many threads fill many lists at once through the small cache
+            for (int list = 0; list < LIST_COUNT; list++) {
+                lists.create(name(list));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            List<Future<?>> fills = new ArrayList<>();
+            for (int list = 0; list < LIST_COUNT; list++) {
+                String name = name(list);
+                fills.add(executor.submit(() -> {
+                    for (int i = 0; i < TASKS_PER_LIST; i++) {
+                        try (TaskLists.Lease lease = lists.acquire(name)) {
+                            lease.getRepository().addTask(name + " task " + i);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> fill : fills) {
+                fill.get();
+            }
+            executor.shutdown();
+            passed &= check(lists.getNames().size() == LIST_COUNT + 1, LIST_COUNT + " lists are created");
+            passed &= check(lists.getOpenCount() <= MAX_OPEN, "no more than " + MAX_OPEN + " lists stay open");
+
+            boolean allKept = true;
+            for (int list = 0; list < LIST_COUNT; list++) {
+                try (TaskLists.Lease lease = lists.acquire(name(list))) {
+                    allKept &= lease.getRepository().getTaskCount() == TASKS_PER_LIST
+                            && lease.getRepository().getTask(1).map(task -> task.getDescription().startsWith(lease.getName() + " ")).orElse(false);
+                }
+            }
+            passed &= check(allKept, "every list keeps its own tasks after being closed and opened again");
+
+            TaskLists.Lease held = lists.acquire(name(0));
+            for (int list = 1; list <= MAX_OPEN * 2; list++) {
+                lists.acquire(name(list)).close();
+            }
+            passed &= check(lists.isOpen(name(0)) && held.getRepository().getTaskCount() == TASKS_PER_LIST,
+                    "a list in use is not closed however many others are used");
+            passed &= check(rejectsDeleteInUse(lists, name(0)), "a list in use can't be deleted");
+            held.close();
+            held.close();
+
+            passed &= check(lists.delete(name(0)) && !lists.exists(name(0)) && !lists.delete(name(0)),
+                    "a list is deleted with its files");
+
+            // Another thread keeps opening a list while it is deleted
+            boolean deletedCleanly = true;
+            ExecutorService racer = Executors.newSingleThreadExecutor();
+            for (int round = 0; round < 20 && deletedCleanly; round++) {
+                lists.create("racing");
+                try (TaskLists.Lease lease = lists.acquire("racing")) {
+                    lease.getRepository().addTask("racing task " + round);
+                }
+                AtomicBoolean stop = new AtomicBoolean();
+                Future<?> opening = racer.submit(() -> {
+                    while (!stop.get()) {
+                        try (TaskLists.Lease lease = lists.acquire("racing")) {
+                            lease.getRepository().getTaskCount();
+                        } catch (IllegalArgumentException e) {
+                            // Deleted already
+                        }
+                    }
+                    return null;
+                });
+                boolean deleted = false;
+                while (!deleted) {
+                    try {
+                        deleted = lists.delete("racing");
+                    } catch (IllegalStateException e) {
+                        // The other thread holds a lease for a moment
+                    } catch (RuntimeException e) {
+                        deletedCleanly = false;
+                        break;
+                    }
+                }
+                boolean gone = !new File(config.getListsDirectory(), "racing").exists() && !lists.isOpen("racing");
+                stop.set(true);
+                try {
+                    opening.get();
+                } catch (ExecutionException e) {
+                    deletedCleanly = false;
+                }
+                deletedCleanly &= gone;
+                if (new File(config.getListsDirectory(), "racing").exists()) {
+                    lists.delete("racing");
+                }
+            }
+            racer.shutdown();
+            passed &= check(deletedCleanly, "a list that is being deleted can't be opened again meanwhile");
+
+            // Names that differ only in case are one list
+            boolean sameList = lists.create("Work") && !lists.create("work") && lists.exists("WORK");
+            try (TaskLists.Lease upper = lists.acquire("Work"); TaskLists.Lease lower = lists.acquire("work")) {
+                upper.getRepository().addTask("cased task");
+                sameList &= lower.getRepository() == upper.getRepository() && lower.getName().equals("Work");
+            }
+            sameList &= lists.getNames().stream().filter(name -> name.equalsIgnoreCase("work")).count() == 1;
+            try (TaskLists.Lease lease = lists.acquire("DEFAULT")) {
+                sameList &= lease.getName().equals(TaskLists.DEFAULT_LIST);
+            }
+            passed &= check(sameList, "names that differ only in case are the same list");
+            passed &= check(lists.delete("wORK") && !lists.exists("Work") && !new File(config.getListsDirectory(), "Work").exists(),
+                    "a list is deleted by its name in any case");
+        }
+
+        // A list too large for the memory budget is closed as soon as nobody uses it
+        StorageConfig budgetConfig = config.copy();
+        budgetConfig.setListsMemoryBudgetMB(1);
+        try (TaskLists lists = new TaskLists(budgetConfig)) {
+            lists.create("large");
+            try (TaskLists.Lease lease = lists.acquire("large")) {
+                List<String> descriptions = new ArrayList<>();
+                for (int i = 0; i < 5000; i++) {
+                    descriptions.add("large task " + i);
+                }
+                lease.getRepository().addTasks(descriptions);
+            }
+            passed &= check(!lists.isOpen("large"), "lists beyond the memory budget are closed");
+            try (TaskLists.Lease lease = lists.acquire("large")) {
+                passed &= check(lease.getRepository().getTaskCount() == 5000, "a list closed for the budget keeps its tasks");
+            }
+        }
+
+        try (TaskLists lists = new TaskLists(config)) {
+            TaskApiServer server = new TaskApiServer(lists, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            String base = "http://127.0.0.1:" + server.getPort();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            try {
+                passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists/Work%20items"))
+                        .PUT(HttpRequest.BodyPublishers.noBody())).statusCode() == 201, "PUT creates a list");
+                HttpResponse<String> created = send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists/Work%20items/tasks"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"description\": \"Write report\"}")));
+                passed &= check(created.statusCode() == 201 && created.headers().firstValue("Location").orElse("")
+                        .equals("/api/lists/Work%20items/tasks/1"), "POST adds a task to a list");
+                HttpResponse<String> page = send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists/Work%20items/tasks")).GET());
+                passed &= check(OBJECT_MAPPER.readTree(page.body()).get("total").asInt() == 1
+                        && send(client, HttpRequest.newBuilder(URI.create(base + "/api/tasks")).GET()).body().contains("\"total\":0"),
+                        "each list has its own tasks");
+                HttpResponse<String> names = send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists")).GET());
+                passed &= check(OBJECT_MAPPER.readTree(names.body()).get("lists").toString().contains("\"Work items\""),
+                        "GET lists the names");
+                passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists/missing/tasks")).GET()).statusCode() == 404
+                        && send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists/default"))
+                        .DELETE()).statusCode() == 400, "unknown lists are 404 and the default list can't be deleted");
+                passed &= check(send(client, HttpRequest.newBuilder(URI.create(base + "/api/lists/Work%20items"))
+                        .DELETE()).statusCode() == 204 && !lists.exists("Work items"), "DELETE removes a list");
+            } finally {
+                server.close();
+            }
+        }
+
+        if (passed) {
+            System.out.println("\n🎉 All task lists tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Task lists test failed");
+            System.exit(1);
+        }
+    }
+
+    private static String name(int list) {
+        return "list-" + list;
+    }
+
+    private static boolean rejects(TaskLists lists, String name) {
+        try {
+            lists.create(name);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static boolean rejectsDeleteInUse(TaskLists lists, String name) {
+        try {
+            lists.delete(name);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
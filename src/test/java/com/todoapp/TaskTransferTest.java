@@ -0,0 +1,135 @@
+package com.todoapp;
+
+import com.todoapp.database.InMemoryTaskRepository;
+import com.todoapp.database.TaskBatch;
+import com.todoapp.database.TaskRecord;
+import com.todoapp.database.TaskRepository;
+import com.todoapp.transfer.TaskExporter;
+import com.todoapp.transfer.TaskFormat;
+import com.todoapp.transfer.TaskImporter;
+import com.todoapp.transfer.TransferProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that CSV and NDJSON files are imported completely and in order whatever the chunk size, and that
+ * an export imports back into the same tasks.
+ */
+public class TaskTransferTest {
+    private static final int TASK_COUNT = 5000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Starting task transfer test...");
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Logger.getLogger("").getHandlers()[0].setLevel(Level.SEVERE);
+        File directory = Files.createTempDirectory("todo-transfer").toFile();
+        boolean passed = true;
+
+        // Quotes, commas, line breaks and non-ASCII text inside fields, CRLF line ends and a byte order mark
+        File csv = new File(directory, "tracker.csv");
+        StringBuilder text = new StringBuilder("\uFEFFkey,title,Done\r\n");
+        for (int i = 0; i < TASK_COUNT; i++) {
+            text.append("T-").append(i).append(",\"task ").append(i)
+                    .append(i % 7 == 0 ? ", with \"\"quotes\"\"\nand a second line ✓" : "")
+                    .append("\",").append(i % 3 == 0 ? "yes" : "").append("\r\n");
+        }
+        Files.write(csv.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<TaskRecord> expected;
+        try (TaskRepository repository = new InMemoryTaskRepository()) {
+            List<TransferProgress> progress = new ArrayList<>();
+            // Chunks far smaller than many records exercise the record boundaries
+            TransferProgress result = new TaskImporter(repository, 97, 4).importFrom(csv, TaskFormat.CSV, progress::add);
+            expected = repository.snapshot().toList();
+            passed &= check(result.getRecords() == TASK_COUNT && expected.size() == TASK_COUNT,
+                    "CSV import adds every record");
+            passed &= check(expected.get(7).getDescription().equals("task 7, with \"quotes\"\nand a second line ✓")
+                            && expected.get(9).isCompleted() && !expected.get(10).isCompleted(),
+                    "quoted fields and the status column are read");
+            passed &= check(isOrdered(expected), "the tasks keep the order of the file");
+            passed &= check(!progress.isEmpty() && progress.get(progress.size() - 1).getBytes() == csv.length(),
+                    "progress is reported up to the whole file");
+
+            for (TaskFormat format : TaskFormat.values()) {
+                File exported = new File(directory, "export" + format.getExtension());
+                TransferProgress exportResult = new TaskExporter(repository).exportTo(exported);
+                passed &= check(exportResult.getRecords() == TASK_COUNT && exportResult.getBytes() == exported.length(),
+                        format + " export writes every task");
+
+                try (TaskRepository reimported = new InMemoryTaskRepository()) {
+                    new TaskImporter(reimported, 1 << 12, 2).importFrom(exported);
+                    passed &= check(sameTasks(expected, reimported.snapshot().toList()),
+                            format + " export imports back into the same tasks");
+                }
+            }
+        }
+
+        // A missing description and an empty one are different tasks in either format
+        try (TaskRepository repository = new InMemoryTaskRepository()) {
+            repository.applyBatch(new TaskBatch().add(null, true).add("", false).add("text", false));
+            for (TaskFormat format : TaskFormat.values()) {
+                File exported = new File(directory, "descriptions" + format.getExtension());
+                new TaskExporter(repository).exportTo(exported);
+                try (TaskRepository reimported = new InMemoryTaskRepository()) {
+                    new TaskImporter(reimported).importFrom(exported);
+                    List<TaskRecord> tasks = reimported.snapshot().toList();
+                    passed &= check(tasks.size() == 3 && tasks.get(0).getDescription() == null && tasks.get(0).isCompleted()
+                                    && "".equals(tasks.get(1).getDescription()) && "text".equals(tasks.get(2).getDescription()),
+                            format + " export keeps a missing description apart from an empty one");
+                }
+            }
+        }
+
+        File invalid = new File(directory, "invalid.ndjson");
+        Files.write(invalid.toPath(), "{\"description\":\"fine\"}\n[1,2]\n".getBytes(StandardCharsets.UTF_8));
+        boolean refused;
+        try (TaskRepository repository = new InMemoryTaskRepository()) {
+            new TaskImporter(repository).importFrom(invalid);
+            refused = false;
+        } catch (IOException e) {
+            refused = true;
+        }
+        passed &= check(refused, "a line that is not a task object fails the import");
+
+        if (passed) {
+            System.out.println("\n🎉 All task transfer tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Task transfer test failed");
+            System.exit(1);
+        }
+    }
+
+    private static boolean isOrdered(List<TaskRecord> tasks) {
+        for (int i = 0; i < tasks.size(); i++) {
+            if (!tasks.get(i).getDescription().startsWith("task " + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameTasks(List<TaskRecord> expected, List<TaskRecord> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.get(i).getDescription().equals(actual.get(i).getDescription())
+                    || expected.get(i).isCompleted() != actual.get(i).isCompleted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}
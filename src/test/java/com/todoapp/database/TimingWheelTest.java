@@ -0,0 +1,66 @@
+package com.todoapp.database;
+
+import java.util.Arrays;
+
+/**
+ * Checks that the timing wheel fires every timer in the tick of its deadline, also when the timer is
+ * moved down from a higher wheel at a slot boundary, and after a long jump in time.
+ */
+public class TimingWheelTest {
+    private static final long TICK = 1000;
+
+    public static void main(String[] args) {
+        System.out.println("Starting timing wheel test...");
+        boolean passed = true;
+
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        wheel.schedule(1, 64 * TICK);
+        passed &= check(wheel.advance(64 * TICK - 1).length == 0 && Arrays.equals(wheel.advance(64 * TICK), new int[] {1}),
+                "a timer 64 ticks out fires at the first slot boundary of the second wheel");
+
+        // Every deadline is checked tick by tick, from a start that isn't on a slot boundary
+        long start = 70 * TICK + 300;
+        wheel = new TimingWheel(TICK, start);
+        long[] ticks = {71, 72, 127, 128, 129, 4096, 4160, 70 + 4096, 262_144, 262_145};
+        for (int id = 0; id < ticks.length; id++) {
+            wheel.schedule(id, ticks[id] * TICK);
+        }
+        boolean onTime = true;
+        for (long tick = 71; tick <= 262_145 && onTime; tick++) {
+            long current = tick;
+            int[] fired = wheel.advance(tick * TICK);
+            long due = Arrays.stream(ticks).filter(deadline -> deadline == current).count();
+            onTime &= fired.length == due && Arrays.stream(fired).allMatch(id -> ticks[id] == current);
+        }
+        passed &= check(onTime && wheel.size() == 0, "every timer fires in the tick of its deadline, on every wheel");
+
+        wheel = new TimingWheel(TICK, 0);
+        wheel.schedule(1, 500);
+        wheel.schedule(2, 2 * TICK);
+        wheel.schedule(2, 3 * TICK);
+        wheel.schedule(3, 3 * TICK);
+        passed &= check(wheel.cancel(3) && !wheel.cancel(3) && Arrays.equals(wheel.advance(TICK), new int[] {1})
+                        && wheel.advance(2 * TICK).length == 0 && Arrays.equals(wheel.advance(3 * TICK), new int[] {2}),
+                "a deadline is rounded up to its tick, and rescheduled and cancelled timers don't fire");
+
+        wheel = new TimingWheel(TICK, 0);
+        long far = (1L << 24) + 5;
+        wheel.schedule(1, far * TICK);
+        wheel.schedule(2, 10 * TICK);
+        wheel.schedule(3, -TICK);
+        passed &= check(Arrays.equals(wheel.advance(0), new int[] {3}) && Arrays.equals(wheel.advance(far * TICK), new int[] {2, 1}),
+                "timers beyond the wheels and after a long jump fire in the order of their deadlines");
+
+        if (passed) {
+            System.out.println("\n🎉 All timing wheel tests passed successfully!");
+        } else {
+            System.err.println("\n❌ Timing wheel test failed");
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(boolean condition, String description) {
+        System.out.println((condition ? "✓ " : "✗ ") + description);
+        return condition;
+    }
+}